@@ -1,6 +1,13 @@
 import collection.CollectionManager;
 import commands.CommandExecutor;
 import file.FileManager;
+import file.MutationJournal;
+import file.SnapshotInfo;
+import file.StorageFormat;
+import model.Vehicle;
+import utils.AppConfig;
+
+import java.util.List;
 
 /**
  * Главный класс приложения.
@@ -12,24 +19,64 @@ public class Main {
             // Проверка наличия аргумента с именем файла
             if (args.length == 0) {
                 System.out.println("Ошибка: не указано имя файла с данными");
-                System.out.println("Использование: java Main <filename>");
+                System.out.println("Использование: java Main <filename> [xml|bin]");
+                System.out.println("               java Main --convert <from> <to>");
+                System.out.println("Журнал изменений: java -Djournal.enabled=true Main <filename>");
                 System.exit(1);
             }
 
+            // Перевод файла данных между форматами
+            if (args[0].equals("--convert")) {
+                if (args.length < 3) {
+                    System.out.println("Использование: java Main --convert <from> <to>");
+                    System.exit(1);
+                }
+                convert(args[1], args[2]);
+                return;
+            }
+
             String filename = args[0];
             System.out.println("Загрузка данных из файла: " + filename);
 
-            // Создание менеджера файлов и загрузка коллекции
-            FileManager fileManager = new FileManager(filename);
-            CollectionManager collectionManager = new CollectionManager(fileManager);
+            // Создание менеджера файлов и загрузка коллекции;
+            // формат берётся из второго аргумента или из расширения файла
+            FileManager fileManager = args.length > 1
+                    ? new FileManager(filename, StorageFormat.fromName(args[1]))
+                    : new FileManager(filename);
+            int loadParallelism = AppConfig.getInt(AppConfig.LOAD_PARALLELISM, 0);
+            fileManager.setLoadParallelism(loadParallelism > 0
+                    ? loadParallelism : Runtime.getRuntime().availableProcessors());
+            fileManager.setCompressionLevel(AppConfig.getInt(AppConfig.COMPRESSION_LEVEL, -1));
+            // Журнал включается явно: без него exit, как и раньше, отбрасывает несохранённые изменения
+            MutationJournal journal = AppConfig.getBoolean(AppConfig.JOURNAL_ENABLED, false)
+                    ? new MutationJournal(filename,
+                            AppConfig.getInt(AppConfig.JOURNAL_SYNC_EVERY, AppConfig.DEFAULT_JOURNAL_SYNC_EVERY),
+                            AppConfig.getLong(AppConfig.JOURNAL_SYNC_MILLIS, AppConfig.DEFAULT_JOURNAL_SYNC_MILLIS))
+                    : null;
+            CollectionManager collectionManager = new CollectionManager(fileManager, journal);
 
             // Запуск обработчика команд
             CommandExecutor executor = new CommandExecutor(collectionManager);
             executor.start();
+            collectionManager.close();
 
         } catch (Exception e) {
             System.err.println("Критическая ошибка: " + e.getMessage());
             System.exit(1);
         }
     }
+
+    /**
+     * Переводит файл данных из одного формата в другой (форматы определяются по расширениям)
+     */
+    private static void convert(String from, String to) throws Exception {
+        FileManager source = new FileManager(from);
+        FileManager target = new FileManager(to);
+        target.setCompressionLevel(AppConfig.getInt(AppConfig.COMPRESSION_LEVEL, -1));
+        List<Vehicle> collection = source.loadCollection();
+        // Журнал исходного файла к новому не относится, переносится только граница id
+        target.saveCollection(collection, new SnapshotInfo(0, source.getLoadedInfo().getLastId()));
+        System.out.println("Файл " + from + " (" + source.getFormat() + ") сконвертирован в "
+                + to + " (" + target.getFormat() + "), элементов: " + collection.size());
+    }
 }
\ No newline at end of file
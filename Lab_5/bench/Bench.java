@@ -0,0 +1,62 @@
+import collection.CollectionManager;
+import file.FileManager;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.function.IntSupplier;
+
+/**
+ * Общие части замеров и проверок: менеджер печатает сообщения в System.out,
+ * поэтому на время работы вывод заглушается, а результаты печатаются в исходный поток.
+ */
+final class Bench {
+    static final PrintStream out = System.out;
+
+    private Bench() {
+    }
+
+    /**
+     * Заглушает System.out
+     */
+    static void silence() {
+        redirect(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    /**
+     * Подменяет System.out; результаты по-прежнему печатаются через out
+     */
+    static void redirect(PrintStream stream) {
+        System.setOut(stream);
+    }
+
+    /**
+     * Загружает коллекцию из файла без журнала; способ хранения задаётся свойствами -Dstorage.* и -Dload.lazy
+     */
+    static CollectionManager load(String filename) {
+        return new CollectionManager(new FileManager(filename));
+    }
+
+    static double millisSince(long start) {
+        return (System.nanoTime() - start) / 1e6;
+    }
+
+    /**
+     * Выполняет запрос один раз и затем ещё rounds раз; печатает время первого и среднее время следующих
+     */
+    static void time(String name, int rounds, IntSupplier query) {
+        long start = System.nanoTime();
+        long result = query.getAsInt();
+        double first = millisSince(start);
+        start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            result += query.getAsInt();
+        }
+        out.printf("%-28s первый %8.2f мс, далее %8.3f мс [%d]%n", name, first, millisSince(start) / rounds, result);
+    }
+
+    static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+import collection.CollectionManager;
+import file.FileManager;
+import file.MutationJournal;
+import model.Coordinates;
+import model.Vehicle;
+import model.VehicleType;
+import utils.AppConfig;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Нагрузочная проверка снимков show и save: java CowStress <file> [seconds].
+ * Два потока меняют коллекцию, два выводят её через медленный вывод, ещё один сохраняет её в копию файла.
+ * Каждый вывод проверяется на повторённые id и испорченные строки, а сохранённый файл в конце загружается
+ * заново. Печатает число выполненных операций; с -Djournal.enabled=true изменения идут и через журнал.
+ */
+public class CowStress {
+    private static final Pattern ID = Pattern.compile("^Vehicle\\{id=(\\d+),");
+    private static final ThreadLocal<Set<Integer>> SEEN = ThreadLocal.withInitial(HashSet::new);
+    private static final ThreadLocal<int[]> LINES = ThreadLocal.withInitial(() -> new int[1]);
+    private static final AtomicReference<String> ERROR = new AtomicReference<>();
+
+    public static void main(String[] args) throws Exception {
+        long seconds = args.length > 1 ? Long.parseLong(args[1]) : 5;
+        Path file = Files.createTempFile("cowstress", args[0].substring(args[0].lastIndexOf('.')));
+        Files.copy(Paths.get(args[0]), file, StandardCopyOption.REPLACE_EXISTING);
+        // show выводит элементы кусками из целых строк (VehiclePrinter), остальные сообщения - через println
+        Bench.redirect(new PrintStream(OutputStream.nullOutputStream()) {
+            @Override
+            public PrintStream append(CharSequence lines) {
+                for (String line : lines.toString().split("\n")) {
+                    checkLine(line);
+                }
+                return this;
+            }
+        });
+        MutationJournal journal = AppConfig.getBoolean(AppConfig.JOURNAL_ENABLED, false)
+                ? new MutationJournal(file.toString(), AppConfig.DEFAULT_JOURNAL_SYNC_EVERY,
+                        AppConfig.DEFAULT_JOURNAL_SYNC_MILLIS)
+                : null;
+        CollectionManager manager = new CollectionManager(new FileManager(file.toString()), journal);
+        long end = System.currentTimeMillis() + seconds * 1000;
+        AtomicLong writes = new AtomicLong();
+        AtomicLong shows = new AtomicLong();
+        AtomicLong saves = new AtomicLong();
+        List<Thread> threads = new ArrayList<>();
+        for (int writer = 0; writer < 2; writer++) {
+            Random random = new Random(writer);
+            threads.add(worker(end, writes, () -> mutate(manager, random)));
+        }
+        for (int reader = 0; reader < 2; reader++) {
+            threads.add(worker(end, shows, () -> {
+                SEEN.get().clear();
+                manager.showAll();
+            }));
+        }
+        threads.add(worker(end, saves, manager::save));
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        manager.close();
+        Bench.out.printf("изменений %d, выводов %d, сохранений %d, ошибка: %s%n",
+                writes.get(), shows.get(), saves.get(), ERROR.get());
+        Bench.load(file.toString()).close();
+        Bench.out.println("сохранённый файл загружен");
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(file.getParent(), file.getFileName() + "*")) {
+            for (Path path : files) {
+                Files.delete(path);
+            }
+        }
+        if (ERROR.get() != null) {
+            System.exit(1);
+        }
+    }
+
+    private static void mutate(CollectionManager manager, Random random) {
+        int op = random.nextInt(100);
+        if (op < 50) {
+            manager.add(new Vehicle(0, "W" + random.nextInt(50), new Coordinates(1.0, 1), 5.0, 1 + random.nextInt(9),
+                    VehicleType.CAR, null));
+        } else if (op < 70) {
+            manager.removeById(1 + random.nextInt(40_000));
+        } else if (op < 90) {
+            manager.updateIfPresent(1 + random.nextInt(40_000), v -> new Vehicle(0, v.getName(), v.getCoordinates(),
+                    v.getEnginePower(), v.getCapacity() + 1, v.getType(), v.getFuelType()));
+        } else if (op < 99) {
+            manager.removeLast();
+        } else {
+            manager.sort();
+        }
+    }
+
+    /**
+     * Проверяет строку вывода и изображает медленный терминал
+     */
+    private static void checkLine(String line) {
+        Matcher matcher = ID.matcher(line);
+        if (!matcher.find()) {
+            ERROR.compareAndSet(null, "испорченная строка " + line);
+        } else if (!SEEN.get().add(Integer.parseInt(matcher.group(1)))) {
+            ERROR.compareAndSet(null, "повторённый id " + matcher.group(1));
+        }
+        if (++LINES.get()[0] % 500 == 0) {
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static Thread worker(long end, AtomicLong counter, Action action) {
+        return new Thread(() -> {
+            try {
+                while (System.currentTimeMillis() < end) {
+                    action.run();
+                    counter.incrementAndGet();
+                }
+            } catch (Throwable e) {
+                ERROR.compareAndSet(null, e.toString());
+            }
+        });
+    }
+
+    private interface Action {
+        void run() throws Exception;
+    }
+}
@@ -0,0 +1,109 @@
+import collection.CollectionManager;
+import model.Coordinates;
+import model.Vehicle;
+import model.VehicleType;
+import query.Query;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Сверяет фильтры и счётчики по вторичным индексам с перебором: java DupCheck <file> <seed> <steps>.
+ * Рассчитана на файл с повторёнными id (GenerateVehicles с repeat > 1): индексы не должны терять
+ * элементы с одинаковым id. Списки сравниваются без учёта порядка, кроме отдельно проверяемого.
+ */
+public class DupCheck {
+    public static void main(String[] args) {
+        Bench.silence();
+        CollectionManager manager = Bench.load(args[0]);
+        Random random = new Random(Long.parseLong(args[1]));
+        int steps = Integer.parseInt(args[2]);
+        for (int step = 0; step < steps; step++) {
+            List<Vehicle> all = manager.query(Query.parse(""));
+            Vehicle sample = all.get(random.nextInt(all.size()));
+            double capacity = sample.getCapacity();
+            List<Vehicle> expected = new ArrayList<>();
+            for (Vehicle vehicle : all) {
+                if (Math.abs(vehicle.getCapacity() - capacity) < 0.0001) {
+                    expected.add(vehicle);
+                }
+            }
+            same("filter_by_capacity", manager.filterByCapacity(capacity), expected);
+
+            double min = capacity - random.nextInt(20);
+            double max = capacity + random.nextInt(20);
+            expected.clear();
+            for (Vehicle vehicle : all) {
+                if (vehicle.getCapacity() >= min && vehicle.getCapacity() <= max) {
+                    expected.add(vehicle);
+                }
+            }
+            List<Vehicle> between = manager.filterCapacityBetween(min, max);
+            same("filter_capacity_between", between, expected);
+            for (int i = 1; i < between.size(); i++) {
+                Bench.check(between.get(i - 1).getCapacity() <= between.get(i).getCapacity(),
+                        "filter_capacity_between: нарушен порядок на " + i);
+            }
+
+            long above = all.stream().filter(v -> v.getCapacity() > capacity).count();
+            Bench.check(manager.countCapacityAbove(capacity) == above, "count_capacity_above");
+            long lower = all.stream().filter(v -> v.compareTo(sample) < 0).count();
+            Bench.check(manager.countLower(sample) == lower, "count_lower");
+            if (sample.getType() != null) {
+                expected.clear();
+                for (Vehicle vehicle : all) {
+                    if (vehicle.getType() != null && vehicle.getType().compareTo(sample.getType()) < 0) {
+                        expected.add(vehicle);
+                    }
+                }
+                same("filter_less_than_type", manager.filterLessThanType(sample.getType()), expected);
+                same("where type<", manager.query(Query.parse("where type<" + sample.getType())), expected);
+            }
+            for (String text : new String[]{"where capacity<=" + capacity, "where name>='" + sample.getName() + "'"}) {
+                Query query = Query.parse(text);
+                expected.clear();
+                for (Vehicle vehicle : all) {
+                    if (query.test(vehicle)) {
+                        expected.add(vehicle);
+                    }
+                }
+                same(text, manager.query(query), expected);
+            }
+
+            switch (random.nextInt(4)) {
+                case 0:
+                    manager.removeLower(all.get(random.nextInt(all.size())));
+                    break;
+                case 1:
+                    manager.removeGreater(all.get(random.nextInt(all.size())));
+                    break;
+                default:
+                    for (int i = 0; i < 50; i++) {
+                        manager.add(new Vehicle(0, "Q" + random.nextInt(50), new Coordinates(1.0, 2), 10.0,
+                                1 + random.nextInt(100), VehicleType.values()[random.nextInt(4)], null));
+                    }
+            }
+        }
+        Bench.out.println("ok элементов " + manager.query(Query.parse("")).size());
+        manager.close();
+    }
+
+    /**
+     * Сравнивает списки как мультимножества: элементы с одинаковым id различаются по остальным полям
+     */
+    private static void same(String what, Collection<Vehicle> actual, Collection<Vehicle> expected) {
+        Bench.check(keys(actual).equals(keys(expected)), what + ": " + actual.size() + " вместо " + expected.size());
+    }
+
+    private static List<String> keys(Collection<Vehicle> vehicles) {
+        List<String> keys = new ArrayList<>();
+        for (Vehicle vehicle : vehicles) {
+            keys.add(vehicle.toString());
+        }
+        keys.sort(Comparator.naturalOrder());
+        return keys;
+    }
+}
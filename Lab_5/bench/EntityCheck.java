@@ -0,0 +1,53 @@
+import file.XmlVehicleReader;
+import model.Vehicle;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Проверяет раскрытие ссылок на сущности в тексте элементов: java EntityCheck.
+ * Известные сущности раскрываются, а одиночный '&', неизвестные и незакрытые ссылки остаются как есть
+ * и не съедают следующие символы и закрывающий тег. Каждый случай читается с буферами разного размера,
+ * чтобы ссылка попадала на границу буфера.
+ */
+public class EntityCheck {
+    private static final String[][] CASES = {
+            {"A&B", "A&B"},
+            {"AT&T Corporation", "AT&T Corporation"},
+            {"A&", "A&"},
+            {"A & B", "A & B"},
+            {"A&&B", "A&&B"},
+            {"A&amp;B", "A&B"},
+            {"&lt;x&gt; &quot;y&quot; &apos;z&apos;", "<x> \"y\" 'z'"},
+            {"&amp;amp;", "&amp;"},
+            {"a&unknown;b", "a&unknown;b"},
+            {"a&nbsp;b", "a&nbsp;b"},
+            {"a&amp", "a&amp"},
+            {"a&ampere;", "a&ampere;"},
+            {"Жигули &amp; Волга", "Жигули & Волга"}
+    };
+
+    public static void main(String[] args) throws Exception {
+        for (String[] test : CASES) {
+            byte[] xml = record(test[0]).getBytes(StandardCharsets.UTF_8);
+            for (int bufferSize = 1; bufferSize <= xml.length + 1; bufferSize++) {
+                try (XmlVehicleReader reader = new XmlVehicleReader(new ByteArrayInputStream(xml), 0,
+                        Long.MAX_VALUE, bufferSize)) {
+                    Vehicle vehicle = reader.next();
+                    Bench.check(vehicle != null && vehicle.getName().equals(test[1]),
+                            test[0] + ": прочитано " + (vehicle == null ? null : vehicle.getName())
+                                    + " при буфере " + bufferSize);
+                    Bench.check(vehicle.getCapacity() == 3.0, test[0] + ": поля после имени прочитаны неверно");
+                }
+            }
+        }
+        Bench.out.println("случаев " + CASES.length + ", расхождений нет");
+    }
+
+    private static String record(String name) {
+        return "<vehicles><vehicle><id>1</id><name>" + name + "</name>"
+                + "<coordinates><x>1.5</x><y>2</y></coordinates><creationDate>2024-01-01</creationDate>"
+                + "<enginePower>10.0</enginePower><capacity>3.0</capacity><type>CAR</type>"
+                + "<fuelType>GASOLINE</fuelType></vehicle></vehicles>";
+    }
+}
@@ -0,0 +1,50 @@
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.Random;
+
+/**
+ * Генерирует XML файл коллекции для замеров: java GenerateVehicles <count> <file.xml> [repeat].
+ * С repeat > 1 каждый id повторяется repeat раз (так проверяются индексы на повторённых id).
+ * Зерно случайных чисел постоянно, поэтому одинаковые аргументы дают одинаковый файл.
+ * Двоичный снимок получается из XML командой java Main --convert <file.xml> <file.bin>.
+ */
+public class GenerateVehicles {
+    private static final String[] NAMES = {"Haval", "Dodge", "Tesla Model S", "Mountain Bike", "Mini submarine",
+            "Lada", "Kia Rio"};
+    private static final String[] TYPES = {"CAR", "SUBMARINE", "BICYCLE", "HOVERBOARD"};
+    private static final String[] FUEL_TYPES = {"GASOLINE", "KEROSENE", "ALCOHOL", "MANPOWER"};
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Использование: java GenerateVehicles <count> <file.xml> [repeat]");
+            return;
+        }
+        int count = Integer.parseInt(args[0]);
+        int distinct = Math.max(1, count / (args.length > 2 ? Integer.parseInt(args[2]) : 1));
+        Random random = new Random(1);
+        LocalDate firstDate = LocalDate.of(2023, 1, 1);
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(Paths.get(args[1]), StandardCharsets.UTF_8))) {
+            writer.print("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<vehicles>\n");
+            for (int i = 0; i < count; i++) {
+                writer.print("  <vehicle>\n");
+                writer.print("    <id>" + (1 + i % distinct) + "</id>\n");
+                writer.print("    <name>" + NAMES[random.nextInt(NAMES.length)] + "</name>\n");
+                writer.print("    <coordinates>\n");
+                writer.print("      <x>" + (random.nextInt(1200) - 600) + ".5</x>\n");
+                writer.print("      <y>" + random.nextInt(1000) + "</y>\n");
+                writer.print("    </coordinates>\n");
+                writer.print("    <creationDate>" + firstDate.plusDays(random.nextInt(1100)) + "</creationDate>\n");
+                writer.print("    <enginePower>" + (1 + random.nextInt(900)) + ".0</enginePower>\n");
+                writer.print("    <capacity>" + (1 + random.nextInt(100)) + ".0</capacity>\n");
+                writer.print("    <type>" + TYPES[random.nextInt(TYPES.length)] + "</type>\n");
+                writer.print("    <fuelType>" + FUEL_TYPES[random.nextInt(FUEL_TYPES.length)] + "</fuelType>\n");
+                writer.print("  </vehicle>\n");
+            }
+            writer.print("</vehicles>\n");
+        }
+    }
+}
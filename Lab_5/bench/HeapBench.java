@@ -0,0 +1,45 @@
+import collection.CollectionManager;
+import model.Vehicle;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Память, занятая загруженной коллекцией, при разных способах хранения: java [-Dstorage.columnar=true |
+ * -Dstorage.offHeap=true | -Dload.lazy=true] HeapBench <file>. Печатает время загрузки, занятую кучу
+ * после сборки мусора, память вне кучи, время полной сборки, время count_capacity_above и занятую кучу
+ * после запросов по capacity, типу и имени: в ленивом режиме она не должна расти до размера всей коллекции.
+ */
+public class HeapBench {
+    public static void main(String[] args) {
+        Bench.silence();
+        long start = System.nanoTime();
+        CollectionManager manager = Bench.load(args[0]);
+        double load = Bench.millisSince(start);
+        long heap = usedHeap();
+        start = System.nanoTime();
+        System.gc();
+        double gc = Bench.millisSince(start);
+        long direct = 0;
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if (pool.getName().equals("direct")) {
+                direct = pool.getMemoryUsed();
+            }
+        }
+        Bench.out.printf("загрузка %.0f мс, куча %d МБ, вне кучи %d МБ, полная сборка %.0f мс%n",
+                load, heap >> 20, direct >> 20, gc);
+        Bench.time("count_capacity_above 50", 10, () -> manager.countCapacityAbove(50));
+        Bench.time("filter_by_capacity 42", 1, () -> manager.filterByCapacity(42).size());
+        Bench.time("group_counts_by_type", 1, () -> manager.countByType().size());
+        Bench.time("count_less_than_name M", 1, () -> manager.countLower(new Vehicle(0, "M", null, 1.0, 1, null, null)));
+        Bench.out.printf("куча после запросов %d МБ%n", usedHeap() >> 20);
+        manager.close();
+    }
+
+    private static long usedHeap() {
+        System.gc();
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,51 @@
+import collection.CollectionManager;
+import model.Coordinates;
+import model.Vehicle;
+import model.VehicleType;
+
+import java.util.Random;
+
+/**
+ * Стоимость операций по id на загруженной коллекции: java IdBench <file> <ops> <maxId>.
+ * Для случайных id от 1 до maxId замеряются containsId, containsId с updateById (как в команде update)
+ * и removeById. Два круга: первый включает прогрев JVM.
+ */
+public class IdBench {
+    public static void main(String[] args) {
+        Bench.silence();
+        CollectionManager manager = Bench.load(args[0]);
+        int ops = Integer.parseInt(args[1]);
+        int maxId = Integer.parseInt(args[2]);
+        Random random = new Random(7);
+        for (int round = 0; round < 2; round++) {
+            int hits = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < ops; i++) {
+                if (manager.containsId(1 + random.nextInt(maxId))) {
+                    hits++;
+                }
+            }
+            double contains = Bench.millisSince(start);
+            start = System.nanoTime();
+            for (int i = 0; i < ops; i++) {
+                int id = 1 + random.nextInt(maxId);
+                if (manager.containsId(id)) {
+                    manager.updateById(id, new Vehicle(0, "Haval", new Coordinates(1.0, 2), 10.0, 5,
+                            VehicleType.CAR, null));
+                }
+            }
+            double update = Bench.millisSince(start);
+            int removed = 0;
+            start = System.nanoTime();
+            for (int i = 0; i < ops; i++) {
+                if (manager.removeById(1 + random.nextInt(maxId))) {
+                    removed++;
+                }
+            }
+            double remove = Bench.millisSince(start);
+            Bench.out.printf("containsId %.2f мкс, containsId + update %.2f мкс, removeById %.2f мкс на операцию"
+                    + " (найдено %d, удалено %d)%n", contains * 1e3 / ops, update * 1e3 / ops, remove * 1e3 / ops,
+                    hits, removed);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+import exceptions.InvalidDataException;
+import model.Coordinates;
+import model.FuelType;
+import model.Vehicle;
+import model.VehicleType;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Загрузка XML в том виде, в каком она была до потокового разбора (XmlVehicleReader):
+ * файл читается по символу в строку, элементы и поля выделяются регулярными выражениями.
+ * Нужна только как точка отсчёта для LoadBench; код перенесён без изменений, кроме типа коллекции.
+ */
+final class LegacyXmlLoader {
+    private LegacyXmlLoader() {
+    }
+
+    static List<Vehicle> load(String filename) throws IOException, InvalidDataException {
+        List<Vehicle> collection = new ArrayList<>();
+        StringBuilder content = new StringBuilder();
+
+        try (FileReader reader = new FileReader(filename)) {
+            int ch;
+            while ((ch = reader.read()) != -1) {
+                content.append((char) ch);
+            }
+        }
+
+        parseVehicles(content.toString(), collection);
+        return collection;
+    }
+
+    private static void parseVehicles(String xml, List<Vehicle> collection) throws InvalidDataException {
+        Pattern vehiclePattern = Pattern.compile("<vehicle>(.*?)</vehicle>", Pattern.DOTALL);
+        Matcher vehicleMatcher = vehiclePattern.matcher(xml);
+
+        while (vehicleMatcher.find()) {
+            String vehicleXml = vehicleMatcher.group(1);
+            try {
+                collection.add(parseVehicle(vehicleXml));
+            } catch (Exception e) {
+                throw new InvalidDataException("Ошибка парсинга vehicle: " + e.getMessage());
+            }
+        }
+    }
+
+    private static Vehicle parseVehicle(String xml) throws InvalidDataException {
+        Vehicle vehicle = new Vehicle();
+
+        String idStr = extractTag(xml, "id");
+        if (idStr != null) {
+            try {
+                int id = Integer.parseInt(idStr);
+                if (id <= 0) throw new InvalidDataException("ID должен быть > 0");
+                vehicle.setId(id);
+            } catch (NumberFormatException e) {
+                throw new InvalidDataException("Неверный формат ID");
+            }
+        }
+
+        String name = extractTag(xml, "name");
+        if (name == null || name.trim().isEmpty()) {
+            throw new InvalidDataException("Имя не может быть пустым");
+        }
+        vehicle.setName(name);
+
+        String coordsXml = extractTag(xml, "coordinates");
+        if (coordsXml == null) {
+            throw new InvalidDataException("Отсутствуют координаты");
+        }
+        vehicle.setCoordinates(parseCoordinates(coordsXml));
+
+        String dateStr = extractTag(xml, "creationDate");
+        if (dateStr != null) {
+            vehicle.setCreationDate(LocalDate.parse(dateStr));
+        }
+
+        String powerStr = extractTag(xml, "enginePower");
+        if (powerStr != null) {
+            try {
+                Double power = Double.parseDouble(powerStr);
+                if (power <= 0) throw new InvalidDataException("Engine power должен быть > 0");
+                vehicle.setEnginePower(power);
+            } catch (NumberFormatException e) {
+                throw new InvalidDataException("Неверный формат enginePower");
+            }
+        }
+
+        String capacityStr = extractTag(xml, "capacity");
+        if (capacityStr != null) {
+            try {
+                double capacity = Double.parseDouble(capacityStr);
+                if (capacity <= 0) throw new InvalidDataException("Capacity должна быть > 0");
+                vehicle.setCapacity(capacity);
+            } catch (NumberFormatException e) {
+                throw new InvalidDataException("Неверный формат capacity");
+            }
+        }
+
+        String typeStr = extractTag(xml, "type");
+        if (typeStr != null) {
+            try {
+                vehicle.setType(VehicleType.valueOf(typeStr));
+            } catch (IllegalArgumentException e) {
+                throw new InvalidDataException("Неверный тип vehicle");
+            }
+        }
+
+        String fuelStr = extractTag(xml, "fuelType");
+        if (fuelStr != null && !fuelStr.equals("null")) {
+            try {
+                vehicle.setFuelType(FuelType.valueOf(fuelStr));
+            } catch (IllegalArgumentException e) {
+                vehicle.setFuelType(null);
+            }
+        }
+
+        return vehicle;
+    }
+
+    private static Coordinates parseCoordinates(String xml) throws InvalidDataException {
+        Coordinates coords = new Coordinates();
+
+        String xStr = extractTag(xml, "x");
+        if (xStr != null) {
+            try {
+                Double x = Double.parseDouble(xStr);
+                if (x > 636) throw new InvalidDataException("X должен быть <= 636");
+                coords.setX(x);
+            } catch (NumberFormatException e) {
+                throw new InvalidDataException("Неверный формат X");
+            }
+        }
+
+        String yStr = extractTag(xml, "y");
+        if (yStr != null) {
+            try {
+                coords.setY(Integer.parseInt(yStr));
+            } catch (NumberFormatException e) {
+                throw new InvalidDataException("Неверный формат Y");
+            }
+        }
+
+        return coords;
+    }
+
+    private static String extractTag(String xml, String tag) {
+        Pattern pattern = Pattern.compile("<" + tag + ">(.*?)</" + tag + ">", Pattern.DOTALL);
+        Matcher matcher = pattern.matcher(xml);
+        return matcher.find() ? matcher.group(1).trim() : null;
+    }
+}
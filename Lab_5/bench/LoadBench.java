@@ -0,0 +1,60 @@
+import file.FileManager;
+import model.Vehicle;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+/**
+ * Время чтения файла коллекции и выделенная при этом память на элемент:
+ * java LoadBench <file> [rounds] [legacy]. Формат берётся по расширению (.xml, .bin, .csv, в том числе .gz).
+ * Для несжатого XML с аргументом legacy так же замеряется прежняя загрузка регулярными выражениями
+ * (LegacyXmlLoader), и проверяется, что обе загрузки дают одинаковые элементы.
+ * Первые прогоны включают прогрев JVM, поэтому сравнивать стоит последние.
+ */
+public class LoadBench {
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) throws Exception {
+        String filename = args[0];
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        boolean legacy = args.length > 2 && args[2].equals("legacy");
+        if (legacy) {
+            Bench.check(same(LegacyXmlLoader.load(filename), new FileManager(filename).loadCollection()),
+                    "загрузки дают разные элементы");
+        }
+        for (int round = 0; round < rounds; round++) {
+            measure("сейчас", () -> new FileManager(filename).loadCollection());
+            if (legacy) {
+                measure("прежде", () -> LegacyXmlLoader.load(filename));
+            }
+        }
+    }
+
+    private static void measure(String name, Loader loader) throws Exception {
+        long allocated = THREADS.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        int count = loader.load().size();
+        double millis = Bench.millisSince(start);
+        // Считаются только выделения этого потока: при параллельной загрузке часть памяти выделяют потоки пула
+        allocated = THREADS.getCurrentThreadAllocatedBytes() - allocated;
+        System.out.printf("%-7s элементов %d, %.0f мс, %d байт на элемент%n",
+                name, count, millis, allocated / Math.max(1, count));
+    }
+
+    private static boolean same(List<Vehicle> expected, List<Vehicle> actual) {
+        if (expected.size() != actual.size()) {
+            return false;
+        }
+        for (int i = 0; i < expected.size(); i++) {
+            if (!expected.get(i).toString().equals(actual.get(i).toString())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private interface Loader {
+        List<Vehicle> load() throws Exception;
+    }
+}
@@ -0,0 +1,93 @@
+import collection.CollectionManager;
+import model.Coordinates;
+import model.FuelType;
+import model.Vehicle;
+import model.VehicleType;
+import query.Field;
+import query.Query;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * Сверяет составные запросы с перебором: java QueryCheck <file> <seed> <steps>.
+ * Запросы из случайных условий, сортировки и limit выполняются менеджером по плану и проверяются
+ * фильтрацией и сортировкой всей коллекции; между запросами коллекция дополняется.
+ * Печатает, сколько запросов выполнено каждым способом доступа.
+ */
+public class QueryCheck {
+    private static final String[] FIELDS = {"id", "name", "x", "y", "creationDate", "enginePower", "capacity",
+            "type", "fuelType"};
+    private static final String[] OPERATORS = {"=", "!=", "<", "<=", ">", ">="};
+    private static final String[] SORT_FIELDS = {"name", "capacity", "enginePower", "creationDate"};
+
+    public static void main(String[] args) {
+        Bench.silence();
+        CollectionManager manager = Bench.load(args[0]);
+        Random random = new Random(Long.parseLong(args[1]));
+        int steps = Integer.parseInt(args[2]);
+        Map<String, Integer> accesses = new TreeMap<>();
+        for (int step = 0; step < steps; step++) {
+            if (step % 50 == 0) {
+                // Упорядоченная копия строится при первом обращении, после этого её может выбрать план
+                manager.sortedBy(SORT_FIELDS[random.nextInt(SORT_FIELDS.length)]);
+            }
+            if (step % 7 == 0) {
+                manager.add(randomVehicle(random));
+            }
+            List<Vehicle> all = manager.query(Query.parse(""));
+            Query query = Query.parse(randomQuery(random, all));
+            List<Vehicle> expected = new ArrayList<>();
+            for (Vehicle vehicle : all) {
+                if (query.test(vehicle)) {
+                    expected.add(vehicle);
+                }
+            }
+            if (query.order() != null) {
+                expected.sort(query.order());
+            }
+            if (query.hasLimit() && expected.size() > query.getLimit()) {
+                expected = expected.subList(0, query.getLimit());
+            }
+            List<Vehicle> actual = manager.query(query);
+            String plan = manager.explain(query).toString();
+            accesses.merge(manager.explain(query).getAccess().toString(), 1, Integer::sum);
+            Bench.check(actual.size() == expected.size(),
+                    query + ": найдено " + actual.size() + " вместо " + expected.size() + "\n" + plan);
+            for (int i = 0; i < expected.size(); i++) {
+                Bench.check(actual.get(i).getId() == expected.get(i).getId(), query + ": расхождение на " + i + "\n" + plan);
+            }
+        }
+        Bench.out.println("ok " + accesses);
+        manager.close();
+    }
+
+    private static String randomQuery(Random random, List<Vehicle> all) {
+        StringBuilder query = new StringBuilder();
+        int conditions = random.nextInt(4);
+        for (int i = 0; i < conditions; i++) {
+            String field = FIELDS[random.nextInt(FIELDS.length)];
+            Object value = Field.of(field).get(all.get(random.nextInt(all.size())));
+            String operator = value == null ? (random.nextBoolean() ? "=" : "!=") : OPERATORS[random.nextInt(OPERATORS.length)];
+            String text = value == null ? "null" : field.equals("name") ? "'" + value + "'" : value.toString();
+            query.append(i == 0 ? "where " : " and ").append(field).append(operator).append(text);
+        }
+        if (random.nextBoolean()) {
+            query.append(" order by ").append(FIELDS[random.nextInt(FIELDS.length)]).append(random.nextBoolean() ? " desc" : "");
+        }
+        if (random.nextBoolean()) {
+            query.append(" limit ").append(random.nextInt(30));
+        }
+        return query.toString();
+    }
+
+    private static Vehicle randomVehicle(Random random) {
+        return new Vehicle(0, "Q" + random.nextInt(5), new Coordinates(1.0 * random.nextInt(9), random.nextInt(9)),
+                random.nextInt(4) == 0 ? null : 1.0 * random.nextInt(500), 1 + random.nextInt(100),
+                random.nextInt(5) == 0 ? null : VehicleType.values()[random.nextInt(4)],
+                random.nextInt(3) == 0 ? null : FuelType.values()[random.nextInt(4)]);
+    }
+}
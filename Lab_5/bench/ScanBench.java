@@ -0,0 +1,36 @@
+import collection.CollectionManager;
+import model.Vehicle;
+import model.VehicleType;
+
+/**
+ * Время запросов-фильтров и массовых изменений на загруженной коллекции:
+ * java [-Dstorage.columnar=true | -Dstorage.offHeap=true] ScanBench <file>.
+ * Первый запрос включает построение индекса (при хранении объектов в куче); остальные идут по готовому.
+ */
+public class ScanBench {
+    public static void main(String[] args) {
+        Bench.silence();
+        long start = System.nanoTime();
+        CollectionManager manager = Bench.load(args[0]);
+        Bench.out.printf("загрузка %.0f мс%n", Bench.millisSince(start));
+        Bench.time("filter_by_capacity 42", 20, () -> manager.filterByCapacity(42).size());
+        Bench.time("count_capacity_above 50", 20, () -> manager.countCapacityAbove(50));
+        Bench.time("filter_capacity_between", 20, () -> manager.filterCapacityBetween(10, 10.5).size());
+        Bench.time("filter_less_than_type SUB", 20, () -> manager.filterLessThanType(VehicleType.SUBMARINE).size());
+        Bench.time("group_counts_by_type", 20, () -> manager.countByType().size());
+        Bench.time("sum_of_capacity", 20, () -> (int) manager.getSumOfCapacity());
+        Bench.time("sorted_by capacity", 20, () -> manager.sortedBy("capacity").size());
+        Vehicle pivot = new Vehicle();
+        pivot.setName("M");
+        start = System.nanoTime();
+        manager.removeLower(pivot);
+        Bench.out.printf("%-28s %8.2f мс%n", "remove_lower M", Bench.millisSince(start));
+        start = System.nanoTime();
+        manager.sort();
+        Bench.out.printf("%-28s %8.2f мс%n", "sort", Bench.millisSince(start));
+        start = System.nanoTime();
+        manager.sort();
+        Bench.out.printf("%-28s %8.2f мс%n", "sort без изменений", Bench.millisSince(start));
+        manager.close();
+    }
+}
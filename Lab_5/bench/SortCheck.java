@@ -0,0 +1,88 @@
+import collection.CollectionManager;
+import model.Coordinates;
+import model.Vehicle;
+import model.VehicleType;
+import query.Query;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Сверяет sort и упорядоченные копии (sorted_by) с полной сортировкой: java SortCheck <file> <seed> <steps>.
+ * Между проверками коллекция меняется случайными командами, чтобы досортировка упорядоченного начала
+ * и дополнение копий изменениями работали на разных смесях добавлений, замен и удалений.
+ */
+public class SortCheck {
+    public static void main(String[] args) {
+        Bench.silence();
+        CollectionManager manager = Bench.load(args[0]);
+        Random random = new Random(Long.parseLong(args[1]));
+        int steps = Integer.parseInt(args[2]);
+        Map<String, Comparator<Vehicle>> views = new LinkedHashMap<>();
+        views.put("name", Comparator.naturalOrder());
+        views.put("capacity", Comparator.comparingDouble(Vehicle::getCapacity));
+        views.put("enginePower", Comparator.comparing(Vehicle::getEnginePower,
+                Comparator.nullsFirst(Comparator.naturalOrder())));
+        views.put("creationDate", Comparator.comparing(Vehicle::getCreationDate));
+        int checks = 0;
+        for (int step = 0; step < steps; step++) {
+            List<Vehicle> current = all(manager);
+            int op = random.nextInt(100);
+            if (op < 40) {
+                manager.add(randomVehicle(random));
+            } else if (op < 50 && !current.isEmpty()) {
+                manager.updateById(current.get(random.nextInt(current.size())).getId(), randomVehicle(random));
+            } else if (op < 58 && !current.isEmpty()) {
+                manager.removeById(current.get(random.nextInt(current.size())).getId());
+            } else if (op < 62) {
+                manager.removeLast();
+            } else if (op < 64) {
+                manager.removeLower(pivot("N0" + random.nextInt(2)));
+            } else if (op < 66) {
+                manager.removeGreater(pivot("N9" + random.nextInt(2)));
+            } else if (op < 85) {
+                manager.sort();
+                // Сортировка устойчивая: равные по имени идут в прежнем порядке
+                List<Vehicle> expected = new ArrayList<>(current);
+                expected.sort(Comparator.naturalOrder());
+                sameIds("sort, шаг " + step, all(manager), expected);
+                checks++;
+            } else {
+                for (Map.Entry<String, Comparator<Vehicle>> view : views.entrySet()) {
+                    List<Vehicle> expected = new ArrayList<>(current);
+                    expected.sort(view.getValue().thenComparingInt(Vehicle::getId));
+                    sameIds("sorted_by " + view.getKey() + ", шаг " + step, manager.sortedBy(view.getKey()), expected);
+                }
+                checks++;
+            }
+        }
+        Bench.out.println("ok проверок " + checks + ", элементов " + all(manager).size());
+        manager.close();
+    }
+
+    private static List<Vehicle> all(CollectionManager manager) {
+        return manager.query(Query.parse(""));
+    }
+
+    private static void sameIds(String what, List<Vehicle> actual, List<Vehicle> expected) {
+        Bench.check(actual.size() == expected.size(), what + ": " + actual.size() + " вместо " + expected.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Bench.check(actual.get(i).getId() == expected.get(i).getId(), what + ": расхождение на " + i);
+        }
+    }
+
+    private static Vehicle randomVehicle(Random random) {
+        return new Vehicle(0, "N" + random.nextInt(12), new Coordinates(1.0, 1),
+                random.nextInt(5) == 0 ? null : (double) random.nextInt(20), 1 + random.nextInt(30), VehicleType.CAR, null);
+    }
+
+    private static Vehicle pivot(String name) {
+        Vehicle vehicle = new Vehicle();
+        vehicle.setName(name);
+        return vehicle;
+    }
+}
@@ -0,0 +1,85 @@
+import collection.CollectionManager;
+import model.Coordinates;
+import model.Vehicle;
+import model.VehicleType;
+import query.Query;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Сверяет поиск по прямоугольнику и ближайших к точке с перебором: java SpatialCheck <file> <seed> <steps>.
+ * Между запросами коллекция меняется; время от времени удаляется половина элементов,
+ * чтобы сетка раскладывалась заново.
+ */
+public class SpatialCheck {
+    public static void main(String[] args) {
+        Bench.silence();
+        CollectionManager manager = Bench.load(args[0]);
+        Random random = new Random(Long.parseLong(args[1]));
+        int steps = Integer.parseInt(args[2]);
+        for (int step = 0; step < steps; step++) {
+            List<Vehicle> all = all(manager);
+            int op = random.nextInt(10);
+            if (op == 0) {
+                manager.add(new Vehicle(0, "S", randomPoint(random), 1.0, 1, VehicleType.CAR, null));
+            } else if (op == 1 && all.size() > 1) {
+                manager.removeById(all.get(random.nextInt(all.size())).getId());
+            } else if (op == 2) {
+                manager.updateById(all.get(random.nextInt(all.size())).getId(),
+                        new Vehicle(0, "U", randomPoint(random), 2.0, 1, VehicleType.CAR, null));
+            } else if (op == 3) {
+                manager.sort();
+            }
+            if (step % 100 == 50 && all.size() > 200) {
+                for (int i = 0; i < all.size() / 2; i++) {
+                    manager.removeLast();
+                }
+            }
+            all = all(manager);
+
+            double minX = random.nextDouble() * 1300 - 650;
+            double maxX = minX + random.nextDouble() * (random.nextBoolean() ? 20 : 400);
+            int minY = random.nextInt(1100) - 50;
+            int maxY = minY + random.nextInt(random.nextBoolean() ? 20 : 500);
+            List<Integer> expected = new ArrayList<>();
+            for (Vehicle vehicle : all) {
+                double x = vehicle.getCoordinates().getX();
+                int y = vehicle.getCoordinates().getY();
+                if (x >= minX && x <= maxX && y >= minY && y <= maxY) {
+                    expected.add(vehicle.getId());
+                }
+            }
+            Bench.check(ids(manager.filterInBox(minX, minY, maxX, maxY)).equals(expected), "filter_in_box, шаг " + step);
+
+            int k = 1 + random.nextInt(random.nextBoolean() ? 5 : 200);
+            double x = random.nextDouble() * 2000 - 1000;
+            double y = random.nextDouble() * 2000 - 500;
+            List<Vehicle> byDistance = new ArrayList<>(all);
+            byDistance.sort(Comparator.<Vehicle>comparingDouble(v -> Math.hypot(v.getCoordinates().getX() - x,
+                    v.getCoordinates().getY() - y)).thenComparingInt(Vehicle::getId));
+            expected = ids(byDistance.subList(0, Math.min(k, byDistance.size())));
+            Bench.check(ids(manager.nearest(k, x, y)).equals(expected), "nearest, шаг " + step + ", k=" + k);
+        }
+        Bench.out.println("ok элементов " + all(manager).size());
+        manager.close();
+    }
+
+    private static List<Vehicle> all(CollectionManager manager) {
+        return manager.query(Query.parse(""));
+    }
+
+    private static Coordinates randomPoint(Random random) {
+        return new Coordinates(random.nextInt(1200) - 600.5, random.nextInt(1000));
+    }
+
+    private static List<Integer> ids(List<Vehicle> vehicles) {
+        List<Integer> ids = new ArrayList<>(vehicles.size());
+        for (Vehicle vehicle : vehicles) {
+            ids.add(vehicle.getId());
+        }
+        return ids;
+    }
+}
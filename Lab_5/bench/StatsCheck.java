@@ -0,0 +1,73 @@
+import collection.CollectionManager;
+import collection.RunningStats;
+import collection.VehicleStats;
+import model.Vehicle;
+import query.Query;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Сверяет sum_of_capacity и сводки с пересчётом по всей коллекции: java StatsCheck <file> <steps>.
+ * На каждом шаге удаляется или заменяется элемент с наибольшей или наименьшей capacity - худший случай
+ * для сводки, которая должна заново найти минимум и максимум. Печатает время запроса сводки после этого.
+ */
+public class StatsCheck {
+    public static void main(String[] args) {
+        Bench.silence();
+        CollectionManager manager = Bench.load(args[0]);
+        int steps = Integer.parseInt(args[1]);
+        Random random = new Random(1);
+        manager.getStats();
+        long[] times = new long[steps];
+        for (int step = 0; step < steps; step++) {
+            List<Vehicle> all = manager.query(Query.parse(""));
+            Vehicle extreme = all.get(0);
+            for (Vehicle vehicle : all) {
+                if (step % 2 == 0 ? vehicle.getCapacity() > extreme.getCapacity() : vehicle.getCapacity() < extreme.getCapacity()) {
+                    extreme = vehicle;
+                }
+            }
+            if (step % 3 == 0) {
+                manager.updateById(extreme.getId(), new Vehicle(0, extreme.getName(), extreme.getCoordinates(),
+                        1 + random.nextInt(1000) / 7.0, 1 + random.nextInt(100_000) / 3.0, extreme.getType(),
+                        extreme.getFuelType()));
+            } else {
+                manager.removeById(extreme.getId());
+            }
+            long start = System.nanoTime();
+            double sum = manager.getSumOfCapacity();
+            VehicleStats stats = manager.getStats();
+            times[step] = System.nanoTime() - start;
+
+            all = manager.query(Query.parse(""));
+            double min = Double.MAX_VALUE;
+            double max = -Double.MAX_VALUE;
+            double expectedSum = 0;
+            double minPower = Double.MAX_VALUE;
+            double maxPower = -Double.MAX_VALUE;
+            int powered = 0;
+            for (Vehicle vehicle : all) {
+                min = Math.min(min, vehicle.getCapacity());
+                max = Math.max(max, vehicle.getCapacity());
+                expectedSum += vehicle.getCapacity();
+                if (vehicle.getEnginePower() != null) {
+                    powered++;
+                    minPower = Math.min(minPower, vehicle.getEnginePower());
+                    maxPower = Math.max(maxPower, vehicle.getEnginePower());
+                }
+            }
+            RunningStats capacity = stats.getCapacity();
+            RunningStats power = stats.getEnginePower();
+            Bench.check(capacity.getCount() == all.size() && capacity.getMin() == min && capacity.getMax() == max
+                    && Math.abs(sum - expectedSum) <= 1e-6 * Math.abs(expectedSum), "capacity, шаг " + step + ": " + capacity);
+            Bench.check(power.getCount() == powered && (powered == 0 || power.getMin() == minPower && power.getMax() == maxPower),
+                    "enginePower, шаг " + step + ": " + power);
+        }
+        Arrays.sort(times);
+        Bench.out.printf("ok шагов %d; sum_of_capacity и сводка после удаления крайнего: медиана %.3f мс, худшее %.3f мс%n",
+                steps, times[steps / 2] / 1e6, times[steps - 1] / 1e6);
+        manager.close();
+    }
+}
@@ -0,0 +1,94 @@
+package collection;
+
+import exceptions.InvalidDataException;
+import file.FileManager;
+import model.Vehicle;
+import utils.InputValidator;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Приёмник элементов для bulk_add: FileManager передаёт ему прочитанные элементы,
+ * а он проверяет их без блокировки и отдаёт на вставку пачками по BATCH.
+ * Элементы с неверными полями пропускаются; при ошибке формата импорт останавливается,
+ * а элементы, прочитанные до ошибки, остаются в коллекции.
+ */
+class BulkInserter implements Consumer<Vehicle> {
+    // Сколько элементов вставляется под одной блокировкой
+    static final int BATCH = 8192;
+
+    private final Consumer<List<Vehicle>> insert;
+    private final List<Vehicle> batch = new ArrayList<>(BATCH);
+    private int read;
+    private int added;
+    private int rejected;
+    private String firstRejection;
+
+    /**
+     * Создаёт приёмник, который отдаёт пачки проверенных элементов в insert
+     */
+    BulkInserter(Consumer<List<Vehicle>> insert) {
+        this.insert = insert;
+    }
+
+    /**
+     * Импортирует файл (xml, bin, csv, в том числе сжатый .gz) и выводит одну сводку
+     */
+    void importFile(String filename) {
+        if (!Files.isRegularFile(Paths.get(filename))) {
+            System.out.println("Файл не найден: " + filename);
+            return;
+        }
+        long start = System.nanoTime();
+        String failure = null;
+        try {
+            new FileManager(filename).importCollection(this);
+        } catch (IOException | InvalidDataException e) {
+            failure = e.getMessage();
+        }
+        flush();
+        System.out.println("Добавлено элементов: " + added + " из " + read
+                + " за " + (System.nanoTime() - start) / 1_000_000 + " мс");
+        if (rejected > 0) {
+            System.out.println("Пропущено с неверными полями: " + rejected + " (первое - " + firstRejection + ")");
+        }
+        if (failure != null) {
+            System.out.println("Импорт остановлен: " + failure);
+        }
+    }
+
+    @Override
+    public void accept(Vehicle vehicle) {
+        read++;
+        try {
+            InputValidator.validateVehicle(vehicle);
+        } catch (IllegalArgumentException e) {
+            if (rejected++ == 0) {
+                firstRejection = "элемент " + read + ": " + e.getMessage();
+            }
+            return;
+        }
+        if (vehicle.getCreationDate() == null) {
+            vehicle.setCreationDate(LocalDate.now());
+        }
+        batch.add(vehicle);
+        if (batch.size() == BATCH) {
+            flush();
+        }
+    }
+
+    private void flush() {
+        if (batch.isEmpty()) {
+            return;
+        }
+        insert.accept(batch);
+        added += batch.size();
+        batch.clear();
+    }
+}
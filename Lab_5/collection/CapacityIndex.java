@@ -0,0 +1,84 @@
+package collection;
+
+import model.Vehicle;
+
+import java.util.*;
+
+/**
+ * Индекс по capacity: элементы упорядочены по значению capacity,
+ * поэтому поиск по значению и по диапазону стоит O(log d + k), а подсчёт - O(log d)
+ * по числу различных значений d: дерево хранит размеры поддеревьев.
+ */
+public class CapacityIndex implements VehicleIndex {
+    // capacity -> сам элемент, если он с таким значением один, иначе VehicleBucket
+    private final CountingTree<Double, Object> tree = new CountingTree<>(Comparator.naturalOrder());
+
+    @Override
+    public void add(Vehicle vehicle) {
+        Double capacity = vehicle.getCapacity();
+        Object current = tree.get(capacity);
+        if (current == null) {
+            tree.put(capacity, vehicle, 1);
+            return;
+        }
+        VehicleBucket bucket;
+        if (current instanceof Vehicle) {
+            bucket = new VehicleBucket();
+            bucket.add((Vehicle) current);
+        } else {
+            bucket = (VehicleBucket) current;
+        }
+        bucket.add(vehicle);
+        tree.put(capacity, bucket, bucket.size());
+    }
+
+    @Override
+    public void remove(Vehicle vehicle) {
+        Double capacity = vehicle.getCapacity();
+        Object current = tree.get(capacity);
+        if (current instanceof Vehicle) {
+            if (current.equals(vehicle)) {
+                tree.remove(capacity);
+            }
+        } else if (current != null) {
+            VehicleBucket bucket = (VehicleBucket) current;
+            if (bucket.remove(vehicle)) {
+                tree.put(capacity, bucket.size() == 1 ? bucket.any() : bucket, bucket.size());
+            }
+        }
+    }
+
+    @Override
+    public void clear() {
+        tree.clear();
+    }
+
+    /**
+     * Возвращает элементы с capacity в заданном диапазоне по возрастанию capacity
+     */
+    public List<Vehicle> between(double min, boolean minInclusive, double max, boolean maxInclusive) {
+        List<Vehicle> result = new ArrayList<>(countBetween(min, minInclusive, max, maxInclusive));
+        tree.forEachBetween(min, minInclusive, max, maxInclusive, value -> {
+            if (value instanceof Vehicle) {
+                result.add((Vehicle) value);
+            } else {
+                ((VehicleBucket) value).addTo(result);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Возвращает количество элементов с capacity больше x, не перебирая сами элементы
+     */
+    public int countAbove(double x) {
+        return tree.weightBetween(x, false, null, false);
+    }
+
+    /**
+     * Возвращает количество элементов с capacity в заданном диапазоне, не перебирая сами элементы
+     */
+    public int countBetween(double min, boolean minInclusive, double max, boolean maxInclusive) {
+        return tree.weightBetween(min, minInclusive, max, maxInclusive);
+    }
+}
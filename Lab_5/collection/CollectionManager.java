@@ -1,171 +1,1037 @@
 package collection;
 
+import model.FuelType;
 import model.Vehicle;
 import model.VehicleType;
 import file.FileManager;
+import file.MutationJournal;
+import query.Query;
+import utils.AppConfig;
 import utils.IdGenerator;
+import utils.NamePool;
+import utils.VehiclePrinter;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.time.LocalDate;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
 
 /**
- * Менеджер коллекции транспортных средств.
- * Хранит коллекцию Stack<Vehicle> и управляет ею.
+ * Менеджер коллекции транспортных средств: хранит коллекцию как стек (List, вершина - последний элемент)
+ * и выполняет над ней команды под ReadWriteLock.
  */
 public class CollectionManager {
-    private Stack<Vehicle> collection;
+    private List<Vehicle> collection;
     private final LocalDate initializationDate;
     private final FileManager fileManager;
+    // Запросы выполняются параллельно под блокировкой чтения, изменения и снятие снимка - под блокировкой записи
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile double publishedSum = Double.NaN; // сумма capacity; NaN, пока сводка не построена
+    private volatile LazyVehicleList lazy; // тот же объект, что collection, если включена ленивая загрузка
+    private VehicleColumns columns; // тот же объект, что collection, если включено колоночное хранение или вне кучи
+    private final IdIndex idIndex = new IdIndex(this::idAt);
+    private final IdGenerator idGenerator = new IdGenerator();
+    private final NamePool names = new NamePool(); // имена добавленных и изменённых элементов; под блокировкой записи
+    private final CapacityIndex capacityIndex = new CapacityIndex();
+    private final TypeIndex typeIndex = new TypeIndex();
+    private final FuelTypeCounts fuelTypeCounts = new FuelTypeCounts();
+    private final VehicleStats stats = new VehicleStats();
+    private final NameIndex nameIndex = new NameIndex();
+    private final SpatialIndex spatialIndex = new SpatialIndex();
+    private final Map<String, SortedView> sortedViews = createSortedViews();
+    private final List<VehicleIndex> builtIndexes = new ArrayList<>(); // индексы, которые уже построены
+    private final QueryExecutor queries;
+    private final QueryEngine engine;
+    private final CollectionSaver saver;
+    // Длина начала коллекции, которое точно упорядочено; добавления в конец и удаления его не нарушают
+    private int sortedPrefix;
 
     public CollectionManager(FileManager fileManager) {
-        this.collection = new Stack<>();
+        this(fileManager, null);
+    }
+
+    /**
+     * Создаёт менеджер с журналом изменений (null - без журнала)
+     */
+    public CollectionManager(FileManager fileManager, MutationJournal journal) {
+        this.collection = new SegmentedVehicleList();
         this.initializationDate = LocalDate.now();
         this.fileManager = fileManager;
+        int queryParallelism = AppConfig.getInt(AppConfig.QUERY_PARALLELISM, 0);
+        this.queries = new QueryExecutor(
+                queryParallelism > 0 ? queryParallelism : Runtime.getRuntime().availableProcessors(),
+                AppConfig.getInt(AppConfig.QUERY_PARALLEL_THRESHOLD, 100_000));
+        this.engine = new QueryEngine(capacityIndex, nameIndex, typeIndex, sortedViews, builtIndexes, idIndex, queries);
+        this.saver = new CollectionSaver(fileManager, journal, lock, idGenerator, () -> {
+            detachLazy();
+            return snapshot();
+        });
         loadCollection();
     }
 
     /**
-     * Загружает коллекцию из файла
+     * Загружает коллекцию из файла и применяет к ней изменения из журнала
      */
     private void loadCollection() {
+        long snapshotGeneration = 0;
+        boolean fileReadable = true;
+        int lazyCacheSize = AppConfig.getInt(AppConfig.LAZY_CACHE_SIZE, 10_000);
+        boolean offHeap = AppConfig.getBoolean(AppConfig.STORAGE_OFF_HEAP, false);
+        boolean columnar = offHeap || AppConfig.getBoolean(AppConfig.STORAGE_COLUMNAR, false);
         try {
-            collection = fileManager.loadCollection();
-            IdGenerator.updateLastId(collection);
-            System.out.println("Загружено " + collection.size() + " элементов");
+            // Сжатый файл читается только потоком, для него ленивый режим недоступен
+            if (AppConfig.getBoolean(AppConfig.LOAD_LAZY, false) && !fileManager.isCompressed()) {
+                lazy = new LazyVehicleList(fileManager.openIndex(), lazyCacheSize);
+                collection = lazy;
+                System.out.println("Проиндексировано " + collection.size() + " элементов (ленивая загрузка)");
+            } else if (columnar) {
+                columns = fileManager.loadCollection(offHeap ? new OffHeapVehicleList() : new ColumnarVehicleList());
+                collection = columns;
+                System.out.println("Загружено " + collection.size() + " элементов ("
+                        + (offHeap ? "хранение вне кучи" : "колоночное хранение") + ")");
+            } else {
+                collection = fileManager.loadCollection(new SegmentedVehicleList());
+                System.out.println("Загружено " + collection.size() + " элементов");
+            }
+            snapshotGeneration = fileManager.getLoadedInfo().getJournalGeneration();
         } catch (Exception e) {
             System.err.println("Ошибка загрузки коллекции: " + e.getMessage());
             System.err.println("Будет создана пустая коллекция");
-            collection = new Stack<>();
+            // Файла ещё нет - защищать нечего: он будет создан при сохранении
+            if (Files.exists(Paths.get(fileManager.getFilename()))) {
+                System.err.println("Файл и журнал изменений не будут тронуты, пока не выполнена команда save;"
+                        + " изменения до неё не сохраняются");
+                fileReadable = false;
+            }
+            lazy = null;
+            columns = offHeap ? new OffHeapVehicleList() : columnar ? new ColumnarVehicleList() : null;
+            collection = columnar ? columns : new SegmentedVehicleList();
         }
+        idIndex.rebuild(collection.size());
+        // Граница из файла учитывает и удалённые элементы; в старых файлах её нет
+        idGenerator.seed(fileManager.getLoadedInfo().getLastId());
+        idGenerator.seed(maxId());
+        engine.setStorage(collection, lazy != null, columns != null);
+        saver.start(snapshotGeneration, fileReadable, new JournalReplayer());
+    }
+
+    private static Map<String, SortedView> createSortedViews() {
+        Map<String, SortedView> views = new LinkedHashMap<>();
+        views.put("name", new SortedView(Comparator.naturalOrder()));
+        views.put("capacity", new SortedView(Comparator.comparingDouble(Vehicle::getCapacity)));
+        views.put("enginePower", new SortedView(
+                Comparator.comparing(Vehicle::getEnginePower, Comparator.nullsFirst(Comparator.naturalOrder()))));
+        views.put("creationDate", new SortedView(Comparator.comparing(Vehicle::getCreationDate)));
+        return views;
+    }
+
+    private int maxId() {
+        int max = 0;
+        for (int i = 0; i < collection.size(); i++) {
+            max = Math.max(max, idAt(i));
+        }
+        return max;
     }
 
     /**
      * Возвращает информацию о коллекции
      */
     public String getInfo() {
-        return String.format("Тип коллекции: %s\nДата инициализации: %s\nКоличество элементов: %d",
-                collection.getClass().getName(), initializationDate, collection.size());
+        lock.readLock().lock();
+        try {
+            String save = saver.getLastSave();
+            return String.format("Тип коллекции: %s\nДата инициализации: %s\nКоличество элементов: %d"
+                            + "\nПоследнее сохранение: %s\nНесохранённые изменения: %s",
+                    collection.getClass().getName(), initializationDate, collection.size(),
+                    save == null ? "не выполнялось" : save, saver.isDirty() ? "есть" : "нет");
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     /**
      * Выводит все элементы коллекции
      */
     public void showAll() {
-        if (collection.isEmpty()) {
+        show(0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Выводит не больше limit элементов коллекции, начиная с позиции offset (с нуля),
+     * по снимку, без блокировки на время вывода. В ленивом режиме снимок прочитал бы в память
+     * всю коллекцию сразу, поэтому там элементы выводятся под блокировкой по одному.
+     * Если выведена не вся коллекция, в конце сообщает, какие позиции показаны.
+     */
+    public void show(int offset, int limit) {
+        if (lazy != null) {
+            read(() -> {
+                printPage(collection, offset, limit);
+                return null;
+            });
+            return;
+        }
+        printPage(read(this::snapshot), offset, limit);
+    }
+
+    private static void printPage(List<Vehicle> vehicles, int offset, int limit) {
+        int size = vehicles.size();
+        if (size == 0) {
             System.out.println("Коллекция пуста");
             return;
         }
-        collection.forEach(System.out::println);
+        if (offset >= size) {
+            System.out.println("Элементов в коллекции: " + size + ", с позиции " + offset + " выводить нечего");
+            return;
+        }
+        int shown = VehiclePrinter.console().printAll(new VehicleCursor(vehicles, offset, limit, null));
+        if (shown < size) {
+            System.out.println("Показаны элементы с " + offset + " по " + (offset + shown - 1) + " из " + size);
+        }
     }
 
     /**
      * Добавляет новый элемент в коллекцию
      */
     public void add(Vehicle vehicle) {
-        vehicle.setId(IdGenerator.generateId(collection));
-        vehicle.setCreationDate(LocalDate.now());
-        collection.push(vehicle);
+        write(() -> {
+            vehicle.setId(idGenerator.generateId());
+            vehicle.setName(names.intern(vehicle.getName()));
+            vehicle.setCreationDate(LocalDate.now());
+            push(vehicle);
+            saver.log(j -> j.logAdd(vehicle));
+            return null;
+        });
         System.out.println("Элемент добавлен с ID: " + vehicle.getId());
     }
 
+    /**
+     * Добавляет элементы из файла (xml, bin, csv, в том числе сжатого .gz) и выводит одну сводку.
+     * Каждая пачка из BulkInserter вставляется под одной блокировкой записи с одним резервированием id
+     * и одной записью в журнал. Как и при add, элементы получают новые id; дата создания берётся
+     * из файла, если она там есть.
+     */
+    public void bulkAdd(String filename) {
+        new BulkInserter(batch -> write(() -> {
+            pushAll(batch);
+            return null;
+        })).importFile(filename);
+    }
+
     /**
      * Обновляет элемент по ID
      */
     public boolean updateById(int id, Vehicle newVehicle) {
-        for (int i = 0; i < collection.size(); i++) {
-            if (collection.get(i).getId() == id) {
-                newVehicle.setId(id);
-                newVehicle.setCreationDate(collection.get(i).getCreationDate());
-                collection.set(i, newVehicle);
-                return true;
+        return updateIfPresent(id, current -> newVehicle);
+    }
+
+    /**
+     * Атомарно заменяет элемент с заданным ID результатом функции от текущего элемента.
+     * Текущий элемент нельзя менять на месте: функция возвращает новый объект.
+     * Возвращает false, если элемента с таким ID нет.
+     */
+    public boolean updateIfPresent(int id, UnaryOperator<Vehicle> update) {
+        return write(() -> {
+            int i = indexOfId(id);
+            if (i < 0) {
+                return false;
             }
-        }
-        return false;
+            Vehicle newVehicle = update.apply(collection.get(i));
+            newVehicle.setName(names.intern(newVehicle.getName()));
+            replaceById(id, newVehicle);
+            saver.log(j -> j.logUpdate(newVehicle));
+            return true;
+        });
     }
 
     /**
      * Удаляет элемент по ID
      */
     public boolean removeById(int id) {
-        return collection.removeIf(v -> v.getId() == id);
+        return write(() -> {
+            if (!removeElementById(id)) {
+                return false;
+            }
+            saver.log(j -> j.logRemoveById(id));
+            return true;
+        });
     }
 
     /**
      * Очищает коллекцию
      */
     public void clear() {
-        collection.clear();
+        write(() -> {
+            // Очистка пустой коллекции ничего не меняет: файл при сохранении не переписывается
+            if (!collection.isEmpty()) {
+                clearElements();
+                saver.log(MutationJournal::logClear);
+            }
+            return null;
+        });
     }
 
     /**
-     * Сохраняет коллекцию в файл
+     * Сохраняет коллекцию в файл, если она менялась с последнего сохранения.
+     * Под блокировкой снимается только снимок, файл пишется уже без неё.
      */
     public void save() throws Exception {
-        fileManager.saveCollection(collection);
-        System.out.println("Коллекция сохранена в файл");
+        System.out.println(saver.save() ? "Коллекция сохранена в файл" : "Изменений нет, коллекция уже сохранена");
     }
 
     /**
      * Удаляет последний элемент
      */
     public void removeLast() {
-        if (!collection.isEmpty()) {
-            collection.pop();
-            System.out.println("Последний элемент удален");
-        } else {
-            System.out.println("Коллекция пуста");
-        }
+        boolean removed = write(() -> {
+            if (collection.isEmpty()) {
+                return false;
+            }
+            pop();
+            saver.log(MutationJournal::logRemoveLast);
+            return true;
+        });
+        System.out.println(removed ? "Последний элемент удален" : "Коллекция пуста");
     }
 
     /**
      * Удаляет все элементы, меньшие заданного
      */
     public void removeLower(Vehicle vehicle) {
-        int initialSize = collection.size();
-        collection.removeIf(v -> v.compareTo(vehicle) < 0);
-        System.out.println("Удалено элементов: " + (initialSize - collection.size()));
+        int removed = write(() -> {
+            int count = removeComparedTo(vehicle, -1);
+            if (count > 0) {
+                saver.log(j -> j.logRemoveLower(vehicle.getName()));
+            }
+            return count;
+        });
+        System.out.println("Удалено элементов: " + removed);
+    }
+
+    /**
+     * Удаляет все элементы, большие заданного
+     */
+    public void removeGreater(Vehicle vehicle) {
+        int removed = write(() -> {
+            int count = removeComparedTo(vehicle, 1);
+            if (count > 0) {
+                saver.log(j -> j.logRemoveGreater(vehicle.getName()));
+            }
+            return count;
+        });
+        System.out.println("Удалено элементов: " + removed);
+    }
+
+    /**
+     * Возвращает количество элементов, меньших заданного
+     */
+    public int countLower(Vehicle vehicle) {
+        if (columns != null) {
+            return scan((from, to) -> columns.scanCountNamesLessThan(from, to, vehicle.getName()), Integer::sum);
+        }
+        if (lazy != null) {
+            return countLazy(v -> v.compareTo(vehicle) < 0);
+        }
+        return read(nameIndex, index -> index.count(vehicle.getName(), -1));
     }
 
     /**
      * Сортирует коллекцию
      */
     public void sort() {
-        Collections.sort(collection);
+        write(() -> {
+            if (sortElements()) {
+                saver.log(MutationJournal::logSort);
+            }
+            return null;
+        });
         System.out.println("Коллекция отсортирована");
     }
 
     /**
-     * Возвращает сумму значений capacity
+     * Возвращает элементы по возрастанию поля, при равных значениях - по id.
+     * Список берётся из упорядоченной копии и не меняется при последующих изменениях коллекции.
+     */
+    public List<Vehicle> sortedBy(String field) {
+        SortedView view = sortedViews.get(field);
+        if (view == null) {
+            throw new IllegalArgumentException("поле сортировки должно быть одним из " + getSortFields());
+        }
+        if (lazy != null) {
+            return read(() -> {
+                List<Vehicle> result = new ArrayList<>(collection);
+                result.sort(view.order());
+                return result;
+            });
+        }
+        return read(view, SortedView::list);
+    }
+
+    /**
+     * Возвращает поля, по которым доступна сортировка
+     */
+    public Set<String> getSortFields() {
+        return sortedViews.keySet();
+    }
+
+    /**
+     * Возвращает сумму значений capacity.
+     * Когда сводка построена, сумма берётся из опубликованного значения без блокировки.
      */
     public double getSumOfCapacity() {
-        return collection.stream()
-                .mapToDouble(Vehicle::getCapacity)
-                .sum();
+        double sum = publishedSum;
+        if (!Double.isNaN(sum)) {
+            return sum;
+        }
+        return read(stats, s -> s.getCapacity().getSum());
+    }
+
+    /**
+     * Возвращает копию сводок по capacity и enginePower
+     */
+    public VehicleStats getStats() {
+        return read(stats, VehicleStats::new);
     }
 
     /**
      * Возвращает элементы с заданным capacity
      */
     public List<Vehicle> filterByCapacity(double capacity) {
-        return collection.stream()
-                .filter(v -> Math.abs(v.getCapacity() - capacity) < 0.0001)
-                .collect(Collectors.toList());
+        if (columns != null) {
+            return scan((from, to) -> columns.scanCapacityBetween(from, to,
+                    capacity - 0.0001, false, capacity + 0.0001, false), QueryExecutor::concat);
+        }
+        if (lazy != null) {
+            return filterLazy(v -> v.getCapacity() > capacity - 0.0001 && v.getCapacity() < capacity + 0.0001);
+        }
+        return read(capacityIndex, index ->
+                engine.inCollectionOrder(index.between(capacity - 0.0001, false, capacity + 0.0001, false)));
     }
 
     /**
-     * Возвращает элементы с типом меньше заданного
+     * Возвращает элементы с capacity от min до max включительно по возрастанию capacity,
+     * при равной capacity - в порядке коллекции
+     */
+    public List<Vehicle> filterCapacityBetween(double min, double max) {
+        if (columns != null) {
+            List<Vehicle> result = scan((from, to) -> columns.scanCapacityBetween(from, to, min, true, max, true),
+                    QueryExecutor::concat);
+            result.sort(Comparator.comparingDouble(Vehicle::getCapacity));
+            return result;
+        }
+        if (lazy != null) {
+            List<Vehicle> result = filterLazy(v -> v.getCapacity() >= min && v.getCapacity() <= max);
+            result.sort(Comparator.comparingDouble(Vehicle::getCapacity));
+            return result;
+        }
+        return read(capacityIndex, index -> {
+            List<Vehicle> result = engine.inCollectionOrder(index.between(min, true, max, true));
+            result.sort(Comparator.comparingDouble(Vehicle::getCapacity));
+            return result;
+        });
+    }
+
+    /**
+     * Возвращает количество элементов с capacity больше заданного
+     */
+    public int countCapacityAbove(double capacity) {
+        if (columns != null) {
+            return scan((from, to) -> columns.scanCountCapacityAbove(from, to, capacity), Integer::sum);
+        }
+        if (lazy != null) {
+            return countLazy(v -> v.getCapacity() > capacity);
+        }
+        return read(capacityIndex, index -> index.countAbove(capacity));
+    }
+
+    /**
+     * Возвращает элементы с типом меньше заданного в порядке коллекции
      */
     public List<Vehicle> filterLessThanType(VehicleType type) {
-        return collection.stream()
-                .filter(v -> v.getType().ordinal() < type.ordinal())
-                .collect(Collectors.toList());
+        if (columns != null) {
+            return scan((from, to) -> columns.scanTypesLessThan(from, to, type), QueryExecutor::concat);
+        }
+        if (lazy != null) {
+            return filterLazy(v -> v.getType() != null && v.getType().compareTo(type) < 0);
+        }
+        return read(typeIndex, index -> engine.inCollectionOrder(index.lessThan(type)));
+    }
+
+    /**
+     * Возвращает количество элементов каждого типа
+     */
+    public Map<VehicleType, Integer> countByType() {
+        if (columns != null) {
+            int[] counts = scan(columns::scanTypeCounts, QueryExecutor::sum);
+            Map<VehicleType, Integer> result = new EnumMap<>(VehicleType.class);
+            for (VehicleType t : VehicleType.values()) {
+                result.put(t, counts[t.ordinal()]);
+            }
+            return result;
+        }
+        if (lazy != null) {
+            return read(() -> {
+                Map<VehicleType, Integer> result = new EnumMap<>(VehicleType.class);
+                for (VehicleType t : VehicleType.values()) {
+                    result.put(t, 0);
+                }
+                for (Vehicle vehicle : collection) {
+                    if (vehicle.getType() != null) {
+                        result.merge(vehicle.getType(), 1, Integer::sum);
+                    }
+                }
+                return result;
+            });
+        }
+        return read(typeIndex, TypeIndex::counts);
+    }
+
+    /**
+     * Возвращает количество элементов с каждым типом топлива
+     */
+    public Map<FuelType, Integer> countByFuelType() {
+        if (columns != null) {
+            int[] counts = scan(columns::scanFuelTypeCounts, QueryExecutor::sum);
+            Map<FuelType, Integer> result = new EnumMap<>(FuelType.class);
+            for (FuelType t : FuelType.values()) {
+                result.put(t, counts[t.ordinal()]);
+            }
+            return result;
+        }
+        return read(fuelTypeCounts, FuelTypeCounts::counts);
+    }
+
+    /**
+     * Возвращает количество элементов без типа топлива
+     */
+    public int countWithoutFuelType() {
+        if (columns != null) {
+            return scan(columns::scanFuelTypeCounts, QueryExecutor::sum)[FuelType.values().length];
+        }
+        return read(fuelTypeCounts, FuelTypeCounts::getWithoutFuelType);
+    }
+
+    /**
+     * Возвращает элементы с координатами в прямоугольнике от (minX, minY) до (maxX, maxY) включительно
+     * в порядке коллекции
+     */
+    public List<Vehicle> filterInBox(double minX, double minY, double maxX, double maxY) {
+        return read(spatialIndex, index -> atPositions(index.box(minX, minY, maxX, maxY), true));
+    }
+
+    /**
+     * Возвращает k ближайших к точке (x, y) элементов по возрастанию расстояния
+     */
+    public List<Vehicle> nearest(int k, double x, double y) {
+        return read(spatialIndex, index -> atPositions(index.nearest(k, x, y), false));
+    }
+
+    /**
+     * Выполняет составной запрос по плану
+     */
+    public List<Vehicle> query(Query query) {
+        return read(engine.indexesFor(query), () -> engine.execute(engine.plan(query)));
+    }
+
+    /**
+     * Возвращает курсор по результату запроса. Запрос без сортировки, который выполняется проходом
+     * по коллекции, не собирается в список: курсор проверяет условия по снимку, пока его читают,
+     * уже без блокировки. Остальные планы выполняются сразу, как в query.
+     */
+    public VehicleCursor cursor(Query query) {
+        return read(engine.indexesFor(query), () -> {
+            QueryPlan plan = engine.plan(query);
+            if (plan.access == QueryPlan.Access.SCAN && query.order() == null && lazy == null) {
+                return new VehicleCursor(snapshot(), 0, query.hasLimit() ? query.getLimit() : Integer.MAX_VALUE,
+                        query::test);
+            }
+            return new VehicleCursor(engine.execute(plan));
+        });
+    }
+
+    /**
+     * Возвращает план, по которому будет выполнен запрос
+     */
+    public QueryPlan explain(Query query) {
+        return read(engine.indexesFor(query), () -> engine.plan(query));
     }
 
     /**
      * Проверяет существование элемента с заданным ID
      */
     public boolean containsId(int id) {
-        return collection.stream().anyMatch(v -> v.getId() == id);
+        lock.readLock().lock();
+        try {
+            return indexOfId(id) >= 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Дожидается начатого фонового сохранения и сбрасывает журнал на диск
+     */
+    public void close() {
+        queries.shutdown();
+        saver.close();
+    }
+
+    /**
+     * Выполняет запрос к элементам коллекции под блокировкой чтения
+     */
+    private <T> T read(Supplier<T> query) {
+        return read(List.of(), query);
+    }
+
+    /**
+     * Выполняет запрос к вторичному индексу под блокировкой чтения
+     */
+    private <I extends VehicleIndex, T> T read(I index, Function<I, T> query) {
+        return read(List.of(index), () -> query.apply(index));
+    }
+
+    /**
+     * Выполняет запрос, которому нужны заданные вторичные индексы, под блокировкой чтения.
+     * Если какой-то индекс ещё не построен, а также в ленивом режиме, где чтение элементов
+     * заполняет кэш списка, запрос меняет состояние и выполняется под блокировкой записи.
+     */
+    private <T> T read(List<? extends VehicleIndex> indexes, Supplier<T> query) {
+        lock.readLock().lock();
+        try {
+            if (lazy == null && indexes.stream().allMatch(this::isBuilt)) {
+                return query.get();
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        // Блокировку чтения нельзя повысить до записи; индексы перепроверяются уже под ней
+        return write(() -> {
+            indexes.forEach(this::index);
+            return query.get();
+        });
+    }
+
+    /**
+     * Выполняет изменение под блокировкой записи и публикует новую сумму capacity
+     */
+    private <T> T write(Supplier<T> action) {
+        lock.writeLock().lock();
+        try {
+            return action.get();
+        } finally {
+            publishedSum = isBuilt(stats) ? stats.getCapacity().getSum() : Double.NaN;
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Выполняет запрос по кускам коллекции под блокировкой чтения; на больших коллекциях - параллельно
+     */
+    private <R> R scan(QueryExecutor.RangeQuery<R> query, BinaryOperator<R> combine) {
+        return read(() -> queries.query(collection.size(), query, combine));
+    }
+
+    /**
+     * Отбирает элементы одним проходом в этом потоке. Так запросы выполняются в ленивом режиме:
+     * индекс по значению поля держал бы все прочитанные элементы в памяти мимо кэша списка,
+     * а сам кэш нельзя заполнять из потоков пула.
+     */
+    private List<Vehicle> filterLazy(Predicate<Vehicle> filter) {
+        return read(() -> {
+            List<Vehicle> result = new ArrayList<>();
+            for (Vehicle vehicle : collection) {
+                if (filter.test(vehicle)) {
+                    result.add(vehicle);
+                }
+            }
+            return result;
+        });
+    }
+
+    private int countLazy(Predicate<Vehicle> filter) {
+        return read(() -> {
+            int count = 0;
+            for (Vehicle vehicle : collection) {
+                if (filter.test(vehicle)) {
+                    count++;
+                }
+            }
+            return count;
+        });
+    }
+
+    /**
+     * Заменяет элемент с заданным ID, сохраняя его дату создания
+     */
+    private boolean replaceById(int id, Vehicle newVehicle) {
+        int i = indexOfId(id);
+        if (i < 0) {
+            return false;
+        }
+        newVehicle.setId(id);
+        newVehicle.setCreationDate(collection.get(i).getCreationDate());
+        Vehicle old = collection.set(i, newVehicle);
+        sortedPrefix = Math.min(sortedPrefix, i);
+        for (VehicleIndex index : builtIndexes) {
+            index.remove(old);
+            index.add(newVehicle);
+        }
+        return true;
+    }
+
+    private boolean removeElementById(int id) {
+        int i = indexOfId(id);
+        if (i < 0) {
+            return false;
+        }
+        Vehicle removed = collection.remove(i);
+        if (i < sortedPrefix) {
+            sortedPrefix--;
+        }
+        idIndex.removed(id);
+        for (VehicleIndex index : builtIndexes) {
+            index.remove(removed);
+        }
+        return true;
+    }
+
+    private int indexOfId(int id) {
+        return idIndex.positionOf(id);
+    }
+
+    /**
+     * Возвращает id элемента на позиции; в ленивом и колоночном режимах объект элемента при этом не создаётся
+     */
+    private int idAt(int position) {
+        if (lazy != null) {
+            return lazy.idAt(position);
+        }
+        return columns != null ? columns.idAt(position) : collection.get(position).getId();
+    }
+
+    private void push(Vehicle vehicle) {
+        collection.add(vehicle);
+        idIndex.added(vehicle.getId(), collection.size());
+        for (VehicleIndex index : builtIndexes) {
+            index.add(vehicle);
+        }
+    }
+
+    /**
+     * Вставляет пачку проверенных элементов в конец коллекции. Вызывается под блокировкой записи.
+     */
+    private void pushAll(List<Vehicle> batch) {
+        int id = idGenerator.reserve(batch.size());
+        for (Vehicle vehicle : batch) {
+            vehicle.setId(id++);
+            push(vehicle);
+        }
+        saver.log(j -> j.logAddAll(batch));
+    }
+
+    private void pop() {
+        int last = collection.size() - 1;
+        idIndex.removed(idAt(last));
+        Vehicle removed = collection.remove(last);
+        sortedPrefix = Math.min(sortedPrefix, last);
+        for (VehicleIndex index : builtIndexes) {
+            index.remove(removed);
+        }
+    }
+
+    private void clearElements() {
+        collection.clear();
+        sortedPrefix = 0;
+        idIndex.clear();
+        for (VehicleIndex index : builtIndexes) {
+            index.clear();
+        }
+    }
+
+    /**
+     * Возвращает элементы с заданными id; в порядке коллекции или в порядке массива
+     */
+    private List<Vehicle> atPositions(int[] ids, boolean collectionOrder) {
+        int[] positions = new int[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            positions[i] = indexOfId(ids[i]);
+        }
+        if (collectionOrder) {
+            Arrays.sort(positions);
+        }
+        List<Vehicle> result = new ArrayList<>(positions.length);
+        for (int position : positions) {
+            result.add(collection.get(position));
+        }
+        return result;
+    }
+
+    /**
+     * Возвращает вторичный индекс, при первом обращении строя его по всей коллекции
+     */
+    private <T extends VehicleIndex> T index(T index) {
+        if (!isBuilt(index)) {
+            index.clear();
+            collection.forEach(index::add);
+            if (!builtIndexes.contains(index)) {
+                builtIndexes.add(index);
+            }
+        }
+        return index;
+    }
+
+    private boolean isBuilt(VehicleIndex index) {
+        return builtIndexes.contains(index);
+    }
+
+    /**
+     * Сбрасывает вторичные индексы после массового изменения; они перестроятся при следующем запросе
+     */
+    private void invalidateIndexes() {
+        builtIndexes.forEach(VehicleIndex::clear);
+        builtIndexes.clear();
+    }
+
+    /**
+     * Перед перезаписью файла ленивый список дочитывает все записи и отпускает файл
+     */
+    private void detachLazy() throws IOException {
+        if (lazy != null) {
+            lazy.detach();
+            lazy = null;
+            engine.setStorage(collection, false, columns != null);
+        }
+    }
+
+    /**
+     * Удаляет элементы, меньшие (sign < 0) или большие (sign > 0) заданного, и возвращает их количество.
+     * Сколько элементов удаляется и какие, известно из индекса имён. Немногие удаляются по позициям,
+     * а остальные индексы правятся по каждому из них; при массовом удалении дешевле один проход
+     * сравнений и перестройка индексов, а индекс имён только обрезается.
+     * При колоночном хранении сравнивается колонка имён, в ленивом режиме - каждый элемент.
+     */
+    private int removeComparedTo(Vehicle vehicle, int sign) {
+        int removed = removeElementsComparedTo(vehicle, sign);
+        // Оставшиеся элементы упорядоченного начала остаются в начале и в прежнем порядке
+        sortedPrefix = Math.max(0, sortedPrefix - removed);
+        return removed;
+    }
+
+    private int removeElementsComparedTo(Vehicle vehicle, int sign) {
+        int initialSize = collection.size();
+        String name = vehicle.getName();
+        if (lazy == null && columns == null) {
+            NameIndex names = index(nameIndex);
+            int count = names.count(name, sign);
+            if (count == 0) {
+                return 0;
+            }
+            if (count <= initialSize / 16) {
+                List<Vehicle> removed = names.find(name, sign);
+                boolean[] marks = markPositions(removed);
+                if (marks != null) {
+                    removeMarked(marks);
+                    names.cut(name, sign);
+                    for (Vehicle v : removed) {
+                        idIndex.removed(v.getId());
+                        for (VehicleIndex index : builtIndexes) {
+                            if (index != names) {
+                                index.remove(v);
+                            }
+                        }
+                    }
+                    return count;
+                }
+            }
+            collection.removeIf(v -> Integer.signum(v.compareTo(vehicle)) == sign);
+            idIndex.rebuild(collection.size());
+            builtIndexes.remove(names);
+            invalidateIndexes();
+            names.cut(name, sign);
+            builtIndexes.add(names);
+            return initialSize - collection.size();
+        }
+        boolean removed = columns != null
+                ? columns.removeNamesComparedTo(name, sign)
+                : collection.removeIf(v -> Integer.signum(v.compareTo(vehicle)) == sign);
+        if (removed) {
+            idIndex.rebuild(collection.size());
+            invalidateIndexes();
+        }
+        return initialSize - collection.size();
+    }
+
+    /**
+     * Отмечает позиции заданных элементов; null, если позицию по id определить нельзя
+     * (id не задан или повторяется)
+     */
+    private boolean[] markPositions(List<Vehicle> vehicles) {
+        boolean[] marks = new boolean[collection.size()];
+        for (Vehicle vehicle : vehicles) {
+            int i = indexOfId(vehicle.getId());
+            if (i < 0 || marks[i]) {
+                return null;
+            }
+            marks[i] = true;
+        }
+        return marks;
+    }
+
+    /**
+     * Удаляет элементы на отмеченных позициях одним проходом сдвига, сохраняя порядок остальных
+     */
+    private void removeMarked(boolean[] marks) {
+        int kept = 0;
+        for (int i = 0; i < marks.length; i++) {
+            if (!marks[i]) {
+                if (kept != i) {
+                    collection.set(kept, collection.get(i));
+                }
+                kept++;
+            }
+        }
+        collection.subList(kept, marks.length).clear();
+    }
+
+    /**
+     * Сортирует коллекцию в естественном порядке. Уже упорядоченное начало не сортируется заново:
+     * сортируется только остальная часть (большая - параллельно), и она сливается с началом.
+     * Результат тот же, что у устойчивой сортировки всей коллекции. Если коллекция не менялась
+     * с прошлой сортировки, ничего не делается. Хранение вне кучи делает то же со своими записями,
+     * не создавая объектов. Возвращает false, если порядок элементов не изменился.
+     */
+    private boolean sortElements() {
+        int size = collection.size();
+        if (collection instanceof OffHeapVehicleList) {
+            boolean changed = false;
+            if (sortedPrefix < size) {
+                int from = ((OffHeapVehicleList) collection).sortTail(sortedPrefix);
+                idIndex.moved(from, size);
+                changed = from < size;
+            }
+            sortedPrefix = size;
+            return changed;
+        }
+        int prefix = sortedPrefix;
+        while (prefix < size && (prefix == 0 || collection.get(prefix - 1).compareTo(collection.get(prefix)) <= 0)) {
+            prefix++;
+        }
+        if (prefix < size) {
+            // Object[], а не Vehicle[]: без проверки типа при каждой записи в массив сортировка заметно быстрее
+            Object[] tail = collection.subList(prefix, size).toArray();
+            queries.sort(tail, null);
+            idIndex.moved(mergeSorted(prefix, tail), size);
+        }
+        sortedPrefix = size;
+        // Начало оборвалось на паре элементов не по порядку, значит, сортировка их переставила
+        return prefix < size;
+    }
+
+    /**
+     * Сливает упорядоченное начало коллекции длины prefix с упорядоченным хвостом, записывая результат
+     * на место. Элементы начала, не большие первого элемента хвоста, остаются на своих позициях;
+     * при равенстве элемент начала идёт раньше. Возвращает первую позицию, элемент на которой мог смениться.
+     */
+    private int mergeSorted(int prefix, Object[] tail) {
+        int from = upperBound(prefix, (Vehicle) tail[0]);
+        Object[] head = collection.subList(from, prefix).toArray();
+        int i = 0;
+        int j = 0;
+        for (int k = from; k < collection.size(); k++) {
+            if (j == tail.length || (i < head.length && ((Vehicle) head[i]).compareTo((Vehicle) tail[j]) <= 0)) {
+                collection.set(k, (Vehicle) head[i++]);
+            } else {
+                collection.set(k, (Vehicle) tail[j++]);
+            }
+        }
+        return from;
+    }
+
+    /**
+     * Возвращает первую позицию в упорядоченном начале коллекции с элементом больше заданного
+     */
+    private int upperBound(int prefix, Vehicle vehicle) {
+        int low = 0;
+        int high = prefix;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (collection.get(mid).compareTo(vehicle) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Возвращает неизменяемый снимок коллекции, который читается без блокировки. Вызывается под блокировкой.
+     * Элементы в снимке общие с коллекцией: изменения заменяют элементы целиком, а не правят их на месте.
+     * Списки с копированием при записи отдают снимок без копирования элементов, остальные копируются.
+     */
+    private List<Vehicle> snapshot() {
+        if (collection instanceof SegmentedVehicleList) {
+            return ((SegmentedVehicleList) collection).snapshot();
+        }
+        return columns != null ? columns.snapshot() : new ArrayList<>(collection);
+    }
+
+    /**
+     * Применяет записи журнала к коллекции без повторной записи в журнал
+     */
+    private class JournalReplayer implements MutationJournal.Replayer {
+        @Override
+        public void add(Vehicle vehicle) {
+            idGenerator.seed(vehicle.getId());
+            push(vehicle);
+        }
+
+        @Override
+        public void update(Vehicle vehicle) {
+            replaceById(vehicle.getId(), vehicle);
+        }
+
+        @Override
+        public void removeById(int id) {
+            removeElementById(id);
+        }
+
+        @Override
+        public void removeLast() {
+            if (!collection.isEmpty()) {
+                pop();
+            }
+        }
+
+        @Override
+        public void removeLower(String name) {
+            Vehicle pivot = new Vehicle();
+            pivot.setName(name);
+            removeComparedTo(pivot, -1);
+        }
+
+        @Override
+        public void removeGreater(String name) {
+            Vehicle pivot = new Vehicle();
+            pivot.setName(name);
+            removeComparedTo(pivot, 1);
+        }
+
+        @Override
+        public void clear() {
+            clearElements();
+        }
+
+        @Override
+        public void sort() {
+            sortElements();
+        }
     }
 }
\ No newline at end of file
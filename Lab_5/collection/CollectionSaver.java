@@ -0,0 +1,298 @@
+package collection;
+
+import file.FileManager;
+import file.MutationJournal;
+import file.SnapshotInfo;
+import model.Vehicle;
+import utils.AppConfig;
+import utils.IdGenerator;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+
+/**
+ * Сохранение коллекции в файл.
+ *
+ * Считает изменения коллекции: сохранение без изменений ничего не делает.
+ * Если подключён журнал, каждое изменение сразу дописывается в него, а когда сегмент журнала
+ * вырастает до JOURNAL_COMPACT_BYTES, журнал сворачивается в новый снимок в фоновом потоке;
+ * там же по таймеру выполняется автосохранение. Копия коллекции снимается под блокировкой записи,
+ * а файл пишется уже без неё, не задерживая изменения.
+ * Если существующий файл данных при запуске не прочитан, он не перезаписывается, а изменения
+ * не журналируются, пока не выполнен явный save.
+ */
+class CollectionSaver {
+    private final FileManager fileManager;
+    private final MutationJournal journal; // null, если журнал отключён
+    private final ReadWriteLock lock;
+    private final IdGenerator idGenerator;
+    private final SnapshotSource snapshots;
+    private final long compactThreshold;
+    private final long autosaveSeconds;
+    private final ScheduledExecutorService background; // фоновые сохранения; null, если они не нужны
+    private final Object snapshotLock = new Object();
+    private volatile boolean compacting;
+    // Файл данных не прочитан: пока не выполнен save, файл не перезаписывается, а изменения не журналируются
+    private volatile boolean loadFailed;
+
+    // Счётчик изменений и его значение в последнем записанном снимке
+    private long modCount;
+    private volatile long savedModCount;
+    private volatile SaveStats lastSave; // null, пока коллекция не сохранялась
+
+    CollectionSaver(FileManager fileManager, MutationJournal journal, ReadWriteLock lock,
+                    IdGenerator idGenerator, SnapshotSource snapshots) {
+        this.fileManager = fileManager;
+        this.journal = journal;
+        this.lock = lock;
+        this.idGenerator = idGenerator;
+        this.snapshots = snapshots;
+        this.compactThreshold = AppConfig.getLong(AppConfig.JOURNAL_COMPACT_BYTES, 4L * 1024 * 1024);
+        this.autosaveSeconds = AppConfig.getLong(AppConfig.AUTOSAVE_SECONDS, 0);
+        this.background = journal == null && autosaveSeconds <= 0 ? null
+                : Executors.newSingleThreadScheduledExecutor(r -> {
+                    Thread thread = new Thread(r, "collection-saver");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * Начинает работу после загрузки файла: применяет к прочитанному снимку изменения из журнала
+     * и запускает автосохранение. Если файл не прочитан, сегменты журнала относятся к нему,
+     * поэтому они не проигрываются поверх пустой коллекции и остаются на диске до явного save.
+     */
+    void start(long snapshotGeneration, boolean fileReadable, MutationJournal.Replayer replayer) {
+        this.loadFailed = !fileReadable;
+        if (journal != null) {
+            try {
+                if (loadFailed) {
+                    journal.skipExisting();
+                } else {
+                    int replayed = journal.replay(snapshotGeneration, replayer);
+                    // Проигранные изменения есть только в журнале, файл данных их ещё не содержит
+                    modCount += replayed;
+                    if (replayed > 0) {
+                        System.out.println("Восстановлено изменений из журнала: " + replayed);
+                    }
+                }
+            } catch (Exception e) {
+                System.err.println("Ошибка чтения журнала изменений: " + e.getMessage());
+            }
+        }
+        if (autosaveSeconds > 0) {
+            background.scheduleWithFixedDelay(this::autosave, autosaveSeconds, autosaveSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Отмечает изменение коллекции, дописывает его в журнал
+     * и при необходимости запускает сворачивание журнала. Вызывается под блокировкой записи.
+     */
+    void log(JournalWrite write) {
+        modCount++;
+        if (journal == null || loadFailed) {
+            return;
+        }
+        try {
+            write.to(journal);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Изменение не записано в журнал: " + e.getMessage(), e);
+        }
+        if (journal.getSegmentBytes() >= compactThreshold) {
+            compactInBackground();
+        }
+    }
+
+    /**
+     * Есть ли изменения, которых нет в файле. Вызывается под блокировкой.
+     */
+    boolean isDirty() {
+        return modCount != savedModCount;
+    }
+
+    /**
+     * Возвращает сведения о последнем сохранении; null, если коллекция не сохранялась
+     */
+    String getLastSave() {
+        SaveStats save = lastSave;
+        return save == null ? null : save.toString();
+    }
+
+    /**
+     * Сохраняет коллекцию в файл, если она менялась с последнего сохранения; возвращает false, если нет.
+     * С журналом это внеочередное сворачивание: снимок заменяет все накопленные сегменты.
+     */
+    boolean save() throws IOException {
+        Snapshot snapshot;
+        lock.writeLock().lock();
+        try {
+            if (!isDirty()) {
+                return false;
+            }
+            snapshot = takeSnapshot();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        writeSnapshot(snapshot);
+        return true;
+    }
+
+    /**
+     * Дожидается начатого фонового сохранения и сбрасывает журнал на диск
+     */
+    void close() {
+        if (background == null) {
+            return;
+        }
+        background.shutdown();
+        try {
+            background.awaitTermination(1, TimeUnit.MINUTES);
+            if (journal != null) {
+                journal.close();
+            }
+        } catch (IOException e) {
+            System.err.println("Ошибка закрытия журнала изменений: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Фиксирует копию коллекции и записывает снимок в отдельном потоке
+     */
+    private void compactInBackground() {
+        if (compacting) {
+            return;
+        }
+        compacting = true;
+        try {
+            Snapshot snapshot = takeSnapshot();
+            background.execute(() -> {
+                try {
+                    writeSnapshot(snapshot);
+                } catch (IOException e) {
+                    System.err.println("Ошибка сворачивания журнала: " + e.getMessage());
+                } finally {
+                    compacting = false;
+                }
+            });
+        } catch (IOException e) {
+            compacting = false;
+            System.err.println("Ошибка сворачивания журнала: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Автосохранение по таймеру: копия снимается под блокировкой, запись идёт без неё.
+     * Непрочитанный при запуске файл автосохранение не перезаписывает.
+     */
+    private void autosave() {
+        Snapshot snapshot;
+        lock.writeLock().lock();
+        try {
+            if (!isDirty() || loadFailed) {
+                return;
+            }
+            snapshot = takeSnapshot();
+        } catch (IOException e) {
+            System.err.println("Ошибка автосохранения: " + e.getMessage());
+            return;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        try {
+            writeSnapshot(snapshot);
+        } catch (IOException e) {
+            System.err.println("Ошибка автосохранения: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Снимает копию коллекции на текущий момент для записи в файл.
+     * С журналом начинается новый сегмент, снимок получает номер нового поколения.
+     */
+    private Snapshot takeSnapshot() throws IOException {
+        List<Vehicle> vehicles = snapshots.take();
+        long generation = journal == null ? 0 : journal.rotate();
+        return new Snapshot(vehicles, new SnapshotInfo(generation, idGenerator.getLastId()), modCount);
+    }
+
+    /**
+     * Записывает снимок и удаляет сегменты журнала, которые в нём уже учтены.
+     * Снимок не новее уже записанного пропускается.
+     */
+    private void writeSnapshot(Snapshot snapshot) throws IOException {
+        synchronized (snapshotLock) {
+            if (snapshot.modCount <= savedModCount) {
+                return;
+            }
+            long start = System.nanoTime();
+            long bytes = fileManager.saveCollection(snapshot.vehicles, snapshot.info);
+            lastSave = new SaveStats(LocalDateTime.now(), (System.nanoTime() - start) / 1_000_000, bytes);
+            savedModCount = snapshot.modCount;
+            loadFailed = false;
+            if (journal != null) {
+                journal.deleteBefore(snapshot.info.getJournalGeneration());
+            }
+        }
+    }
+
+    /**
+     * Запись одного изменения в журнал
+     */
+    interface JournalWrite {
+        void to(MutationJournal journal) throws IOException;
+    }
+
+    /**
+     * Источник неизменяемых снимков коллекции; вызывается под блокировкой записи
+     */
+    interface SnapshotSource {
+        List<Vehicle> take() throws IOException;
+    }
+
+    /**
+     * Копия коллекции для записи в файл
+     */
+    private static class Snapshot {
+        final List<Vehicle> vehicles;
+        final SnapshotInfo info;
+        final long modCount;
+
+        Snapshot(List<Vehicle> vehicles, SnapshotInfo info, long modCount) {
+            this.vehicles = vehicles;
+            this.info = info;
+            this.modCount = modCount;
+        }
+    }
+
+    /**
+     * Сведения о последнем сохранении
+     */
+    private static class SaveStats {
+        private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+        final LocalDateTime time;
+        final long millis;
+        final long bytes;
+
+        SaveStats(LocalDateTime time, long millis, long bytes) {
+            this.time = time;
+            this.millis = millis;
+            this.bytes = bytes;
+        }
+
+        @Override
+        public String toString() {
+            return time.format(TIME_FORMAT) + ", " + millis + " мс, " + bytes + " байт";
+        }
+    }
+}
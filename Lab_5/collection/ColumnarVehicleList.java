@@ -0,0 +1,364 @@
+package collection;
+
+import model.Coordinates;
+import model.FuelType;
+import model.Vehicle;
+import model.VehicleType;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Список транспортных средств с колоночным хранением.
+ *
+ * Поля всех элементов лежат в параллельных массивах примитивов (id, capacity, enginePower,
+ * координаты, день создания, порядковые номера type и fuelType), без отдельного объекта
+ * Vehicle, Coordinates и упакованных Double на каждый элемент. Объект Vehicle создаётся
+ * при обращении к элементу и является копией: изменения в нём на список не влияют.
+ * Запросы по полям (scan*) проходят по одному массиву подряд и не создают объектов, кроме найденных.
+ * Запросы принимают диапазон позиций, чтобы куски коллекции можно было обработать параллельно.
+ * Снимок списка разделяет с ним массивы; перед следующим изменением список копирует их.
+ */
+public class ColumnarVehicleList extends AbstractList<Vehicle> implements VehicleColumns, RandomAccess {
+    private static final byte NULL_ENUM = -1;
+    private static final byte NULL_X = 1;
+    private static final byte NULL_ENGINE_POWER = 2;
+    private static final byte NULL_COORDINATES = 4;
+
+    private static final VehicleType[] TYPES = VehicleType.values();
+    private static final FuelType[] FUEL_TYPES = FuelType.values();
+
+    private int[] ids;
+    private String[] names;
+    private double[] x;
+    private int[] y;
+    private int[] creationDay;
+    private double[] enginePower;
+    private double[] capacity;
+    private byte[] type;
+    private byte[] fuelType;
+    private byte[] flags;
+    private int size;
+    private boolean shared; // массивы есть в снимке, перед изменением их нужно скопировать
+
+    public ColumnarVehicleList() {
+        allocate(16);
+    }
+
+    private ColumnarVehicleList(ColumnarVehicleList source) {
+        ids = source.ids;
+        names = source.names;
+        x = source.x;
+        y = source.y;
+        creationDay = source.creationDay;
+        enginePower = source.enginePower;
+        capacity = source.capacity;
+        type = source.type;
+        fuelType = source.fuelType;
+        flags = source.flags;
+        size = source.size;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Vehicle get(int i) {
+        Objects.checkIndex(i, size);
+        Coordinates coordinates = null;
+        if ((flags[i] & NULL_COORDINATES) == 0) {
+            coordinates = new Coordinates();
+            if ((flags[i] & NULL_X) == 0) coordinates.setX(x[i]);
+            coordinates.setY(y[i]);
+        }
+        return new Vehicle(ids[i], names[i], coordinates, LocalDate.ofEpochDay(creationDay[i]),
+                (flags[i] & NULL_ENGINE_POWER) == 0 ? enginePower[i] : null, capacity[i],
+                type[i] == NULL_ENUM ? null : TYPES[type[i]],
+                fuelType[i] == NULL_ENUM ? null : FUEL_TYPES[fuelType[i]]);
+    }
+
+    @Override
+    public Vehicle set(int i, Vehicle vehicle) {
+        Vehicle old = get(i);
+        unshare();
+        store(i, vehicle);
+        return old;
+    }
+
+    @Override
+    public void add(int i, Vehicle vehicle) {
+        Objects.checkIndex(i, size + 1);
+        unshare();
+        if (size == ids.length) {
+            grow(ids.length + (ids.length >> 1));
+        }
+        shift(i, i + 1, size - i);
+        store(i, vehicle);
+        size++;
+        modCount++;
+    }
+
+    @Override
+    public Vehicle remove(int i) {
+        Vehicle old = get(i);
+        unshare();
+        shift(i + 1, i, size - i - 1);
+        size--;
+        names[size] = null;
+        modCount++;
+        return old;
+    }
+
+    /**
+     * Удаляет подходящие элементы за один проход со сдвигом массивов
+     */
+    @Override
+    public boolean removeIf(Predicate<? super Vehicle> filter) {
+        unshare();
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (!filter.test(get(i))) {
+                move(i, kept++);
+            }
+        }
+        return truncate(kept);
+    }
+
+    /**
+     * Удаляет элементы с именем меньше (sign < 0) или больше (sign > 0) заданного,
+     * сравнивая только колонку имён
+     */
+    @Override
+    public boolean removeNamesComparedTo(String name, int sign) {
+        unshare();
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (Integer.signum(names[i].compareTo(name)) != sign) {
+                move(i, kept++);
+            }
+        }
+        return truncate(kept);
+    }
+
+    @Override
+    public void sort(Comparator<? super Vehicle> comparator) {
+        Vehicle[] vehicles = toArray(new Vehicle[0]);
+        Arrays.sort(vehicles, comparator);
+        unshare();
+        for (int i = 0; i < size; i++) {
+            store(i, vehicles[i]);
+        }
+        modCount++;
+    }
+
+    @Override
+    public void clear() {
+        if (shared) {
+            allocate(16);
+            shared = false;
+        } else {
+            Arrays.fill(names, 0, size, null);
+        }
+        size = 0;
+        modCount++;
+    }
+
+    /**
+     * Возвращает неизменяемый снимок списка на текущий момент за O(1): массивы не копируются,
+     * пока список не изменится. Снимок можно читать из любого потока, пока список меняется.
+     */
+    @Override
+    public List<Vehicle> snapshot() {
+        shared = true;
+        return Collections.unmodifiableList(new ColumnarVehicleList(this));
+    }
+
+    /**
+     * Возвращает id элемента, не создавая объект
+     */
+    @Override
+    public int idAt(int i) {
+        Objects.checkIndex(i, size);
+        return ids[i];
+    }
+
+    /**
+     * Возвращает элементы на позициях от from до to с capacity в заданном диапазоне
+     * (границы включаются по флагам) в порядке коллекции
+     */
+    @Override
+    public List<Vehicle> scanCapacityBetween(int from, int to,
+                                             double min, boolean minInclusive, double max, boolean maxInclusive) {
+        List<Vehicle> result = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            double value = capacity[i];
+            if ((minInclusive ? value >= min : value > min) && (maxInclusive ? value <= max : value < max)) {
+                result.add(get(i));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Возвращает количество элементов на позициях от from до to с capacity больше x
+     */
+    @Override
+    public int scanCountCapacityAbove(int from, int to, double x) {
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            if (capacity[i] > x) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Возвращает количество элементов на позициях от from до to с именем меньше заданного
+     */
+    @Override
+    public int scanCountNamesLessThan(int from, int to, String name) {
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            if (names[i].compareTo(name) < 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Возвращает элементы на позициях от from до to с типом меньше заданного в порядке коллекции
+     */
+    @Override
+    public List<Vehicle> scanTypesLessThan(int from, int to, VehicleType bound) {
+        List<Vehicle> result = new ArrayList<>();
+        int ordinal = bound.ordinal();
+        for (int i = from; i < to; i++) {
+            if (type[i] != NULL_ENUM && type[i] < ordinal) {
+                result.add(get(i));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Считает элементы на позициях от from до to по порядковому номеру типа
+     */
+    @Override
+    public int[] scanTypeCounts(int from, int to) {
+        int[] counts = new int[TYPES.length];
+        for (int i = from; i < to; i++) {
+            if (type[i] != NULL_ENUM) {
+                counts[type[i]]++;
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Считает элементы на позициях от from до to по порядковому номеру типа топлива;
+     * последний счётчик - элементы без типа топлива
+     */
+    @Override
+    public int[] scanFuelTypeCounts(int from, int to) {
+        int[] counts = new int[FUEL_TYPES.length + 1];
+        for (int i = from; i < to; i++) {
+            counts[fuelType[i] == NULL_ENUM ? FUEL_TYPES.length : fuelType[i]]++;
+        }
+        return counts;
+    }
+
+    private void store(int i, Vehicle vehicle) {
+        byte f = 0;
+        ids[i] = vehicle.getId();
+        names[i] = vehicle.getName();
+        Coordinates coordinates = vehicle.getCoordinates();
+        if (coordinates == null) {
+            f |= NULL_COORDINATES | NULL_X;
+        } else {
+            if (coordinates.getX() == null) {
+                f |= NULL_X;
+            } else {
+                x[i] = coordinates.getX();
+            }
+            y[i] = coordinates.getY();
+        }
+        creationDay[i] = (int) vehicle.getCreationDate().toEpochDay();
+        if (vehicle.getEnginePower() == null) {
+            f |= NULL_ENGINE_POWER;
+        } else {
+            enginePower[i] = vehicle.getEnginePower();
+        }
+        capacity[i] = vehicle.getCapacity();
+        type[i] = vehicle.getType() == null ? NULL_ENUM : (byte) vehicle.getType().ordinal();
+        fuelType[i] = vehicle.getFuelType() == null ? NULL_ENUM : (byte) vehicle.getFuelType().ordinal();
+        flags[i] = f;
+    }
+
+    /**
+     * Копирует массивы, разделённые со снимком, перед изменением
+     */
+    private void unshare() {
+        if (shared) {
+            grow(ids.length);
+            shared = false;
+        }
+    }
+
+    private void move(int from, int to) {
+        if (from != to) {
+            shift(from, to, 1);
+        }
+    }
+
+    private boolean truncate(int kept) {
+        boolean removed = kept < size;
+        Arrays.fill(names, kept, size, null);
+        size = kept;
+        if (removed) modCount++;
+        return removed;
+    }
+
+    private void allocate(int capacity) {
+        ids = new int[capacity];
+        names = new String[capacity];
+        x = new double[capacity];
+        y = new int[capacity];
+        creationDay = new int[capacity];
+        enginePower = new double[capacity];
+        this.capacity = new double[capacity];
+        type = new byte[capacity];
+        fuelType = new byte[capacity];
+        flags = new byte[capacity];
+    }
+
+    private void grow(int newCapacity) {
+        ids = Arrays.copyOf(ids, newCapacity);
+        names = Arrays.copyOf(names, newCapacity);
+        x = Arrays.copyOf(x, newCapacity);
+        y = Arrays.copyOf(y, newCapacity);
+        creationDay = Arrays.copyOf(creationDay, newCapacity);
+        enginePower = Arrays.copyOf(enginePower, newCapacity);
+        capacity = Arrays.copyOf(capacity, newCapacity);
+        type = Arrays.copyOf(type, newCapacity);
+        fuelType = Arrays.copyOf(fuelType, newCapacity);
+        flags = Arrays.copyOf(flags, newCapacity);
+    }
+
+    private void shift(int from, int to, int length) {
+        System.arraycopy(ids, from, ids, to, length);
+        System.arraycopy(names, from, names, to, length);
+        System.arraycopy(x, from, x, to, length);
+        System.arraycopy(y, from, y, to, length);
+        System.arraycopy(creationDay, from, creationDay, to, length);
+        System.arraycopy(enginePower, from, enginePower, to, length);
+        System.arraycopy(capacity, from, capacity, to, length);
+        System.arraycopy(type, from, type, to, length);
+        System.arraycopy(fuelType, from, fuelType, to, length);
+        System.arraycopy(flags, from, flags, to, length);
+    }
+}
@@ -0,0 +1,268 @@
+package collection;
+
+import java.util.Comparator;
+import java.util.function.Consumer;
+
+/**
+ * Упорядоченное по ключу декартово дерево (treap): у каждого ключа есть значение и вес,
+ * а каждый узел хранит сумму весов своего поддерева. Поэтому сумма весов ключей в любом
+ * диапазоне считается за O(log d) по числу ключей d, без перебора ключей диапазона.
+ * Индексы хранят в значении группу элементов с одинаковым значением поля, а в весе - её размер.
+ */
+class CountingTree<K, V> {
+    private final Comparator<? super K> comparator;
+    private Node<K, V> root;
+    private int seed = 0x2545F491;
+
+    CountingTree(Comparator<? super K> comparator) {
+        this.comparator = comparator;
+    }
+
+    /**
+     * Возвращает значение ключа или null
+     */
+    V get(K key) {
+        Node<K, V> node = root;
+        while (node != null) {
+            int c = comparator.compare(key, node.key);
+            if (c == 0) {
+                return node.value;
+            }
+            node = c < 0 ? node.left : node.right;
+        }
+        return null;
+    }
+
+    /**
+     * Добавляет ключ или заменяет его значение и вес
+     */
+    void put(K key, V value, int weight) {
+        root = insert(root, key, value, weight);
+    }
+
+    void remove(K key) {
+        root = delete(root, key);
+    }
+
+    void clear() {
+        root = null;
+    }
+
+    boolean isEmpty() {
+        return root == null;
+    }
+
+    /**
+     * Возвращает сумму весов ключей меньше заданного (inclusive - не больше)
+     */
+    int weightBefore(K key, boolean inclusive) {
+        int sum = 0;
+        Node<K, V> node = root;
+        while (node != null) {
+            int c = comparator.compare(key, node.key);
+            if (c < 0) {
+                node = node.left;
+            } else if (c == 0) {
+                return sum + total(node.left) + (inclusive ? node.weight : 0);
+            } else {
+                sum += total(node.left) + node.weight;
+                node = node.right;
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Возвращает сумму весов ключей в диапазоне (null - граница не задана)
+     */
+    int weightBetween(K from, boolean fromInclusive, K to, boolean toInclusive) {
+        if (isEmptyRange(from, fromInclusive, to, toInclusive)) {
+            return 0;
+        }
+        int upper = to == null ? total(root) : weightBefore(to, toInclusive);
+        int lower = from == null ? 0 : weightBefore(from, !fromInclusive);
+        return upper - lower;
+    }
+
+    /**
+     * Передаёт значения ключей из диапазона (null - граница не задана) по возрастанию ключа
+     */
+    void forEachBetween(K from, boolean fromInclusive, K to, boolean toInclusive, Consumer<? super V> action) {
+        if (!isEmptyRange(from, fromInclusive, to, toInclusive)) {
+            visit(root, from, fromInclusive, to, toInclusive, action);
+        }
+    }
+
+    /**
+     * Удаляет все ключи меньше (sign < 0) или больше (sign > 0) заданного за O(log d)
+     */
+    void cut(K key, int sign) {
+        Node<K, V>[] parts = split(root, key, sign > 0);
+        root = sign < 0 ? parts[1] : parts[0];
+    }
+
+    private boolean isEmptyRange(K from, boolean fromInclusive, K to, boolean toInclusive) {
+        if (from == null || to == null) {
+            return false;
+        }
+        int c = comparator.compare(from, to);
+        return c > 0 || (c == 0 && !(fromInclusive && toInclusive));
+    }
+
+    private void visit(Node<K, V> node, K from, boolean fromInclusive, K to, boolean toInclusive,
+                       Consumer<? super V> action) {
+        while (node != null) {
+            boolean aboveFrom = from == null || isAbove(node.key, from, fromInclusive);
+            boolean belowTo = to == null || isAbove(to, node.key, toInclusive);
+            if (aboveFrom) {
+                visit(node.left, from, fromInclusive, to, toInclusive, action);
+            }
+            if (aboveFrom && belowTo) {
+                action.accept(node.value);
+            }
+            if (!belowTo) {
+                return;
+            }
+            node = node.right;
+        }
+    }
+
+    /**
+     * a больше b (inclusive - не меньше)
+     */
+    private boolean isAbove(K a, K b, boolean inclusive) {
+        int c = comparator.compare(a, b);
+        return inclusive ? c >= 0 : c > 0;
+    }
+
+    private Node<K, V> insert(Node<K, V> node, K key, V value, int weight) {
+        if (node == null) {
+            return new Node<>(key, value, weight, nextPriority());
+        }
+        int c = comparator.compare(key, node.key);
+        if (c == 0) {
+            node.value = value;
+            node.weight = weight;
+        } else if (c < 0) {
+            node.left = insert(node.left, key, value, weight);
+            if (node.left.priority > node.priority) {
+                return rotateRight(node);
+            }
+        } else {
+            node.right = insert(node.right, key, value, weight);
+            if (node.right.priority > node.priority) {
+                return rotateLeft(node);
+            }
+        }
+        update(node);
+        return node;
+    }
+
+    private Node<K, V> delete(Node<K, V> node, K key) {
+        if (node == null) {
+            return null;
+        }
+        int c = comparator.compare(key, node.key);
+        if (c == 0) {
+            return merge(node.left, node.right);
+        }
+        if (c < 0) {
+            node.left = delete(node.left, key);
+        } else {
+            node.right = delete(node.right, key);
+        }
+        update(node);
+        return node;
+    }
+
+    /**
+     * Делит дерево на ключи меньше заданного (withKey - не больше) и остальные
+     */
+    @SuppressWarnings("unchecked")
+    private Node<K, V>[] split(Node<K, V> node, K key, boolean withKey) {
+        if (node == null) {
+            return (Node<K, V>[]) new Node<?, ?>[2];
+        }
+        int c = comparator.compare(node.key, key);
+        if (c < 0 || (c == 0 && withKey)) {
+            Node<K, V>[] parts = split(node.right, key, withKey);
+            node.right = parts[0];
+            update(node);
+            parts[0] = node;
+            return parts;
+        }
+        Node<K, V>[] parts = split(node.left, key, withKey);
+        node.left = parts[1];
+        update(node);
+        parts[1] = node;
+        return parts;
+    }
+
+    private Node<K, V> merge(Node<K, V> left, Node<K, V> right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            update(left);
+            return left;
+        }
+        right.left = merge(left, right.left);
+        update(right);
+        return right;
+    }
+
+    private Node<K, V> rotateRight(Node<K, V> node) {
+        Node<K, V> left = node.left;
+        node.left = left.right;
+        update(node);
+        left.right = node;
+        update(left);
+        return left;
+    }
+
+    private Node<K, V> rotateLeft(Node<K, V> node) {
+        Node<K, V> right = node.right;
+        node.right = right.left;
+        update(node);
+        right.left = node;
+        update(right);
+        return right;
+    }
+
+    private static void update(Node<?, ?> node) {
+        node.total = total(node.left) + node.weight + total(node.right);
+    }
+
+    private static int total(Node<?, ?> node) {
+        return node == null ? 0 : node.total;
+    }
+
+    private int nextPriority() {
+        seed ^= seed << 13;
+        seed ^= seed >>> 17;
+        seed ^= seed << 5;
+        return seed;
+    }
+
+    private static final class Node<K, V> {
+        final K key;
+        final int priority;
+        V value;
+        int weight;
+        int total;
+        Node<K, V> left;
+        Node<K, V> right;
+
+        Node(K key, V value, int weight, int priority) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+            this.total = weight;
+            this.priority = priority;
+        }
+    }
+}
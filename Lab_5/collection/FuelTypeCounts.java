@@ -0,0 +1,55 @@
+package collection;
+
+import model.FuelType;
+import model.Vehicle;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Счётчики элементов по типу топлива; элементы без fuelType считаются отдельно
+ */
+public class FuelTypeCounts implements VehicleIndex {
+    private final int[] counts = new int[FuelType.values().length];
+    private int withoutFuelType;
+
+    @Override
+    public void add(Vehicle vehicle) {
+        if (vehicle.getFuelType() == null) {
+            withoutFuelType++;
+        } else {
+            counts[vehicle.getFuelType().ordinal()]++;
+        }
+    }
+
+    @Override
+    public void remove(Vehicle vehicle) {
+        if (vehicle.getFuelType() == null) {
+            withoutFuelType--;
+        } else {
+            counts[vehicle.getFuelType().ordinal()]--;
+        }
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(counts, 0);
+        withoutFuelType = 0;
+    }
+
+    /**
+     * Возвращает количество элементов с каждым типом топлива
+     */
+    public Map<FuelType, Integer> counts() {
+        Map<FuelType, Integer> result = new EnumMap<>(FuelType.class);
+        for (FuelType type : FuelType.values()) {
+            result.put(type, counts[type.ordinal()]);
+        }
+        return result;
+    }
+
+    public int getWithoutFuelType() {
+        return withoutFuelType;
+    }
+}
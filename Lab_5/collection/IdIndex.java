@@ -0,0 +1,194 @@
+package collection;
+
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Индекс id -> позиция элемента в коллекции.
+ *
+ * Хеш-таблица с открытой адресацией на массивах int, без упаковки ключей в Integer.
+ * Каждый элемент при добавлении получает порядковый номер (слот); элементы добавляются
+ * только в конец, поэтому позиция элемента - это его слот минус число удалённых
+ * элементов с меньшими слотами. Удалённые слоты считаются деревом Фенвика, так что
+ * удаление из середины не требует исправлять позиции всех следующих элементов.
+ * Пока удалений не было, позиция равна слоту и дерево не используется.
+ * Элементы с id 0 (не заданным) в индекс не попадают; если id повторяется,
+ * индекс указывает на первый такой элемент.
+ */
+public class IdIndex {
+    private static final int EMPTY = 0;
+    private static final int MIN_CAPACITY = 16;
+
+    // Возвращает id элемента на заданной позиции
+    private final IntUnaryOperator idAt;
+
+    // id -> слот
+    private int[] keys = new int[MIN_CAPACITY];
+    private int[] slots = new int[MIN_CAPACITY];
+    private int size;
+
+    // Дерево Фенвика по слотам: сколько из них удалено
+    private int[] removedTree = new int[MIN_CAPACITY + 1];
+    private int removed;
+    private int nextSlot;
+
+    public IdIndex(IntUnaryOperator idAt) {
+        this.idAt = idAt;
+    }
+
+    /**
+     * Строит индекс заново по первым count элементам коллекции; слот каждого равен позиции
+     */
+    public void rebuild(int count) {
+        int capacity = MIN_CAPACITY;
+        while (capacity * 3 < count * 4) {
+            capacity <<= 1;
+        }
+        keys = new int[capacity];
+        slots = new int[capacity];
+        size = 0;
+        // С конца, чтобы при повторе id в индексе остался первый элемент
+        for (int i = count - 1; i >= 0; i--) {
+            put(idAt.applyAsInt(i), i);
+        }
+        removedTree = new int[Math.max(MIN_CAPACITY, count * 2) + 1];
+        removed = 0;
+        nextSlot = count;
+    }
+
+    public void clear() {
+        rebuild(0);
+    }
+
+    /**
+     * Учитывает перестановку элементов на позициях от from до count; позиции до from не менялись.
+     * Если после прошлой перестройки были удаления, слоты уже не равны позициям и индекс строится заново.
+     */
+    public void moved(int from, int count) {
+        if (removed > 0 || nextSlot != count) {
+            rebuild(count);
+            return;
+        }
+        // С конца, чтобы при повторе id в индексе остался первый элемент
+        for (int i = count - 1; i >= from; i--) {
+            int cell = find(idAt.applyAsInt(i));
+            if (cell >= 0 && slots[cell] >= from) {
+                slots[cell] = i;
+            }
+        }
+    }
+
+    /**
+     * Учитывает элемент, добавленный в конец коллекции, размер которой стал count
+     */
+    public void added(int id, int count) {
+        if (nextSlot == removedTree.length - 1) {
+            // Слоты кончились: нумерация сжимается до текущих позиций
+            rebuild(count);
+            return;
+        }
+        put(id, nextSlot++);
+    }
+
+    /**
+     * Учитывает удаление элемента с заданным id
+     */
+    public void removed(int id) {
+        int slot = delete(id);
+        if (slot < 0) {
+            return;
+        }
+        for (int i = slot + 1; i < removedTree.length; i += i & -i) {
+            removedTree[i]++;
+        }
+        removed++;
+    }
+
+    /**
+     * Возвращает позицию элемента с заданным id или -1
+     */
+    public int positionOf(int id) {
+        int cell = find(id);
+        if (cell < 0) {
+            return -1;
+        }
+        int slot = slots[cell];
+        if (removed == 0) {
+            return slot;
+        }
+        int before = 0;
+        for (int i = slot; i > 0; i -= i & -i) {
+            before += removedTree[i];
+        }
+        return slot - before;
+    }
+
+    private int find(int id) {
+        if (id == EMPTY) return -1;
+        int mask = keys.length - 1;
+        for (int cell = hash(id) & mask; ; cell = (cell + 1) & mask) {
+            if (keys[cell] == id) return cell;
+            if (keys[cell] == EMPTY) return -1;
+        }
+    }
+
+    private void put(int id, int slot) {
+        if (id == EMPTY) return;
+        if ((size + 1) * 4 > keys.length * 3) {
+            grow();
+        }
+        int mask = keys.length - 1;
+        int cell = hash(id) & mask;
+        while (keys[cell] != EMPTY && keys[cell] != id) {
+            cell = (cell + 1) & mask;
+        }
+        if (keys[cell] == EMPTY) {
+            keys[cell] = id;
+            size++;
+        }
+        slots[cell] = slot;
+    }
+
+    /**
+     * Удаляет ключ со сдвигом следующих записей цепочки назад, без служебных "удалённых" ячеек.
+     * Возвращает слот удалённого элемента или -1.
+     */
+    private int delete(int id) {
+        int cell = find(id);
+        if (cell < 0) {
+            return -1;
+        }
+        int slot = slots[cell];
+        int mask = keys.length - 1;
+        int hole = cell;
+        for (int next = (hole + 1) & mask; keys[next] != EMPTY; next = (next + 1) & mask) {
+            int home = hash(keys[next]) & mask;
+            // Запись можно перенести в дыру, если дыра лежит между её домашней ячейкой и текущей
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = keys[next];
+                slots[hole] = slots[next];
+                hole = next;
+            }
+        }
+        keys[hole] = EMPTY;
+        size--;
+        return slot;
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        int[] oldSlots = slots;
+        keys = new int[oldKeys.length * 2];
+        slots = new int[oldKeys.length * 2];
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                put(oldKeys[i], oldSlots[i]);
+            }
+        }
+    }
+
+    private static int hash(int id) {
+        int h = id * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
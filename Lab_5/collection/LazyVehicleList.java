@@ -0,0 +1,188 @@
+package collection;
+
+import model.Vehicle;
+import file.VehicleFileIndex;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Список транспортных средств с ленивой загрузкой из файла.
+ *
+ * Для каждого элемента хранится только id и положение записи в файле.
+ * Объект Vehicle декодируется при первом обращении и попадает в ограниченный LRU кэш.
+ * Добавленные и заменённые элементы хранятся в памяти постоянно, пока не будут удалены.
+ */
+public class LazyVehicleList extends AbstractList<Vehicle> implements RandomAccess {
+    private static final long RESIDENT = -1;
+
+    private final VehicleFileIndex index;
+    private final Map<Long, Vehicle> cache;
+
+    // Параллельные массивы: id, положение в файле (RESIDENT - объект в памяти) и сам объект
+    private int[] ids;
+    private long[] offsets;
+    private Vehicle[] resident;
+    private int size;
+
+    public LazyVehicleList(VehicleFileIndex index, int cacheSize) {
+        this.index = index;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Vehicle> eldest) {
+                return size() > cacheSize;
+            }
+        };
+        this.size = index.size();
+        int capacity = Math.max(size, 16);
+        this.ids = new int[capacity];
+        this.offsets = new long[capacity];
+        this.resident = new Vehicle[capacity];
+        for (int i = 0; i < size; i++) {
+            ids[i] = index.idAt(i);
+            offsets[i] = index.offsetAt(i);
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Vehicle get(int i) {
+        Objects.checkIndex(i, size);
+        if (offsets[i] == RESIDENT) {
+            return resident[i];
+        }
+        Vehicle vehicle = cache.get(offsets[i]);
+        if (vehicle == null) {
+            vehicle = decode(offsets[i]);
+            cache.put(offsets[i], vehicle);
+        }
+        return vehicle;
+    }
+
+    @Override
+    public Vehicle set(int i, Vehicle vehicle) {
+        Vehicle old = get(i);
+        ids[i] = vehicle.getId();
+        offsets[i] = RESIDENT;
+        resident[i] = vehicle;
+        return old;
+    }
+
+    @Override
+    public void add(int i, Vehicle vehicle) {
+        Objects.checkIndex(i, size + 1);
+        if (size == ids.length) {
+            int capacity = ids.length + (ids.length >> 1);
+            ids = Arrays.copyOf(ids, capacity);
+            offsets = Arrays.copyOf(offsets, capacity);
+            resident = Arrays.copyOf(resident, capacity);
+        }
+        shift(i, i + 1, size - i);
+        ids[i] = vehicle.getId();
+        offsets[i] = RESIDENT;
+        resident[i] = vehicle;
+        size++;
+        modCount++;
+    }
+
+    @Override
+    public Vehicle remove(int i) {
+        Vehicle old = get(i);
+        shift(i + 1, i, size - i - 1);
+        size--;
+        resident[size] = null;
+        modCount++;
+        return old;
+    }
+
+    /**
+     * Удаляет подходящие элементы за один проход со сдвигом массивов
+     */
+    @Override
+    public boolean removeIf(Predicate<? super Vehicle> filter) {
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (!filter.test(get(i))) {
+                ids[kept] = ids[i];
+                offsets[kept] = offsets[i];
+                resident[kept] = resident[i];
+                kept++;
+            }
+        }
+        boolean removed = kept < size;
+        Arrays.fill(resident, kept, size, null);
+        size = kept;
+        if (removed) modCount++;
+        return removed;
+    }
+
+    /**
+     * Сортировке нужны все элементы: они декодируются и остаются в памяти
+     */
+    @Override
+    public void sort(Comparator<? super Vehicle> comparator) {
+        materializeAll();
+        Arrays.sort(resident, 0, size, comparator);
+        for (int i = 0; i < size; i++) {
+            ids[i] = resident[i].getId();
+        }
+        modCount++;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(resident, 0, size, null);
+        size = 0;
+        cache.clear();
+        modCount++;
+    }
+
+    /**
+     * Возвращает id элемента, не декодируя запись
+     */
+    public int idAt(int i) {
+        Objects.checkIndex(i, size);
+        return ids[i];
+    }
+
+    /**
+     * Декодирует все оставшиеся записи и закрывает файл.
+     * После этого список больше не зависит от файла, и его можно перезаписать.
+     */
+    public void detach() throws IOException {
+        materializeAll();
+        cache.clear();
+        index.close();
+    }
+
+    private void materializeAll() {
+        for (int i = 0; i < size; i++) {
+            if (offsets[i] != RESIDENT) {
+                resident[i] = get(i);
+                offsets[i] = RESIDENT;
+            }
+        }
+    }
+
+    private void shift(int from, int to, int length) {
+        System.arraycopy(ids, from, ids, to, length);
+        System.arraycopy(offsets, from, offsets, to, length);
+        System.arraycopy(resident, from, resident, to, length);
+    }
+
+    private Vehicle decode(long offset) {
+        try {
+            return index.read(offset);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Ошибка чтения записи из файла: " + e.getMessage(), e);
+        } catch (Exception e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+}
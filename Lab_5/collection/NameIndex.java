@@ -0,0 +1,89 @@
+package collection;
+
+import model.Vehicle;
+
+import java.util.*;
+
+/**
+ * Индекс по имени в естественном порядке Vehicle (compareTo сравнивает имена).
+ * Порядок элементов с одинаковым именем не задан. Дерево хранит размеры групп
+ * с одинаковым именем в поддеревьях, поэтому подсчёт и отсечение по имени стоят O(log d)
+ * по числу различных имён, а не перебор групп.
+ */
+public class NameIndex implements VehicleIndex {
+    // имя -> элементы с этим именем
+    private final CountingTree<String, VehicleBucket> tree = new CountingTree<>(Comparator.naturalOrder());
+
+    @Override
+    public void add(Vehicle vehicle) {
+        String name = vehicle.getName();
+        if (name == null) {
+            return;
+        }
+        VehicleBucket group = tree.get(name);
+        if (group == null) {
+            group = new VehicleBucket();
+        }
+        group.add(vehicle);
+        tree.put(name, group, group.size());
+    }
+
+    @Override
+    public void remove(Vehicle vehicle) {
+        String name = vehicle.getName();
+        if (name == null) {
+            return;
+        }
+        VehicleBucket group = tree.get(name);
+        if (group != null && group.remove(vehicle)) {
+            if (group.size() == 0) {
+                tree.remove(name);
+            } else {
+                tree.put(name, group, group.size());
+            }
+        }
+    }
+
+    @Override
+    public void clear() {
+        tree.clear();
+    }
+
+    /**
+     * Возвращает элементы с именем меньше (sign < 0) или больше (sign > 0) заданного по возрастанию имени
+     */
+    public List<Vehicle> find(String name, int sign) {
+        return sign < 0 ? between(null, false, name, false) : between(name, false, null, false);
+    }
+
+    /**
+     * Возвращает количество элементов с именем меньше (sign < 0) или больше (sign > 0) заданного
+     */
+    public int count(String name, int sign) {
+        return sign < 0 ? countBetween(null, false, name, false) : countBetween(name, false, null, false);
+    }
+
+    /**
+     * Удаляет из индекса все элементы с именем меньше (sign < 0) или больше (sign > 0) заданного
+     * за время, зависящее от числа различных имён, а не элементов
+     */
+    public void cut(String name, int sign) {
+        tree.cut(name, sign);
+    }
+
+    /**
+     * Возвращает элементы с именем в заданном диапазоне (null - граница не задана) по возрастанию имени
+     */
+    public List<Vehicle> between(String from, boolean fromInclusive, String to, boolean toInclusive) {
+        List<Vehicle> result = new ArrayList<>(countBetween(from, fromInclusive, to, toInclusive));
+        tree.forEachBetween(from, fromInclusive, to, toInclusive, group -> group.addTo(result));
+        return result;
+    }
+
+    /**
+     * Возвращает количество элементов с именем в заданном диапазоне (null - граница не задана)
+     */
+    public int countBetween(String from, boolean fromInclusive, String to, boolean toInclusive) {
+        return tree.weightBetween(from, fromInclusive, to, toInclusive);
+    }
+}
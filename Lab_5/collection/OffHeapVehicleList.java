@@ -0,0 +1,621 @@
+package collection;
+
+import model.Coordinates;
+import model.FuelType;
+import model.Vehicle;
+import model.VehicleType;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.function.IntBinaryOperator;
+import java.util.function.Predicate;
+
+/**
+ * Список транспортных средств с хранением вне кучи.
+ *
+ * Каждый элемент - запись фиксированного размера (RECORD байт) в прямых буферах (ByteBuffer.allocateDirect),
+ * имена - символы UTF-16 в отдельных прямых буферах, на которые запись ссылается номером страницы
+ * и смещением. В куче остаются только массивы ссылок на страницы, поэтому размер кучи и паузы
+ * сборщика мусора не растут с размером коллекции; объём памяти вне кучи ограничивается
+ * параметром JVM -XX:MaxDirectMemorySize (по умолчанию равен -Xmx).
+ * Объект Vehicle создаётся при обращении к элементу и является копией, как в ColumnarVehicleList.
+ *
+ * Записи лежат страницами по PAGE_RECORDS; снимок разделяет страницы со списком,
+ * а список копирует страницу перед первым изменением в ней. Страницы имён только дописываются:
+ * имена удалённых и заменённых элементов остаются мусором, и когда его становится больше,
+ * чем живых имён, имена переписываются в новые страницы.
+ */
+public class OffHeapVehicleList extends AbstractList<Vehicle> implements VehicleColumns, RandomAccess {
+    // Раскладка записи: смещения полей в байтах от начала записи
+    private static final int ID = 0;
+    private static final int Y = 4;
+    private static final int X = 8;
+    private static final int ENGINE_POWER = 16;
+    private static final int CAPACITY = 24;
+    private static final int CREATION_DAY = 32;
+    private static final int NAME_LENGTH = 36;
+    private static final int NAME_PAGE = 40;
+    private static final int NAME_OFFSET = 44;
+    private static final int TYPE = 48;
+    private static final int FUEL_TYPE = 49;
+    private static final int FLAGS = 50;
+    private static final int RECORD = 56;
+
+    private static final int PAGE_SHIFT = 14;
+    private static final int PAGE_RECORDS = 1 << PAGE_SHIFT;
+    private static final int PAGE_MASK = PAGE_RECORDS - 1;
+    private static final int NAME_PAGE_CHARS = 1 << 19;
+    private static final int MOVE_RECORDS = 1024; // записей за одно копирование при сдвиге
+    private static final int INSERTION_SORT_RECORDS = 16; // короче - сортировка вставками
+
+    private static final byte NULL_ENUM = -1;
+    private static final byte NULL_X = 1;
+    private static final byte NULL_ENGINE_POWER = 2;
+    private static final byte NULL_COORDINATES = 4;
+
+    private static final VehicleType[] TYPES = VehicleType.values();
+    private static final FuelType[] FUEL_TYPES = FuelType.values();
+
+    private ByteBuffer[] pages = new ByteBuffer[0];
+    private boolean[] shared = new boolean[0]; // страница есть в снимке, перед изменением её нужно скопировать
+    private CharBuffer[] namePages = new CharBuffer[0];
+    private int nameTail; // занято символов в последней странице имён
+    private long nameChars; // символов во всех страницах имён
+    private long liveNameChars; // из них в именах элементов списка
+    private int size;
+    private byte[] buffer; // для сдвига записей
+
+    public OffHeapVehicleList() {
+    }
+
+    private OffHeapVehicleList(OffHeapVehicleList source) {
+        pages = source.pages.clone();
+        shared = new boolean[pages.length];
+        namePages = source.namePages.clone();
+        size = source.size;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Vehicle get(int i) {
+        Objects.checkIndex(i, size);
+        ByteBuffer page = pages[i >>> PAGE_SHIFT];
+        int at = (i & PAGE_MASK) * RECORD;
+        byte flags = page.get(at + FLAGS);
+        Coordinates coordinates = null;
+        if ((flags & NULL_COORDINATES) == 0) {
+            coordinates = new Coordinates();
+            if ((flags & NULL_X) == 0) coordinates.setX(page.getDouble(at + X));
+            coordinates.setY(page.getInt(at + Y));
+        }
+        byte type = page.get(at + TYPE);
+        byte fuelType = page.get(at + FUEL_TYPE);
+        return new Vehicle(page.getInt(at + ID), name(page, at), coordinates,
+                LocalDate.ofEpochDay(page.getInt(at + CREATION_DAY)),
+                (flags & NULL_ENGINE_POWER) == 0 ? page.getDouble(at + ENGINE_POWER) : null,
+                page.getDouble(at + CAPACITY),
+                type == NULL_ENUM ? null : TYPES[type],
+                fuelType == NULL_ENUM ? null : FUEL_TYPES[fuelType]);
+    }
+
+    @Override
+    public Vehicle set(int i, Vehicle vehicle) {
+        Vehicle old = get(i);
+        liveNameChars -= old.getName().length();
+        store(i, vehicle);
+        compactNames();
+        return old;
+    }
+
+    @Override
+    public void add(int i, Vehicle vehicle) {
+        Objects.checkIndex(i, size + 1);
+        if (size == pages.length << PAGE_SHIFT) {
+            pages = Arrays.copyOf(pages, pages.length + 1);
+            shared = Arrays.copyOf(shared, shared.length + 1);
+            pages[pages.length - 1] = newPage();
+        }
+        moveRecords(i, i + 1, size - i);
+        size++;
+        store(i, vehicle);
+        modCount++;
+    }
+
+    @Override
+    public Vehicle remove(int i) {
+        Vehicle old = get(i);
+        moveRecords(i + 1, i, size - i - 1);
+        liveNameChars -= old.getName().length();
+        truncate(size - 1);
+        return old;
+    }
+
+    /**
+     * Удаляет подходящие элементы за один проход со сдвигом записей
+     */
+    @Override
+    public boolean removeIf(Predicate<? super Vehicle> filter) {
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (filter.test(get(i))) {
+                liveNameChars -= nameLength(i);
+            } else {
+                moveRecords(i, kept++, 1);
+            }
+        }
+        return truncate(kept);
+    }
+
+    @Override
+    public boolean removeNamesComparedTo(String name, int sign) {
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (Integer.signum(compareName(i, name)) == sign) {
+                liveNameChars -= nameLength(i);
+            } else {
+                moveRecords(i, kept++, 1);
+            }
+        }
+        return truncate(kept);
+    }
+
+    /**
+     * Сортирует перестановкой записей; имена не переписываются. Естественный порядок - через sortTail,
+     * для другого порядка каждый элемент создаётся один раз.
+     */
+    @Override
+    public void sort(Comparator<? super Vehicle> comparator) {
+        if (comparator == null || comparator == Comparator.naturalOrder()) {
+            sortTail(0);
+            return;
+        }
+        Vehicle[] vehicles = toArray(new Vehicle[0]);
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        mergeSort(order, new int[size], 0, size, (a, b) -> comparator.compare(vehicles[a], vehicles[b]));
+        int first = 0;
+        while (first < size && order[first] == first) {
+            first++;
+        }
+        permute(order, first);
+        modCount++;
+    }
+
+    /**
+     * Устойчиво сортирует в естественном порядке список, первые prefix элементов которого уже упорядочены:
+     * сортируется только остальная часть, и она сливается с началом. Имена сравниваются прямо
+     * в страницах имён, как в compareName, без объектов Vehicle. Возвращает первую позицию,
+     * запись на которой могла смениться.
+     */
+    public int sortTail(int prefix) {
+        int sorted = Math.max(prefix, Math.min(size, 1));
+        while (sorted < size && compareNames(sorted - 1, sorted) <= 0) {
+            sorted++;
+        }
+        modCount++;
+        if (sorted == size) {
+            return size;
+        }
+        int[] tail = new int[size - sorted];
+        for (int i = 0; i < tail.length; i++) {
+            tail[i] = sorted + i;
+        }
+        // Первые четыре символа имени в одном long решают большинство сравнений без чтения страниц имён
+        int base = sorted;
+        long[] keys = new long[tail.length];
+        for (int i = 0; i < tail.length; i++) {
+            keys[i] = namePrefix(base + i);
+        }
+        mergeSort(tail, new int[tail.length], 0, tail.length, (a, b) -> {
+            int c = Long.compareUnsigned(keys[a - base], keys[b - base]);
+            return c != 0 ? c : compareNames(a, b);
+        });
+        // Записи начала, не большие первой записи хвоста, остаются на местах
+        int low = 0;
+        int high = sorted;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compareNames(mid, tail[0]) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        int from = low;
+        int[] order = new int[size];
+        int i = from;
+        int j = 0;
+        for (int k = from; k < size; k++) {
+            order[k] = j == tail.length || (i < sorted && compareNames(i, tail[j]) <= 0) ? i++ : tail[j++];
+        }
+        permute(order, from);
+        return from;
+    }
+
+    /**
+     * Переставляет записи с позиции first: на позицию i встаёт запись order[i].
+     * Страницы до первой сдвинутой записи остаются прежними, остальные пишутся заново.
+     */
+    private void permute(int[] order, int first) {
+        if (first == size) {
+            return;
+        }
+        int firstPage = first >>> PAGE_SHIFT;
+        ByteBuffer[] sorted = pages.clone();
+        for (int p = firstPage; p < sorted.length; p++) {
+            sorted[p] = newPage();
+            shared[p] = false;
+        }
+        sorted[firstPage].put(0, pages[firstPage], 0, (first & PAGE_MASK) * RECORD);
+        for (int i = first; i < size; i++) {
+            int from = order[i];
+            sorted[i >>> PAGE_SHIFT].put((i & PAGE_MASK) * RECORD,
+                    pages[from >>> PAGE_SHIFT], (from & PAGE_MASK) * RECORD, RECORD);
+        }
+        pages = sorted;
+    }
+
+    /**
+     * Устойчиво сортирует номера записей на отрезке [from, to) слиянием через буфер tmp
+     */
+    private static void mergeSort(int[] order, int[] tmp, int from, int to, IntBinaryOperator compare) {
+        if (to - from <= INSERTION_SORT_RECORDS) {
+            for (int i = from + 1; i < to; i++) {
+                int record = order[i];
+                int j = i;
+                while (j > from && compare.applyAsInt(order[j - 1], record) > 0) {
+                    order[j] = order[j - 1];
+                    j--;
+                }
+                order[j] = record;
+            }
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        mergeSort(order, tmp, from, mid, compare);
+        mergeSort(order, tmp, mid, to, compare);
+        if (compare.applyAsInt(order[mid - 1], order[mid]) <= 0) {
+            return;
+        }
+        System.arraycopy(order, from, tmp, from, mid - from);
+        int i = from;
+        int j = mid;
+        int k = from;
+        while (i < mid && j < to) {
+            // При равенстве первой идёт запись из левой половины
+            order[k++] = compare.applyAsInt(order[j], tmp[i]) < 0 ? order[j++] : tmp[i++];
+        }
+        while (i < mid) {
+            order[k++] = tmp[i++];
+        }
+    }
+
+    @Override
+    public void clear() {
+        pages = new ByteBuffer[0];
+        shared = new boolean[0];
+        namePages = new CharBuffer[0];
+        nameTail = 0;
+        nameChars = 0;
+        liveNameChars = 0;
+        size = 0;
+        modCount++;
+    }
+
+    /**
+     * Возвращает неизменяемый снимок списка на текущий момент; копируются только ссылки на страницы,
+     * а сами страницы - при следующем изменении в них
+     */
+    @Override
+    public List<Vehicle> snapshot() {
+        Arrays.fill(shared, true);
+        return Collections.unmodifiableList(new OffHeapVehicleList(this));
+    }
+
+    @Override
+    public int idAt(int i) {
+        Objects.checkIndex(i, size);
+        return pages[i >>> PAGE_SHIFT].getInt((i & PAGE_MASK) * RECORD + ID);
+    }
+
+    @Override
+    public List<Vehicle> scanCapacityBetween(int from, int to,
+                                             double min, boolean minInclusive, double max, boolean maxInclusive) {
+        List<Vehicle> result = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            double value = pages[i >>> PAGE_SHIFT].getDouble((i & PAGE_MASK) * RECORD + CAPACITY);
+            if ((minInclusive ? value >= min : value > min) && (maxInclusive ? value <= max : value < max)) {
+                result.add(get(i));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public int scanCountCapacityAbove(int from, int to, double x) {
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            if (pages[i >>> PAGE_SHIFT].getDouble((i & PAGE_MASK) * RECORD + CAPACITY) > x) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public int scanCountNamesLessThan(int from, int to, String name) {
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            if (compareName(i, name) < 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public List<Vehicle> scanTypesLessThan(int from, int to, VehicleType bound) {
+        List<Vehicle> result = new ArrayList<>();
+        int ordinal = bound.ordinal();
+        for (int i = from; i < to; i++) {
+            byte type = pages[i >>> PAGE_SHIFT].get((i & PAGE_MASK) * RECORD + TYPE);
+            if (type != NULL_ENUM && type < ordinal) {
+                result.add(get(i));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public int[] scanTypeCounts(int from, int to) {
+        int[] counts = new int[TYPES.length];
+        for (int i = from; i < to; i++) {
+            byte type = pages[i >>> PAGE_SHIFT].get((i & PAGE_MASK) * RECORD + TYPE);
+            if (type != NULL_ENUM) {
+                counts[type]++;
+            }
+        }
+        return counts;
+    }
+
+    @Override
+    public int[] scanFuelTypeCounts(int from, int to) {
+        int[] counts = new int[FUEL_TYPES.length + 1];
+        for (int i = from; i < to; i++) {
+            byte fuelType = pages[i >>> PAGE_SHIFT].get((i & PAGE_MASK) * RECORD + FUEL_TYPE);
+            counts[fuelType == NULL_ENUM ? FUEL_TYPES.length : fuelType]++;
+        }
+        return counts;
+    }
+
+    private void store(int i, Vehicle vehicle) {
+        ByteBuffer page = writable(i >>> PAGE_SHIFT);
+        int at = (i & PAGE_MASK) * RECORD;
+        byte flags = 0;
+        page.putInt(at + ID, vehicle.getId());
+        Coordinates coordinates = vehicle.getCoordinates();
+        if (coordinates == null) {
+            flags |= NULL_COORDINATES | NULL_X;
+        } else {
+            if (coordinates.getX() == null) {
+                flags |= NULL_X;
+            } else {
+                page.putDouble(at + X, coordinates.getX());
+            }
+            page.putInt(at + Y, coordinates.getY());
+        }
+        page.putInt(at + CREATION_DAY, (int) vehicle.getCreationDate().toEpochDay());
+        if (vehicle.getEnginePower() == null) {
+            flags |= NULL_ENGINE_POWER;
+        } else {
+            page.putDouble(at + ENGINE_POWER, vehicle.getEnginePower());
+        }
+        page.putDouble(at + CAPACITY, vehicle.getCapacity());
+        page.put(at + TYPE, vehicle.getType() == null ? NULL_ENUM : (byte) vehicle.getType().ordinal());
+        page.put(at + FUEL_TYPE, vehicle.getFuelType() == null ? NULL_ENUM : (byte) vehicle.getFuelType().ordinal());
+        page.put(at + FLAGS, flags);
+        String name = vehicle.getName();
+        CharBuffer names = nameSpace(name.length());
+        for (int c = 0; c < name.length(); c++) {
+            names.put(nameTail + c, name.charAt(c));
+        }
+        putNameLocation(page, at, name.length());
+    }
+
+    private String name(ByteBuffer page, int at) {
+        char[] chars = new char[page.getInt(at + NAME_LENGTH)];
+        namePages[page.getInt(at + NAME_PAGE)].get(page.getInt(at + NAME_OFFSET), chars, 0, chars.length);
+        return new String(chars);
+    }
+
+    private int nameLength(int i) {
+        return pages[i >>> PAGE_SHIFT].getInt((i & PAGE_MASK) * RECORD + NAME_LENGTH);
+    }
+
+    /**
+     * Возвращает первые четыре символа имени элемента, дополненные нулями; беззнаковое сравнение
+     * таких чисел согласовано с String.compareTo, а равенство ничего не решает
+     */
+    private long namePrefix(int i) {
+        ByteBuffer page = pages[i >>> PAGE_SHIFT];
+        int at = (i & PAGE_MASK) * RECORD;
+        int length = Math.min(4, page.getInt(at + NAME_LENGTH));
+        CharBuffer names = namePages[page.getInt(at + NAME_PAGE)];
+        int offset = page.getInt(at + NAME_OFFSET);
+        long prefix = 0;
+        for (int c = 0; c < 4; c++) {
+            prefix = prefix << 16 | (c < length ? names.get(offset + c) : 0);
+        }
+        return prefix;
+    }
+
+    /**
+     * Сравнивает имена двух элементов так же, как String.compareTo, не создавая строк
+     */
+    private int compareNames(int i, int j) {
+        ByteBuffer first = pages[i >>> PAGE_SHIFT];
+        int a = (i & PAGE_MASK) * RECORD;
+        ByteBuffer second = pages[j >>> PAGE_SHIFT];
+        int b = (j & PAGE_MASK) * RECORD;
+        int firstLength = first.getInt(a + NAME_LENGTH);
+        int secondLength = second.getInt(b + NAME_LENGTH);
+        CharBuffer firstNames = namePages[first.getInt(a + NAME_PAGE)];
+        CharBuffer secondNames = namePages[second.getInt(b + NAME_PAGE)];
+        int firstOffset = first.getInt(a + NAME_OFFSET);
+        int secondOffset = second.getInt(b + NAME_OFFSET);
+        int common = Math.min(firstLength, secondLength);
+        for (int c = 0; c < common; c++) {
+            char x = firstNames.get(firstOffset + c);
+            char y = secondNames.get(secondOffset + c);
+            if (x != y) {
+                return x - y;
+            }
+        }
+        return firstLength - secondLength;
+    }
+
+    /**
+     * Сравнивает имя элемента с заданным так же, как String.compareTo, не создавая строку
+     */
+    private int compareName(int i, String name) {
+        ByteBuffer page = pages[i >>> PAGE_SHIFT];
+        int at = (i & PAGE_MASK) * RECORD;
+        int length = page.getInt(at + NAME_LENGTH);
+        CharBuffer names = namePages[page.getInt(at + NAME_PAGE)];
+        int offset = page.getInt(at + NAME_OFFSET);
+        int common = Math.min(length, name.length());
+        for (int c = 0; c < common; c++) {
+            char a = names.get(offset + c);
+            char b = name.charAt(c);
+            if (a != b) {
+                return a - b;
+            }
+        }
+        return length - name.length();
+    }
+
+    /**
+     * Возвращает страницу имён, в которой с позиции nameTail есть место для length символов
+     */
+    private CharBuffer nameSpace(int length) {
+        if (namePages.length == 0 || nameTail + length > namePages[namePages.length - 1].capacity()) {
+            namePages = Arrays.copyOf(namePages, namePages.length + 1);
+            namePages[namePages.length - 1] = ByteBuffer.allocateDirect(2 * Math.max(NAME_PAGE_CHARS, length))
+                    .order(ByteOrder.nativeOrder()).asCharBuffer();
+            nameTail = 0;
+        }
+        return namePages[namePages.length - 1];
+    }
+
+    /**
+     * Записывает в запись ссылку на только что дописанное с позиции nameTail имя
+     */
+    private void putNameLocation(ByteBuffer page, int at, int length) {
+        page.putInt(at + NAME_LENGTH, length);
+        page.putInt(at + NAME_PAGE, namePages.length - 1);
+        page.putInt(at + NAME_OFFSET, nameTail);
+        nameTail += length;
+        nameChars += length;
+        liveNameChars += length;
+    }
+
+    /**
+     * Переписывает живые имена в новые страницы, когда мусора в страницах имён больше, чем живых имён
+     */
+    private void compactNames() {
+        if (nameChars <= NAME_PAGE_CHARS || 2 * liveNameChars > nameChars) {
+            return;
+        }
+        CharBuffer[] old = namePages;
+        namePages = new CharBuffer[0];
+        nameChars = 0;
+        liveNameChars = 0;
+        for (int i = 0; i < size; i++) {
+            ByteBuffer page = writable(i >>> PAGE_SHIFT);
+            int at = (i & PAGE_MASK) * RECORD;
+            int length = page.getInt(at + NAME_LENGTH);
+            nameSpace(length).put(nameTail, old[page.getInt(at + NAME_PAGE)], page.getInt(at + NAME_OFFSET), length);
+            putNameLocation(page, at, length);
+        }
+    }
+
+    /**
+     * Возвращает страницу записей для изменения, копируя её, если она есть в снимке
+     */
+    private ByteBuffer writable(int p) {
+        if (shared[p]) {
+            ByteBuffer copy = newPage();
+            copy.put(0, pages[p], 0, copy.capacity());
+            pages[p] = copy;
+            shared[p] = false;
+        }
+        return pages[p];
+    }
+
+    /**
+     * Переносит count записей с позиции from на позицию to; диапазоны могут пересекаться
+     */
+    private void moveRecords(int from, int to, int count) {
+        if (from == to || count == 0) {
+            return;
+        }
+        if (buffer == null) {
+            buffer = new byte[MOVE_RECORDS * RECORD];
+        }
+        if (from > to) {
+            for (int done = 0; done < count; ) {
+                int s = from + done;
+                int d = to + done;
+                int n = Math.min(Math.min(count - done, MOVE_RECORDS),
+                        Math.min(PAGE_RECORDS - (s & PAGE_MASK), PAGE_RECORDS - (d & PAGE_MASK)));
+                copyRecords(s, d, n);
+                done += n;
+            }
+        } else {
+            for (int left = count; left > 0; ) {
+                int s = from + left;
+                int d = to + left;
+                int n = Math.min(Math.min(left, MOVE_RECORDS),
+                        Math.min(((s - 1) & PAGE_MASK) + 1, ((d - 1) & PAGE_MASK) + 1));
+                left -= n;
+                copyRecords(s - n, d - n, n);
+            }
+        }
+    }
+
+    private void copyRecords(int from, int to, int count) {
+        pages[from >>> PAGE_SHIFT].get((from & PAGE_MASK) * RECORD, buffer, 0, count * RECORD);
+        writable(to >>> PAGE_SHIFT).put((to & PAGE_MASK) * RECORD, buffer, 0, count * RECORD);
+    }
+
+    /**
+     * Оставляет первые kept элементов и отпускает лишние страницы
+     */
+    private boolean truncate(int kept) {
+        boolean removed = kept < size;
+        size = kept;
+        int needed = (size + PAGE_MASK) >>> PAGE_SHIFT;
+        if (pages.length > needed + 1) {
+            pages = Arrays.copyOf(pages, needed + 1);
+            shared = Arrays.copyOf(shared, needed + 1);
+        }
+        if (removed) {
+            modCount++;
+            compactNames();
+        }
+        return removed;
+    }
+
+    private static ByteBuffer newPage() {
+        return ByteBuffer.allocateDirect(PAGE_RECORDS * RECORD).order(ByteOrder.nativeOrder());
+    }
+}
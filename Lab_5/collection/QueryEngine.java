@@ -0,0 +1,313 @@
+package collection;
+
+import model.Vehicle;
+import model.VehicleType;
+import query.Field;
+import query.Query;
+import query.Range;
+
+import java.util.*;
+import java.util.function.BinaryOperator;
+
+/**
+ * Планирование и выполнение составных запросов (Query) по коллекции.
+ *
+ * Запрос выполняется по плану (QueryPlan): через самый избирательный вторичный индекс,
+ * если он отбирает малую часть коллекции, иначе одним проходом со всеми условиями сразу;
+ * первые limit элементов в заданном порядке отбираются кучей без полной сортировки.
+ * Методы вызываются под блокировкой коллекции, а индексы из indexesFor к этому времени построены.
+ */
+class QueryEngine {
+    // Индекс используется для запроса, если отбирает не больше такой доли коллекции; иначе дешевле просмотр
+    private static final int INDEX_SELECTIVITY = 4;
+
+    private final CapacityIndex capacityIndex;
+    private final NameIndex nameIndex;
+    private final TypeIndex typeIndex;
+    private final Map<String, SortedView> sortedViews;
+    private final List<VehicleIndex> builtIndexes;
+    private final IdIndex idIndex;
+    private final QueryExecutor queries;
+
+    private List<Vehicle> collection = List.of();
+    private boolean lazy;
+    private boolean columnar;
+
+    QueryEngine(CapacityIndex capacityIndex, NameIndex nameIndex, TypeIndex typeIndex,
+                Map<String, SortedView> sortedViews, List<VehicleIndex> builtIndexes,
+                IdIndex idIndex, QueryExecutor queries) {
+        this.capacityIndex = capacityIndex;
+        this.nameIndex = nameIndex;
+        this.typeIndex = typeIndex;
+        this.sortedViews = sortedViews;
+        this.builtIndexes = builtIndexes;
+        this.idIndex = idIndex;
+        this.queries = queries;
+    }
+
+    /**
+     * Задаёт текущее хранение коллекции: список элементов, читается ли он лениво
+     * и хранит ли он поля без объектов (VehicleColumns)
+     */
+    void setStorage(List<Vehicle> collection, boolean lazy, boolean columnar) {
+        this.collection = collection;
+        this.lazy = lazy;
+        this.columnar = columnar;
+    }
+
+    /**
+     * Индексы, которые нужны для оценки условий запроса
+     */
+    List<VehicleIndex> indexesFor(Query query) {
+        List<VehicleIndex> indexes = new ArrayList<>();
+        for (Field field : Field.values()) {
+            VehicleIndex index = indexOf(field);
+            if (index != null && query.range(field) != null) {
+                indexes.add(index);
+            }
+        }
+        return indexes;
+    }
+
+    /**
+     * Выбирает способ выполнения запроса. Индекс по полю с наименьшим числом отобранных элементов
+     * используется, если отбирает не больше 1/INDEX_SELECTIVITY коллекции. Иначе при сортировке
+     * с limit по полю с уже построенной упорядоченной копией берутся первые подходящие из неё,
+     * а в остальных случаях коллекция просматривается целиком.
+     */
+    QueryPlan plan(Query query) {
+        int size = collection.size();
+        Map<Field, Integer> estimates = new EnumMap<>(Field.class);
+        QueryPlan.Access access = QueryPlan.Access.SCAN;
+        Field field = null;
+        Range range = null;
+        if (query.hasLimit() && query.getLimit() == 0) {
+            return new QueryPlan(query, QueryPlan.Access.NONE, null, null, estimates, size, List.of(), false);
+        }
+        for (Field f : Field.values()) {
+            Range r = query.range(f);
+            if (r == null) {
+                continue;
+            }
+            if (r.isEmpty()) {
+                return new QueryPlan(query, QueryPlan.Access.NONE, f, r, estimates, size, List.of(), false);
+            }
+            int estimate;
+            if (f == Field.ID && r.getFrom() != null && r.getFrom().equals(r.getTo())) {
+                estimate = idIndex.positionOf((Integer) r.getFrom()) >= 0 ? 1 : 0;
+            } else if (indexOf(f) != null) {
+                estimate = count(f, r);
+            } else {
+                continue;
+            }
+            estimates.put(f, estimate);
+            if (field == null || estimate < estimates.get(field)) {
+                field = f;
+                range = r;
+            }
+        }
+        if (field != null && estimates.get(field) <= size / INDEX_SELECTIVITY) {
+            access = field == Field.ID ? QueryPlan.Access.ID : QueryPlan.Access.INDEX;
+        } else {
+            field = null;
+            range = null;
+            Field orderBy = query.getOrderBy();
+            SortedView view = orderBy == null ? null : sortedViews.get(orderBy.getTitle());
+            if (view != null && query.hasLimit() && builtIndexes.contains(view)) {
+                access = QueryPlan.Access.SORTED_VIEW;
+                field = orderBy;
+            }
+        }
+        // В ленивом режиме get() заполняет кэш, который нельзя трогать из потоков пула
+        return new QueryPlan(query, access, field, range, estimates, size,
+                field == null || access == QueryPlan.Access.SORTED_VIEW ? query.getConditions() : query.residual(field),
+                access == QueryPlan.Access.SCAN && !lazy && queries.isParallel(size));
+    }
+
+    /**
+     * Выполняет запрос по плану
+     */
+    List<Vehicle> execute(QueryPlan plan) {
+        Query query = plan.query;
+        Comparator<Vehicle> order = query.order();
+        int limit = query.hasLimit() ? query.getLimit() : Integer.MAX_VALUE;
+        switch (plan.access) {
+            case NONE:
+                return new ArrayList<>();
+            case ID:
+            case INDEX: {
+                List<Vehicle> candidates;
+                if (plan.access == QueryPlan.Access.ID) {
+                    int position = idIndex.positionOf((Integer) plan.range.getFrom());
+                    candidates = position < 0 ? List.of() : List.of(collection.get(position));
+                } else {
+                    candidates = select(plan.field, plan.range);
+                }
+                List<Vehicle> result = new ArrayList<>();
+                for (Vehicle vehicle : candidates) {
+                    if (test(plan, vehicle)) {
+                        result.add(vehicle);
+                    }
+                }
+                if (order == null) {
+                    result = inCollectionOrder(result);
+                    return result.size() > limit ? new ArrayList<>(result.subList(0, limit)) : result;
+                }
+                return plan.usesTopK() ? top(result, order, limit) : sorted(result, order);
+            }
+            case SORTED_VIEW: {
+                List<Vehicle> view = sortedViews.get(plan.field.getTitle()).list();
+                List<Vehicle> result = new ArrayList<>();
+                for (int i = 0; i < view.size() && result.size() < limit; i++) {
+                    Vehicle vehicle = view.get(query.isDescending() ? view.size() - 1 - i : i);
+                    if (query.test(vehicle)) {
+                        result.add(vehicle);
+                    }
+                }
+                return result;
+            }
+            default: {
+                if (plan.usesTopK()) {
+                    return scan(plan, (from, to) -> top(filter(query, from, to, Integer.MAX_VALUE), order, limit),
+                            (a, b) -> top(QueryExecutor.concat(a, b), order, limit));
+                }
+                List<Vehicle> result = scan(plan, (from, to) -> filter(query, from, to, limit), QueryExecutor::concat);
+                if (order != null) {
+                    return sorted(result, order);
+                }
+                return result.size() > limit ? new ArrayList<>(result.subList(0, limit)) : result;
+            }
+        }
+    }
+
+    /**
+     * Упорядочивает найденные по индексу элементы так же, как они стоят в коллекции
+     */
+    List<Vehicle> inCollectionOrder(List<Vehicle> vehicles) {
+        // Старшие 32 бита - позиция в коллекции, младшие - номер в списке
+        long[] keys = new long[vehicles.size()];
+        queries.query(keys.length, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                keys[i] = ((long) idIndex.positionOf(vehicles.get(i).getId()) << 32) | i;
+            }
+            return null;
+        }, (a, b) -> null);
+        queries.sort(keys);
+        List<Vehicle> result = new ArrayList<>(keys.length);
+        for (long key : keys) {
+            result.add(vehicles.get((int) key));
+        }
+        return result;
+    }
+
+    /**
+     * Возвращает вторичный индекс по полю; null, если по полю индекса нет.
+     * При колоночном хранении и хранении вне кучи индексы не строятся, запросы проходят по полям.
+     * В ленивом режиме тоже: индекс держал бы в памяти каждый прочитанный элемент.
+     */
+    private VehicleIndex indexOf(Field field) {
+        if (columnar || lazy) {
+            return null;
+        }
+        switch (field) {
+            case CAPACITY: return capacityIndex;
+            case NAME: return nameIndex;
+            case TYPE: return typeIndex;
+            default: return null;
+        }
+    }
+
+    /**
+     * Проходит коллекцию по плану: по кускам в пуле, если план параллельный, иначе в этом потоке
+     */
+    private <R> R scan(QueryPlan plan, QueryExecutor.RangeQuery<R> query, BinaryOperator<R> combine) {
+        int size = collection.size();
+        return plan.parallel ? queries.query(size, query, combine) : query.apply(0, size);
+    }
+
+    private static boolean test(QueryPlan plan, Vehicle vehicle) {
+        for (int i = 0; i < plan.residual.size(); i++) {
+            if (!plan.residual.get(i).test(vehicle)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Возвращает подходящие под запрос элементы на позициях от from до to, но не больше limit
+     */
+    private List<Vehicle> filter(Query query, int from, int to, int limit) {
+        List<Vehicle> result = new ArrayList<>();
+        for (int i = from; i < to && result.size() < limit; i++) {
+            Vehicle vehicle = collection.get(i);
+            if (query.test(vehicle)) {
+                result.add(vehicle);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Считает элементы с полем в диапазоне по вторичному индексу
+     */
+    private int count(Field field, Range range) {
+        switch (field) {
+            case CAPACITY:
+                return capacityIndex.countBetween(lowerCapacity(range), range.getFrom() == null || range.isFromInclusive(),
+                        upperCapacity(range), range.getTo() == null || range.isToInclusive());
+            case NAME:
+                return nameIndex.countBetween((String) range.getFrom(), range.isFromInclusive(),
+                        (String) range.getTo(), range.isToInclusive());
+            default:
+                return typeIndex.countBetween((VehicleType) range.getFrom(), range.isFromInclusive(),
+                        (VehicleType) range.getTo(), range.isToInclusive());
+        }
+    }
+
+    /**
+     * Выбирает элементы с полем в диапазоне по вторичному индексу
+     */
+    private List<Vehicle> select(Field field, Range range) {
+        switch (field) {
+            case CAPACITY:
+                return capacityIndex.between(lowerCapacity(range), range.getFrom() == null || range.isFromInclusive(),
+                        upperCapacity(range), range.getTo() == null || range.isToInclusive());
+            case NAME:
+                return nameIndex.between((String) range.getFrom(), range.isFromInclusive(),
+                        (String) range.getTo(), range.isToInclusive());
+            default:
+                return typeIndex.between((VehicleType) range.getFrom(), range.isFromInclusive(),
+                        (VehicleType) range.getTo(), range.isToInclusive());
+        }
+    }
+
+    private static double lowerCapacity(Range range) {
+        return range.getFrom() == null ? Double.NEGATIVE_INFINITY : (Double) range.getFrom();
+    }
+
+    private static double upperCapacity(Range range) {
+        return range.getTo() == null ? Double.POSITIVE_INFINITY : (Double) range.getTo();
+    }
+
+    /**
+     * Возвращает первые limit элементов в заданном порядке, держа кучу не больше чем на limit элементов
+     */
+    private static List<Vehicle> top(List<Vehicle> vehicles, Comparator<Vehicle> order, int limit) {
+        PriorityQueue<Vehicle> heap = new PriorityQueue<>(Math.min(limit, vehicles.size()) + 1, order.reversed());
+        for (Vehicle vehicle : vehicles) {
+            if (heap.size() < limit) {
+                heap.add(vehicle);
+            } else if (order.compare(vehicle, heap.peek()) < 0) {
+                heap.poll();
+                heap.add(vehicle);
+            }
+        }
+        return sorted(new ArrayList<>(heap), order);
+    }
+
+    private static List<Vehicle> sorted(List<Vehicle> vehicles, Comparator<Vehicle> order) {
+        vehicles.sort(order);
+        return vehicles;
+    }
+}
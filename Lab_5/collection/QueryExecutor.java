@@ -0,0 +1,113 @@
+package collection;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.BinaryOperator;
+
+/**
+ * Выполнение запросов по коллекции в выделенном пуле ForkJoin.
+ *
+ * Коллекция делится на куски по позициям, куски обрабатываются в пуле параллельно,
+ * а результаты склеиваются в порядке кусков, поэтому порядок элементов сохраняется.
+ * Коллекции меньше порога обрабатываются в вызывающем потоке одним куском, как без пула.
+ * Запрос не должен менять коллекцию: вызывающий поток держит блокировку чтения,
+ * пока ждёт все куски.
+ */
+public class QueryExecutor {
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private final ForkJoinPool pool; // null, если параллельное выполнение отключено
+    private final int threshold;
+
+    /**
+     * Создаёт исполнитель с заданным числом потоков (1 - всё выполняется последовательно)
+     * и размером коллекции, начиная с которого запросы выполняются параллельно
+     */
+    public QueryExecutor(int parallelism, int threshold) {
+        this.pool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+        this.threshold = threshold;
+    }
+
+    /**
+     * Проверяет, будет ли запрос по коллекции такого размера выполняться параллельно
+     */
+    public boolean isParallel(int size) {
+        return pool != null && size >= threshold;
+    }
+
+    /**
+     * Выполняет запрос по позициям от 0 до size и склеивает результаты кусков по порядку
+     */
+    public <R> R query(int size, RangeQuery<R> query, BinaryOperator<R> combine) {
+        if (!isParallel(size)) {
+            return query.apply(0, size);
+        }
+        int chunks = Math.min(size, pool.getParallelism() * CHUNKS_PER_THREAD);
+        List<ForkJoinTask<R>> tasks = new ArrayList<>(chunks);
+        for (int i = 0; i < chunks; i++) {
+            int from = (int) ((long) size * i / chunks);
+            int to = (int) ((long) size * (i + 1) / chunks);
+            tasks.add(pool.submit(() -> query.apply(from, to)));
+        }
+        R result = tasks.get(0).join();
+        for (int i = 1; i < chunks; i++) {
+            result = combine.apply(result, tasks.get(i).join());
+        }
+        return result;
+    }
+
+    /**
+     * Устойчиво сортирует массив (null - в естественном порядке).
+     * Arrays.parallelSort, запущенная из потока пула, делит работу в этом же пуле.
+     */
+    public <T> void sort(T[] array, Comparator<? super T> comparator) {
+        if (isParallel(array.length)) {
+            pool.submit(() -> Arrays.parallelSort(array, comparator)).join();
+        } else {
+            Arrays.sort(array, comparator);
+        }
+    }
+
+    public void sort(long[] array) {
+        if (isParallel(array.length)) {
+            pool.submit(() -> Arrays.parallelSort(array)).join();
+        } else {
+            Arrays.sort(array);
+        }
+    }
+
+    public void shutdown() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Склеивает списки результатов двух соседних кусков
+     */
+    public static <T> List<T> concat(List<T> first, List<T> second) {
+        first.addAll(second);
+        return first;
+    }
+
+    /**
+     * Складывает счётчики двух кусков
+     */
+    public static int[] sum(int[] first, int[] second) {
+        for (int i = 0; i < first.length; i++) {
+            first[i] += second[i];
+        }
+        return first;
+    }
+
+    /**
+     * Запрос по позициям коллекции от from включительно до to
+     */
+    public interface RangeQuery<R> {
+        R apply(int from, int to);
+    }
+}
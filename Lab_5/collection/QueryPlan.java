@@ -0,0 +1,116 @@
+package collection;
+
+import query.Condition;
+import query.Field;
+import query.Query;
+import query.Range;
+
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+
+/**
+ * План выполнения запроса: откуда берутся элементы, какие условия проверяются для каждого
+ * и как получается нужный порядок. Строится QueryEngine по оценкам индексов;
+ * toString - текст для команды explain.
+ */
+public class QueryPlan {
+    /**
+     * Способ выбора элементов
+     */
+    public enum Access {
+        /** Условия несовместны или limit 0: ничего не подходит */
+        NONE,
+        /** Элемент по id через индекс id -> позиция */
+        ID,
+        /** Диапазон значений поля по вторичному индексу */
+        INDEX,
+        /** Упорядоченная копия по полю сортировки до набора limit подходящих */
+        SORTED_VIEW,
+        /** Один проход по всей коллекции со всеми условиями сразу */
+        SCAN
+    }
+
+    final Query query;
+    final Access access;
+    final Field field; // поле индекса или упорядоченной копии
+    final Range range;
+    final Map<Field, Integer> estimates; // сколько элементов выберет индекс по каждому из полей
+    final int size;
+    final List<Condition> residual;
+    final boolean parallel;
+
+    QueryPlan(Query query, Access access, Field field, Range range, Map<Field, Integer> estimates,
+              int size, List<Condition> residual, boolean parallel) {
+        this.query = query;
+        this.access = access;
+        this.field = field;
+        this.range = range;
+        this.estimates = estimates;
+        this.size = size;
+        this.residual = residual;
+        this.parallel = parallel;
+    }
+
+    public Access getAccess() {
+        return access;
+    }
+
+    /**
+     * Результат сортируется кучей на limit элементов, а не целиком
+     */
+    boolean usesTopK() {
+        return query.getOrderBy() != null && query.hasLimit() && access != Access.SORTED_VIEW;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("Запрос: ").append(query.toString().isEmpty() ? "все элементы" : query);
+        if (!estimates.isEmpty()) {
+            StringJoiner joiner = new StringJoiner(", ");
+            estimates.forEach((f, estimate) -> joiner.add(f + " " + estimate));
+            sb.append("\nОценки по индексам: ").append(joiner);
+        }
+        sb.append("\nДоступ: ");
+        switch (access) {
+            case NONE:
+                sb.append(field == null ? "не нужен, limit 0" : "не нужен, условия на " + field + " несовместны");
+                return sb.toString();
+            case ID:
+                sb.append("индекс id ").append(range);
+                break;
+            case INDEX:
+                sb.append("индекс ").append(field).append(' ').append(range)
+                        .append(", ").append(estimates.get(field)).append(" из ").append(size).append(" элементов");
+                break;
+            case SORTED_VIEW:
+                sb.append("упорядоченная копия по ").append(field).append(query.isDescending() ? " с конца" : "")
+                        .append(" до ").append(query.getLimit()).append(" подходящих элементов");
+                break;
+            default:
+                sb.append("просмотр ").append(size).append(" элементов за один проход")
+                        .append(parallel ? " (по кускам параллельно)" : "");
+        }
+        StringJoiner filter = new StringJoiner(" and ");
+        residual.forEach(condition -> filter.add(condition.toString()));
+        sb.append("\nФильтр: ").append(residual.isEmpty() ? "нет" : filter);
+        sb.append("\nПорядок: ");
+        if (query.getOrderBy() == null) {
+            sb.append("коллекции");
+            if (query.hasLimit()) {
+                sb.append(", первые ").append(query.getLimit())
+                        .append(access == Access.SCAN ? " (просмотр останавливается, набрав их)" : "");
+            }
+        } else {
+            sb.append(query.getOrderBy()).append(query.isDescending() ? " по убыванию" : " по возрастанию").append(", ");
+            if (access == Access.SORTED_VIEW) {
+                sb.append("уже задан упорядоченной копией");
+            } else if (usesTopK()) {
+                sb.append("куча на ").append(query.getLimit()).append(" элементов вместо полной сортировки");
+            } else {
+                sb.append("сортировка всех подходящих");
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,213 @@
+package collection;
+
+import java.util.TreeSet;
+
+/**
+ * Сводка по одному числовому полю: количество, сумма, минимум, максимум и среднее.
+ * Сумма ведётся с компенсацией (алгоритм Ноймайера), поэтому после миллионов
+ * добавлений и удалений не накапливает ошибку округления.
+ * Минимум и максимум берутся из упорядоченного множества различных значений, поэтому удаление
+ * крайнего значения стоит O(log d) по числу различных значений, а не пересчёт по коллекции.
+ * Сколько раз встречается значение, хранится в хеш-таблице: в данных значения часто повторяются,
+ * и упорядоченное множество меняется, только когда значение появляется впервые или исчезает.
+ */
+public class RunningStats {
+    private int count;
+    private double sum;
+    private double compensation;
+    // значение -> сколько раз оно встречается; различные значения по порядку. null у копии только для чтения
+    private final ValueCounts counts;
+    private final TreeSet<Double> values;
+    private final double min;
+    private final double max;
+
+    public RunningStats() {
+        this.counts = new ValueCounts();
+        this.values = new TreeSet<>();
+        this.min = 0;
+        this.max = 0;
+    }
+
+    /**
+     * Создаёт копию только для чтения: минимум и максимум в ней зафиксированы
+     */
+    public RunningStats(RunningStats other) {
+        this.count = other.count;
+        this.sum = other.sum;
+        this.compensation = other.compensation;
+        this.counts = null;
+        this.values = null;
+        this.min = other.getMin();
+        this.max = other.getMax();
+    }
+
+    public void add(double value) {
+        count++;
+        if (counts.increment(value) == 1) {
+            values.add(value);
+        }
+        accumulate(value);
+    }
+
+    public void remove(double value) {
+        if (--count == 0) {
+            clear();
+            return;
+        }
+        if (counts.decrement(value) == 0) {
+            values.remove(value);
+        }
+        accumulate(-value);
+    }
+
+    public void clear() {
+        count = 0;
+        sum = 0;
+        compensation = 0;
+        counts.clear();
+        values.clear();
+    }
+
+    private void accumulate(double value) {
+        double t = sum + value;
+        if (Math.abs(sum) >= Math.abs(value)) {
+            compensation += (sum - t) + value;
+        } else {
+            compensation += (value - t) + sum;
+        }
+        sum = t;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public double getSum() {
+        return sum + compensation;
+    }
+
+    public double getMin() {
+        if (values == null) {
+            return min;
+        }
+        return values.isEmpty() ? 0 : values.first();
+    }
+
+    public double getMax() {
+        if (values == null) {
+            return max;
+        }
+        return values.isEmpty() ? 0 : values.last();
+    }
+
+    /**
+     * Возвращает среднее значение или NaN для пустой коллекции
+     */
+    public double getMean() {
+        return count == 0 ? Double.NaN : getSum() / count;
+    }
+
+    @Override
+    public String toString() {
+        if (count == 0) {
+            return "нет элементов";
+        }
+        return String.format("количество=%d, сумма=%s, мин=%s, макс=%s, среднее=%s",
+                count, getSum(), getMin(), getMax(), getMean());
+    }
+
+    /**
+     * Хеш-таблица значение -> количество на массивах примитивов, без упаковки в Double.
+     * Ключ - биты значения; ячейка свободна, если количество 0.
+     */
+    private static class ValueCounts {
+        private long[] keys = new long[16];
+        private int[] counts = new int[16];
+        private int size;
+
+        /**
+         * Увеличивает количество значения и возвращает новое
+         */
+        int increment(double value) {
+            if ((size + 1) * 4 > keys.length * 3) {
+                grow();
+            }
+            long key = Double.doubleToLongBits(value);
+            int cell = find(key);
+            if (counts[cell] == 0) {
+                keys[cell] = key;
+                size++;
+            }
+            return ++counts[cell];
+        }
+
+        /**
+         * Уменьшает количество значения и возвращает новое; -1, если значения нет
+         */
+        int decrement(double value) {
+            int cell = find(Double.doubleToLongBits(value));
+            if (counts[cell] == 0) {
+                return -1;
+            }
+            if (--counts[cell] > 0) {
+                return counts[cell];
+            }
+            size--;
+            shiftBack(cell);
+            return 0;
+        }
+
+        void clear() {
+            keys = new long[16];
+            counts = new int[16];
+            size = 0;
+        }
+
+        /**
+         * Ячейка со значением или свободная ячейка, где его цепочка кончается
+         */
+        private int find(long key) {
+            int mask = keys.length - 1;
+            int cell = hash(key) & mask;
+            while (counts[cell] != 0 && keys[cell] != key) {
+                cell = (cell + 1) & mask;
+            }
+            return cell;
+        }
+
+        /**
+         * Заполняет освободившуюся ячейку сдвигом следующих записей цепочки назад
+         */
+        private void shiftBack(int hole) {
+            int mask = keys.length - 1;
+            for (int next = (hole + 1) & mask; counts[next] != 0; next = (next + 1) & mask) {
+                int home = hash(keys[next]) & mask;
+                if (((next - home) & mask) >= ((next - hole) & mask)) {
+                    keys[hole] = keys[next];
+                    counts[hole] = counts[next];
+                    counts[next] = 0;
+                    hole = next;
+                }
+            }
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            int[] oldCounts = counts;
+            keys = new long[oldKeys.length * 2];
+            counts = new int[oldKeys.length * 2];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldCounts[i] != 0) {
+                    int cell = find(oldKeys[i]);
+                    keys[cell] = oldKeys[i];
+                    counts[cell] = oldCounts[i];
+                }
+            }
+        }
+
+        private static int hash(long key) {
+            // У целых чисел младшие биты нулевые, поэтому берутся старшие биты произведения
+            return (int) (((key ^ (key >>> 32)) * 0x9E3779B97F4A7C15L) >>> 32);
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package collection;
+
+import model.Vehicle;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Список транспортных средств из сегментов по 1024 элемента с копированием при записи.
+ *
+ * Снимок (snapshot) не копирует элементы, а разделяет сегменты со списком; прежде чем изменить
+ * разделённый сегмент, список копирует его. Поэтому снимок стоит O(n / 1024), после снимка каждый
+ * сегмент копируется не больше одного раза, а сам снимок не меняется и читается без блокировок.
+ * Внутри сегмента элементы лежат подряд, доступ по позиции, как у ArrayList, - O(1).
+ */
+public class SegmentedVehicleList extends AbstractList<Vehicle> implements RandomAccess {
+    private static final int SHIFT = 10;
+    private static final int SEGMENT = 1 << SHIFT;
+    private static final int MASK = SEGMENT - 1;
+
+    private Vehicle[][] segments = new Vehicle[4][];
+    private boolean[] shared = new boolean[4]; // сегмент есть в снимке, перед записью его нужно скопировать
+    private int size;
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Vehicle get(int i) {
+        Objects.checkIndex(i, size);
+        return segments[i >>> SHIFT][i & MASK];
+    }
+
+    @Override
+    public Vehicle set(int i, Vehicle vehicle) {
+        Objects.checkIndex(i, size);
+        Vehicle[] segment = writable(i >>> SHIFT);
+        Vehicle old = segment[i & MASK];
+        segment[i & MASK] = vehicle;
+        return old;
+    }
+
+    @Override
+    public void add(int i, Vehicle vehicle) {
+        Objects.checkIndex(i, size + 1);
+        if ((size & MASK) == 0) {
+            addSegment(size >>> SHIFT);
+        }
+        size++;
+        if (i < size - 1) {
+            shiftRight(i);
+        }
+        writable(i >>> SHIFT)[i & MASK] = vehicle;
+        modCount++;
+    }
+
+    @Override
+    public Vehicle remove(int i) {
+        Vehicle old = get(i);
+        shiftLeft(i);
+        truncate(size - 1);
+        modCount++;
+        return old;
+    }
+
+    /**
+     * Удаляет подходящие элементы за один проход со сдвигом остальных
+     */
+    @Override
+    public boolean removeIf(Predicate<? super Vehicle> filter) {
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            Vehicle vehicle = get(i);
+            if (!filter.test(vehicle)) {
+                if (kept != i) {
+                    set(kept, vehicle);
+                }
+                kept++;
+            }
+        }
+        if (kept == size) {
+            return false;
+        }
+        truncate(kept);
+        modCount++;
+        return true;
+    }
+
+    @Override
+    protected void removeRange(int from, int to) {
+        int count = to - from;
+        for (int i = to; i < size; i++) {
+            set(i - count, get(i));
+        }
+        truncate(size - count);
+        modCount++;
+    }
+
+    @Override
+    public void clear() {
+        segments = new Vehicle[4][];
+        shared = new boolean[4];
+        size = 0;
+        modCount++;
+    }
+
+    @Override
+    public Object[] toArray() {
+        Object[] result = new Object[size];
+        for (int from = 0; from < size; from += SEGMENT) {
+            System.arraycopy(segments[from >>> SHIFT], 0, result, from, Math.min(SEGMENT, size - from));
+        }
+        return result;
+    }
+
+    /**
+     * Возвращает неизменяемый снимок списка на текущий момент.
+     * Снимок можно читать из любого потока, пока список меняется.
+     */
+    public List<Vehicle> snapshot() {
+        int used = (size + MASK) >>> SHIFT;
+        Arrays.fill(shared, 0, used, true);
+        return new Snapshot(Arrays.copyOf(segments, used), size);
+    }
+
+    /**
+     * Возвращает сегмент для записи, сначала копируя его, если он разделён со снимком
+     */
+    private Vehicle[] writable(int segment) {
+        if (shared[segment]) {
+            segments[segment] = segments[segment].clone();
+            shared[segment] = false;
+        }
+        return segments[segment];
+    }
+
+    private void addSegment(int segment) {
+        if (segment == segments.length) {
+            segments = Arrays.copyOf(segments, segment * 2);
+            shared = Arrays.copyOf(shared, segment * 2);
+        }
+        segments[segment] = new Vehicle[SEGMENT];
+        shared[segment] = false;
+    }
+
+    /**
+     * Сдвигает элементы с позиции from на одну вправо; размер уже увеличен
+     */
+    private void shiftRight(int from) {
+        int last = size - 1;
+        int first = from >>> SHIFT;
+        for (int segment = last >>> SHIFT; segment >= first; segment--) {
+            Vehicle[] s = writable(segment);
+            int start = segment == first ? from & MASK : 0;
+            int end = segment == last >>> SHIFT ? last & MASK : MASK;
+            System.arraycopy(s, start, s, start + 1, end - start);
+            if (segment > first) {
+                s[0] = segments[segment - 1][MASK];
+            }
+        }
+    }
+
+    /**
+     * Сдвигает элементы после позиции from на одну влево; последняя позиция остаётся занятой
+     */
+    private void shiftLeft(int from) {
+        int last = size - 1;
+        int lastSegment = last >>> SHIFT;
+        for (int segment = from >>> SHIFT; segment <= lastSegment; segment++) {
+            Vehicle[] s = writable(segment);
+            int start = segment == from >>> SHIFT ? from & MASK : 0;
+            int end = segment == lastSegment ? last & MASK : MASK;
+            System.arraycopy(s, start + 1, s, start, end - start);
+            if (segment < lastSegment) {
+                s[MASK] = segments[segment + 1][0];
+            }
+        }
+    }
+
+    /**
+     * Отбрасывает элементы начиная с позиции newSize, освобождая ставшие пустыми сегменты
+     */
+    private void truncate(int newSize) {
+        int kept = (newSize + MASK) >>> SHIFT;
+        int used = (size + MASK) >>> SHIFT;
+        for (int segment = kept; segment < used; segment++) {
+            segments[segment] = null;
+            shared[segment] = false;
+        }
+        if ((newSize & MASK) != 0) {
+            Arrays.fill(writable(newSize >>> SHIFT), newSize & MASK, SEGMENT, null);
+        }
+        size = newSize;
+    }
+
+    /**
+     * Неизменяемый снимок: сегменты, общие со списком на момент снимка
+     */
+    private static class Snapshot extends AbstractList<Vehicle> implements RandomAccess {
+        private final Vehicle[][] segments;
+        private final int size;
+
+        Snapshot(Vehicle[][] segments, int size) {
+            this.segments = segments;
+            this.size = size;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public Vehicle get(int i) {
+            Objects.checkIndex(i, size);
+            return segments[i >>> SHIFT][i & MASK];
+        }
+    }
+}
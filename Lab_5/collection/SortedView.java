@@ -0,0 +1,108 @@
+package collection;
+
+import model.Vehicle;
+
+import java.util.*;
+
+/**
+ * Упорядоченная по заданному полю копия коллекции, обновляемая по изменениям.
+ * При равных значениях поля элементы идут по возрастанию id.
+ *
+ * Добавления и удаления между запросами только запоминаются. При запросе сортируются
+ * только изменения: позиции удалённых и места вставки добавленных находятся двоичным поиском,
+ * а участки между ними копируются целиком, без сравнения каждого элемента.
+ * Каждый запрос после изменений создаёт новый массив, поэтому выданный ранее список не меняется.
+ */
+public class SortedView implements VehicleIndex {
+    private final Comparator<Vehicle> order;
+
+    private Vehicle[] sorted = new Vehicle[0];
+    private List<Vehicle> view = Collections.emptyList();
+    // Изменения с прошлого запроса по id: добавленные элементы и удалённые из sorted
+    private final Map<Integer, Vehicle> added = new HashMap<>();
+    private final Map<Integer, Vehicle> removed = new HashMap<>();
+
+    public SortedView(Comparator<Vehicle> order) {
+        this.order = order.thenComparingInt(Vehicle::getId);
+    }
+
+    /**
+     * Порядок копии: по полю, при равных значениях - по id
+     */
+    public Comparator<Vehicle> order() {
+        return order;
+    }
+
+    @Override
+    public void add(Vehicle vehicle) {
+        added.put(vehicle.getId(), vehicle);
+    }
+
+    @Override
+    public void remove(Vehicle vehicle) {
+        if (added.remove(vehicle.getId()) == null) {
+            removed.put(vehicle.getId(), vehicle);
+        }
+    }
+
+    @Override
+    public void clear() {
+        sorted = new Vehicle[0];
+        view = Collections.emptyList();
+        added.clear();
+        removed.clear();
+    }
+
+    /**
+     * Возвращает элементы в порядке поля, сначала учитывая накопленные изменения.
+     * Синхронизирован: несколько запросов под блокировкой чтения могут прийти одновременно.
+     */
+    public synchronized List<Vehicle> list() {
+        if (!added.isEmpty() || !removed.isEmpty()) {
+            merge();
+        }
+        return view;
+    }
+
+    private void merge() {
+        // Сортируется Object[], а не Vehicle[]: без проверки типа при каждой записи в массив это заметно быстрее
+        Object[] objects = added.values().toArray();
+        Arrays.sort(objects, (a, b) -> order.compare((Vehicle) a, (Vehicle) b));
+        Vehicle[] delta = Arrays.copyOf(objects, objects.length, Vehicle[].class);
+        // Порядок с учётом id полный, поэтому удалённый элемент находится точно, а место вставки единственно
+        int[] gone = removed.values().stream()
+                .mapToInt(v -> Arrays.binarySearch(sorted, v, order))
+                .filter(i -> i >= 0)
+                .sorted()
+                .toArray();
+        int[] at = new int[delta.length];
+        for (int j = 0; j < delta.length; j++) {
+            int i = Arrays.binarySearch(sorted, delta[j], order);
+            at[j] = i >= 0 ? i : -i - 1;
+        }
+
+        Vehicle[] result = new Vehicle[sorted.length - gone.length + delta.length];
+        int src = 0;
+        int dst = 0;
+        int g = 0;
+        int j = 0;
+        while (true) {
+            int next = Math.min(g < gone.length ? gone[g] : sorted.length, j < delta.length ? at[j] : sorted.length);
+            System.arraycopy(sorted, src, result, dst, next - src);
+            dst += next - src;
+            src = next;
+            if (j < delta.length && at[j] == src) {
+                result[dst++] = delta[j++];
+            } else if (g < gone.length && gone[g] == src) {
+                src++;
+                g++;
+            } else {
+                break;
+            }
+        }
+        sorted = result;
+        view = Collections.unmodifiableList(Arrays.asList(sorted));
+        added.clear();
+        removed.clear();
+    }
+}
@@ -0,0 +1,372 @@
+package collection;
+
+import model.Coordinates;
+import model.Vehicle;
+
+import java.util.*;
+
+/**
+ * Пространственный индекс по координатам: равномерная сетка из квадратных ячеек.
+ *
+ * В ячейке лежат id и координаты точек в массивах примитивов, без ссылок на Vehicle,
+ * поэтому индекс не держит объекты элементов и годится для любого хранения коллекции.
+ * Размер ячейки подбирается по охвату точек так, чтобы в ячейке было в среднем около
+ * TARGET_PER_CELL точек. Когда число точек вырастает вдвое или падает вчетверо с последней
+ * раскладки, сетка раскладывается заново - как рост массива, в среднем O(1) на изменение.
+ * Точки сверх удвоения копятся в буфере и раскладываются все сразу при следующем запросе
+ * сортировкой подсчётом по ячейкам, поэтому построение по всей коллекции - один проход.
+ * Поиск в прямоугольнике перебирает только пересекающие его ячейки, поиск ближайших - кольца
+ * ячеек вокруг точки, пока следующее кольцо не окажется дальше k-й найденной точки.
+ * Элементы без координат или без x в индекс не попадают.
+ */
+public class SpatialIndex implements VehicleIndex {
+    private static final int TARGET_PER_CELL = 8;
+    private static final int MIN_LAYOUT_SIZE = 64;
+
+    private Map<Long, Cell> cells = new HashMap<>();
+    private double cellSize = 1;
+    private int size;
+    private int layoutSize = MIN_LAYOUT_SIZE; // число точек, на которое рассчитана сетка
+    private Cell pending = new Cell(); // добавленные точки, которые ещё не разложены по сетке
+
+    @Override
+    public void add(Vehicle vehicle) {
+        Coordinates c = vehicle.getCoordinates();
+        if (c == null || c.getX() == null) {
+            return;
+        }
+        size++;
+        if (size > 2 * layoutSize || pending.size > 0) {
+            pending.add(vehicle.getId(), c.getX(), c.getY());
+        } else {
+            put(vehicle.getId(), c.getX(), c.getY());
+        }
+    }
+
+    @Override
+    public void remove(Vehicle vehicle) {
+        Coordinates c = vehicle.getCoordinates();
+        if (c == null || c.getX() == null) {
+            return;
+        }
+        layout();
+        long key = key(cell(c.getX()), cell(c.getY()));
+        Cell cell = cells.get(key);
+        if (cell == null || !cell.remove(vehicle.getId())) {
+            return;
+        }
+        if (cell.size == 0) {
+            cells.remove(key);
+        }
+        size--;
+        if (layoutSize > MIN_LAYOUT_SIZE && size < layoutSize / 4) {
+            relayout();
+        }
+    }
+
+    @Override
+    public void clear() {
+        cells = new HashMap<>();
+        cellSize = 1;
+        size = 0;
+        layoutSize = MIN_LAYOUT_SIZE;
+        pending = new Cell();
+    }
+
+    /**
+     * Возвращает id элементов с x от minX до maxX и y от minY до maxY включительно
+     */
+    public int[] box(double minX, double minY, double maxX, double maxY) {
+        layout();
+        IdList result = new IdList();
+        if (minX > maxX || minY > maxY) {
+            return result.toArray();
+        }
+        long fromX = cell(minX);
+        long toX = cell(maxX);
+        long fromY = cell(minY);
+        long toY = cell(maxY);
+        if ((double) (toX - fromX + 1) * (toY - fromY + 1) > cells.size()) {
+            // Прямоугольник накрывает больше ячеек, чем занято: дешевле перебрать занятые
+            for (Map.Entry<Long, Cell> entry : cells.entrySet()) {
+                long cx = entry.getKey() >> 32;
+                long cy = (int) (long) entry.getKey();
+                if (cx >= fromX && cx <= toX && cy >= fromY && cy <= toY) {
+                    entry.getValue().collect(minX, minY, maxX, maxY, result);
+                }
+            }
+        } else {
+            for (long cx = fromX; cx <= toX; cx++) {
+                for (long cy = fromY; cy <= toY; cy++) {
+                    Cell cell = cells.get(key(cx, cy));
+                    if (cell != null) {
+                        cell.collect(minX, minY, maxX, maxY, result);
+                    }
+                }
+            }
+        }
+        return result.toArray();
+    }
+
+    /**
+     * Возвращает id k ближайших к точке (x, y) элементов по возрастанию расстояния,
+     * при равном расстоянии - по возрастанию id
+     */
+    public int[] nearest(int k, double x, double y) {
+        k = Math.min(k, size);
+        if (k <= 0) {
+            return new int[0];
+        }
+        layout();
+        // Куча с самой дальней из найденных точек наверху
+        PriorityQueue<Candidate> heap = new PriorityQueue<>(k + 1, Comparator.reverseOrder());
+        long cx = cell(x);
+        long cy = cell(y);
+        for (long ring = 0; ; ring++) {
+            // Точки кольца ring не ближе (ring - 1) ячеек от заданной
+            if (heap.size() == k && (ring - 1) * cellSize > heap.peek().distance) {
+                break;
+            }
+            if ((double) (2 * ring + 1) * (2 * ring + 1) > 4.0 * cells.size()) {
+                // Кольца разрослись больше занятой части сетки: оставшиеся ячейки проверяются подряд
+                for (Map.Entry<Long, Cell> entry : cells.entrySet()) {
+                    long dx = Math.abs((entry.getKey() >> 32) - cx);
+                    long dy = Math.abs((int) (long) entry.getKey() - cy);
+                    if (Math.max(dx, dy) >= ring) {
+                        visit(entry.getValue(), entry.getKey(), k, x, y, heap);
+                    }
+                }
+                break;
+            }
+            for (long i = -ring; i <= ring; i++) {
+                visit(cx + i, cy - ring, k, x, y, heap);
+                if (ring > 0) {
+                    visit(cx + i, cy + ring, k, x, y, heap);
+                }
+            }
+            for (long j = -ring + 1; j <= ring - 1; j++) {
+                visit(cx - ring, cy + j, k, x, y, heap);
+                visit(cx + ring, cy + j, k, x, y, heap);
+            }
+        }
+        int[] result = new int[heap.size()];
+        for (int i = result.length - 1; i >= 0; i--) {
+            result[i] = heap.poll().id;
+        }
+        return result;
+    }
+
+    private void visit(long cx, long cy, int k, double x, double y, PriorityQueue<Candidate> heap) {
+        long key = key(cx, cy);
+        Cell cell = cells.get(key);
+        if (cell != null) {
+            visit(cell, key, k, x, y, heap);
+        }
+    }
+
+    private void visit(Cell cell, long key, int k, double x, double y, PriorityQueue<Candidate> heap) {
+        if (heap.size() == k && distanceToCell(key, x, y) > heap.peek().distance) {
+            return;
+        }
+        for (int i = 0; i < cell.size; i++) {
+            double distance = Math.hypot(cell.xs[i] - x, cell.ys[i] - y);
+            if (heap.size() < k) {
+                heap.add(new Candidate(distance, cell.ids[i]));
+            } else {
+                Candidate farthest = heap.peek();
+                if (distance < farthest.distance || distance == farthest.distance && cell.ids[i] < farthest.id) {
+                    heap.poll();
+                    heap.add(new Candidate(distance, cell.ids[i]));
+                }
+            }
+        }
+    }
+
+    /**
+     * Расстояние от точки до ближайшей точки ячейки
+     */
+    private double distanceToCell(long key, double x, double y) {
+        double left = (key >> 32) * cellSize;
+        double bottom = (int) key * cellSize;
+        double dx = Math.max(0, Math.max(left - x, x - (left + cellSize)));
+        double dy = Math.max(0, Math.max(bottom - y, y - (bottom + cellSize)));
+        return Math.hypot(dx, dy);
+    }
+
+    private void put(int id, double x, int y) {
+        cells.computeIfAbsent(key(cell(x), cell(y)), key -> new Cell()).add(id, x, y);
+    }
+
+    /**
+     * Раскладывает накопленные точки. Запросы идут под блокировкой чтения параллельно,
+     * поэтому раскладку выполняет первый из них, а остальные её дожидаются.
+     */
+    private synchronized void layout() {
+        if (pending.size > 0) {
+            relayout();
+        }
+    }
+
+    /**
+     * Раскладывает все точки по сетке с размером ячейки под их текущее число и охват
+     */
+    private void relayout() {
+        Cell all = pending;
+        for (Cell cell : cells.values()) {
+            for (int i = 0; i < cell.size; i++) {
+                all.add(cell.ids[i], cell.xs[i], cell.ys[i]);
+            }
+        }
+        pending = new Cell();
+        cells = new HashMap<>();
+        layoutSize = Math.max(size, MIN_LAYOUT_SIZE);
+        if (size == 0) {
+            cellSize = 1;
+            return;
+        }
+        double minX = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        int minY = Integer.MAX_VALUE;
+        int maxY = Integer.MIN_VALUE;
+        for (int i = 0; i < size; i++) {
+            minX = Math.min(minX, all.xs[i]);
+            maxX = Math.max(maxX, all.xs[i]);
+            minY = Math.min(minY, all.ys[i]);
+            maxY = Math.max(maxY, all.ys[i]);
+        }
+        double area = Math.max(maxX - minX, 1) * Math.max((double) maxY - minY, 1);
+        cellSize = Math.sqrt(area * TARGET_PER_CELL / size);
+        // Вытянутый охват (точки на одной линии, далёкие выбросы) даёт лишние пустые ячейки;
+        // ячейки укрупняются, пока их не больше двух на точку
+        while ((double) (cell(maxX) - cell(minX) + 1) * (cell(maxY) - cell(minY) + 1) > 2.0 * size + 16) {
+            cellSize *= 2;
+        }
+        // Сортировка подсчётом по ячейкам охвата
+        long fromX = cell(minX);
+        long fromY = cell(minY);
+        long rows = cell(maxY) - fromY + 1;
+        int[] slots = new int[size];
+        int[] starts = new int[Math.toIntExact((cell(maxX) - fromX + 1) * rows) + 1];
+        for (int i = 0; i < size; i++) {
+            slots[i] = (int) ((cell(all.xs[i]) - fromX) * rows + cell(all.ys[i]) - fromY);
+            starts[slots[i] + 1]++;
+        }
+        for (int s = 1; s < starts.length; s++) {
+            starts[s] += starts[s - 1];
+        }
+        int[] order = new int[size];
+        int[] next = Arrays.copyOf(starts, starts.length - 1);
+        for (int i = 0; i < size; i++) {
+            order[next[slots[i]]++] = i;
+        }
+        for (int s = 0; s + 1 < starts.length; s++) {
+            int count = starts[s + 1] - starts[s];
+            if (count == 0) {
+                continue;
+            }
+            Cell cell = new Cell(count);
+            for (int j = starts[s]; j < starts[s + 1]; j++) {
+                int i = order[j];
+                cell.add(all.ids[i], all.xs[i], all.ys[i]);
+            }
+            cells.put(key(fromX + s / rows, fromY + s % rows), cell);
+        }
+    }
+
+    private long cell(double value) {
+        // Номер ячейки ограничен int, чтобы пара номеров помещалась в ключ
+        return (long) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, Math.floor(value / cellSize)));
+    }
+
+    private static long key(long cx, long cy) {
+        return (cx << 32) | (cy & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Точки одной ячейки
+     */
+    private static class Cell {
+        int[] ids;
+        double[] xs;
+        int[] ys;
+        int size;
+
+        Cell() {
+            this(4);
+        }
+
+        Cell(int capacity) {
+            ids = new int[capacity];
+            xs = new double[capacity];
+            ys = new int[capacity];
+        }
+
+        void add(int id, double x, int y) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                xs = Arrays.copyOf(xs, size * 2);
+                ys = Arrays.copyOf(ys, size * 2);
+            }
+            ids[size] = id;
+            xs[size] = x;
+            ys[size] = y;
+            size++;
+        }
+
+        /**
+         * Удаляет точку с заданным id, ставя на её место последнюю
+         */
+        boolean remove(int id) {
+            for (int i = 0; i < size; i++) {
+                if (ids[i] == id) {
+                    size--;
+                    ids[i] = ids[size];
+                    xs[i] = xs[size];
+                    ys[i] = ys[size];
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        void collect(double minX, double minY, double maxX, double maxY, IdList result) {
+            for (int i = 0; i < size; i++) {
+                if (xs[i] >= minX && xs[i] <= maxX && ys[i] >= minY && ys[i] <= maxY) {
+                    result.add(ids[i]);
+                }
+            }
+        }
+    }
+
+    private static class Candidate implements Comparable<Candidate> {
+        final double distance;
+        final int id;
+
+        Candidate(double distance, int id) {
+            this.distance = distance;
+            this.id = id;
+        }
+
+        @Override
+        public int compareTo(Candidate o) {
+            int c = Double.compare(distance, o.distance);
+            return c != 0 ? c : Integer.compare(id, o.id);
+        }
+    }
+
+    private static class IdList {
+        int[] ids = new int[16];
+        int size;
+
+        void add(int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(ids, size);
+        }
+    }
+}
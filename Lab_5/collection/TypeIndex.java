@@ -0,0 +1,100 @@
+package collection;
+
+import model.Vehicle;
+import model.VehicleType;
+
+import java.util.*;
+
+/**
+ * Индекс по типу: для каждого VehicleType - набор элементов этого типа.
+ * Порядок элементов внутри набора не задан; элементы с одинаковым id не сливаются.
+ */
+public class TypeIndex implements VehicleIndex {
+    private final EnumMap<VehicleType, VehicleBucket> buckets = new EnumMap<>(VehicleType.class);
+
+    public TypeIndex() {
+        for (VehicleType type : VehicleType.values()) {
+            buckets.put(type, new VehicleBucket());
+        }
+    }
+
+    @Override
+    public void add(Vehicle vehicle) {
+        if (vehicle.getType() != null) {
+            buckets.get(vehicle.getType()).add(vehicle);
+        }
+    }
+
+    @Override
+    public void remove(Vehicle vehicle) {
+        if (vehicle.getType() != null) {
+            buckets.get(vehicle.getType()).remove(vehicle);
+        }
+    }
+
+    @Override
+    public void clear() {
+        // Новые наборы вместо очистки: у очищенной HashMap остаётся большая таблица
+        for (VehicleType type : VehicleType.values()) {
+            buckets.put(type, new VehicleBucket());
+        }
+    }
+
+    /**
+     * Возвращает элементы всех типов, меньших заданного, по порядку типов
+     */
+    public List<Vehicle> lessThan(VehicleType type) {
+        int size = 0;
+        for (VehicleType t : buckets.keySet()) {
+            if (t.ordinal() >= type.ordinal()) break;
+            size += buckets.get(t).size();
+        }
+        List<Vehicle> result = new ArrayList<>(size);
+        for (VehicleType t : buckets.keySet()) {
+            if (t.ordinal() >= type.ordinal()) break;
+            buckets.get(t).addTo(result);
+        }
+        return result;
+    }
+
+    /**
+     * Возвращает элементы с типом в заданном диапазоне (null - граница не задана) по порядку типов
+     */
+    public List<Vehicle> between(VehicleType from, boolean fromInclusive, VehicleType to, boolean toInclusive) {
+        List<Vehicle> result = new ArrayList<>(countBetween(from, fromInclusive, to, toInclusive));
+        for (VehicleType t : buckets.keySet()) {
+            if (contains(t, from, fromInclusive, to, toInclusive)) {
+                buckets.get(t).addTo(result);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Возвращает количество элементов с типом в заданном диапазоне (null - граница не задана)
+     */
+    public int countBetween(VehicleType from, boolean fromInclusive, VehicleType to, boolean toInclusive) {
+        int count = 0;
+        for (VehicleType t : buckets.keySet()) {
+            if (contains(t, from, fromInclusive, to, toInclusive)) {
+                count += buckets.get(t).size();
+            }
+        }
+        return count;
+    }
+
+    private static boolean contains(VehicleType t, VehicleType from, boolean fromInclusive,
+                                    VehicleType to, boolean toInclusive) {
+        return (from == null || (fromInclusive ? t.compareTo(from) >= 0 : t.compareTo(from) > 0))
+                && (to == null || (toInclusive ? t.compareTo(to) <= 0 : t.compareTo(to) < 0));
+    }
+
+    /**
+     * Возвращает количество элементов каждого типа
+     */
+    public Map<VehicleType, Integer> counts() {
+        Map<VehicleType, Integer> counts = new EnumMap<>(VehicleType.class);
+        buckets.forEach((type, bucket) -> counts.put(type, bucket.size()));
+        return counts;
+    }
+}
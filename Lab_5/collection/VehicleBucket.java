@@ -0,0 +1,89 @@
+package collection;
+
+import model.Vehicle;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Группа элементов с одинаковым значением поля во вторичном индексе.
+ * Vehicle.equals сравнивает id, но элементы с одинаковым id (не заданный id 0 или повторённый
+ * в файле) не сливаются: под таким id хранится список. Удаляется тот же объект, а если его нет
+ * (в ленивом режиме элемент мог быть прочитан из файла заново) - другой элемент с тем же id.
+ */
+class VehicleBucket {
+    // элемент или List<Vehicle> с одинаковым id
+    private final Map<Vehicle, Object> byId = new HashMap<>();
+    private int size;
+
+    void add(Vehicle vehicle) {
+        Object current = byId.putIfAbsent(vehicle, vehicle);
+        if (current instanceof Vehicle) {
+            List<Vehicle> same = new ArrayList<>(2);
+            same.add((Vehicle) current);
+            same.add(vehicle);
+            byId.put(vehicle, same);
+        } else if (current != null) {
+            listOf(current).add(vehicle);
+        }
+        size++;
+    }
+
+    /**
+     * Удаляет элемент; возвращает false, если элемента с таким id в группе нет
+     */
+    boolean remove(Vehicle vehicle) {
+        Object current = byId.get(vehicle);
+        if (current == null) {
+            return false;
+        }
+        if (current instanceof Vehicle) {
+            byId.remove(vehicle);
+        } else {
+            List<Vehicle> same = listOf(current);
+            int i = same.size() - 1;
+            while (i > 0 && same.get(i) != vehicle) {
+                i--;
+            }
+            same.remove(i);
+            if (same.size() == 1) {
+                byId.put(vehicle, same.get(0));
+            }
+        }
+        size--;
+        return true;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Возвращает какой-нибудь элемент группы
+     */
+    Vehicle any() {
+        Object value = byId.values().iterator().next();
+        return value instanceof Vehicle ? (Vehicle) value : listOf(value).get(0);
+    }
+
+    /**
+     * Добавляет все элементы группы в коллекцию
+     */
+    void addTo(Collection<? super Vehicle> result) {
+        for (Object value : byId.values()) {
+            if (value instanceof Vehicle) {
+                result.add((Vehicle) value);
+            } else {
+                result.addAll(listOf(value));
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Vehicle> listOf(Object value) {
+        return (List<Vehicle>) value;
+    }
+}
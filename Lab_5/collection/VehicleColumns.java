@@ -0,0 +1,65 @@
+package collection;
+
+import model.Vehicle;
+import model.VehicleType;
+
+import java.util.List;
+
+/**
+ * Список, который хранит поля элементов без объектов Vehicle: в массивах примитивов
+ * (ColumnarVehicleList) или в записях вне кучи (OffHeapVehicleList).
+ *
+ * При таком хранении CollectionManager не строит вторичные индексы по элементам,
+ * а выполняет запросы проходом по полям (scan*), создавая объекты только для найденных.
+ * Запросы принимают диапазон позиций, чтобы куски коллекции можно было обработать параллельно.
+ */
+public interface VehicleColumns extends List<Vehicle> {
+    /**
+     * Возвращает id элемента, не создавая объект
+     */
+    int idAt(int i);
+
+    /**
+     * Возвращает неизменяемый снимок списка, который можно читать из любого потока, пока список меняется
+     */
+    List<Vehicle> snapshot();
+
+    /**
+     * Удаляет элементы с именем меньше (sign < 0) или больше (sign > 0) заданного,
+     * сравнивая только имена
+     */
+    boolean removeNamesComparedTo(String name, int sign);
+
+    /**
+     * Возвращает элементы на позициях от from до to с capacity в заданном диапазоне
+     * (границы включаются по флагам) в порядке коллекции
+     */
+    List<Vehicle> scanCapacityBetween(int from, int to,
+                                      double min, boolean minInclusive, double max, boolean maxInclusive);
+
+    /**
+     * Возвращает количество элементов на позициях от from до to с capacity больше x
+     */
+    int scanCountCapacityAbove(int from, int to, double x);
+
+    /**
+     * Возвращает количество элементов на позициях от from до to с именем меньше заданного
+     */
+    int scanCountNamesLessThan(int from, int to, String name);
+
+    /**
+     * Возвращает элементы на позициях от from до to с типом меньше заданного в порядке коллекции
+     */
+    List<Vehicle> scanTypesLessThan(int from, int to, VehicleType bound);
+
+    /**
+     * Считает элементы на позициях от from до to по порядковому номеру типа
+     */
+    int[] scanTypeCounts(int from, int to);
+
+    /**
+     * Считает элементы на позициях от from до to по порядковому номеру типа топлива;
+     * последний счётчик - элементы без типа топлива
+     */
+    int[] scanFuelTypeCounts(int from, int to);
+}
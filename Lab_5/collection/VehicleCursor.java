@@ -0,0 +1,61 @@
+package collection;
+
+import model.Vehicle;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Predicate;
+
+/**
+ * Курсор по элементам списка (обычно снимка коллекции) начиная с заданной позиции:
+ * отдаёт подходящие под условие элементы по одному, пока не наберёт limit.
+ * Результат не собирается в отдельный список, поэтому его можно выводить по мере прохода.
+ */
+public class VehicleCursor implements Iterator<Vehicle> {
+    private final List<Vehicle> source;
+    private final Predicate<Vehicle> filter;
+    private int position;
+    private int remaining;
+    private Vehicle next;
+
+    public VehicleCursor(List<Vehicle> source, int offset, int limit, Predicate<Vehicle> filter) {
+        this.source = source;
+        this.filter = filter;
+        this.position = offset;
+        this.remaining = limit;
+    }
+
+    /**
+     * Курсор по всем элементам готового результата
+     */
+    public VehicleCursor(List<Vehicle> result) {
+        this(result, 0, Integer.MAX_VALUE, null);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next != null) {
+            return true;
+        }
+        while (remaining > 0 && position < source.size()) {
+            Vehicle vehicle = source.get(position++);
+            if (filter == null || filter.test(vehicle)) {
+                next = vehicle;
+                remaining--;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public Vehicle next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Vehicle vehicle = next;
+        next = null;
+        return vehicle;
+    }
+}
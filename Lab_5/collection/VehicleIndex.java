@@ -0,0 +1,16 @@
+package collection;
+
+import model.Vehicle;
+
+/**
+ * Вторичный индекс по элементам коллекции.
+ * CollectionManager строит индекс при первом запросе к нему
+ * и дальше сообщает о каждом добавленном и удалённом элементе.
+ */
+public interface VehicleIndex {
+    void add(Vehicle vehicle);
+
+    void remove(Vehicle vehicle);
+
+    void clear();
+}
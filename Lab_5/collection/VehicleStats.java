@@ -0,0 +1,55 @@
+package collection;
+
+import model.Vehicle;
+
+/**
+ * Сводки по capacity и enginePower, обновляемые при каждом изменении коллекции.
+ * Сводки не устаревают: любое изменение учитывается без прохода по коллекции.
+ */
+public class VehicleStats implements VehicleIndex {
+    private final RunningStats capacity;
+    private final RunningStats enginePower;
+
+    public VehicleStats() {
+        this.capacity = new RunningStats();
+        this.enginePower = new RunningStats();
+    }
+
+    /**
+     * Создаёт копию сводок, которую можно читать без блокировки коллекции
+     */
+    public VehicleStats(VehicleStats other) {
+        this.capacity = new RunningStats(other.capacity);
+        this.enginePower = new RunningStats(other.enginePower);
+    }
+
+    @Override
+    public void add(Vehicle vehicle) {
+        capacity.add(vehicle.getCapacity());
+        if (vehicle.getEnginePower() != null) {
+            enginePower.add(vehicle.getEnginePower());
+        }
+    }
+
+    @Override
+    public void remove(Vehicle vehicle) {
+        capacity.remove(vehicle.getCapacity());
+        if (vehicle.getEnginePower() != null) {
+            enginePower.remove(vehicle.getEnginePower());
+        }
+    }
+
+    @Override
+    public void clear() {
+        capacity.clear();
+        enginePower.clear();
+    }
+
+    public RunningStats getCapacity() {
+        return capacity;
+    }
+
+    public RunningStats getEnginePower() {
+        return enginePower;
+    }
+}
@@ -1,15 +1,18 @@
 package commands;
 
 import collection.CollectionManager;
+import collection.VehicleStats;
 import model.*;
+import query.Query;
 import utils.InputValidator;
+import utils.VehiclePrinter;
 
 import java.io.*;
 import java.util.*;
 
 /**
  * Единый класс для обработки всех команд.
- * Содержит логику выполнения всех 15 команд.
+ * Содержит логику выполнения всех команд.
  */
 public class CommandExecutor {
     private final CollectionManager collectionManager;
@@ -55,11 +58,14 @@ public class CommandExecutor {
                     System.out.println(collectionManager.getInfo());
                     break;
                 case "show":
-                    collectionManager.showAll();
+                    handleShow(args);
                     break;
                 case "add":
                     handleAdd();
                     break;
+                case "bulk_add":
+                    handleBulkAdd(args);
+                    break;
                 case "update":
                     handleUpdate(args);
                     break;
@@ -86,18 +92,59 @@ public class CommandExecutor {
                 case "remove_lower":
                     handleRemoveLower();
                     break;
+                case "remove_greater":
+                    handleRemoveGreater();
+                    break;
+                case "count_lower":
+                    handleCountLower();
+                    break;
                 case "sort":
                     collectionManager.sort();
                     break;
+                case "show_sorted":
+                    handleShowSorted(args);
+                    break;
                 case "sum_of_capacity":
                     System.out.println("Сумма capacity: " + collectionManager.getSumOfCapacity());
                     break;
+                case "stats":
+                    VehicleStats stats = collectionManager.getStats();
+                    System.out.println("capacity: " + stats.getCapacity());
+                    System.out.println("enginePower: " + stats.getEnginePower());
+                    break;
                 case "filter_by_capacity":
                     handleFilterByCapacity(args);
                     break;
                 case "filter_less_than_type":
                     handleFilterLessThanType(args);
                     break;
+                case "filter_capacity_between":
+                    handleFilterCapacityBetween(args);
+                    break;
+                case "count_capacity_above":
+                    handleCountCapacityAbove(args);
+                    break;
+                case "filter_in_box":
+                    handleFilterInBox(args);
+                    break;
+                case "nearest":
+                    handleNearest(args);
+                    break;
+                case "where":
+                    handleWhere(args);
+                    break;
+                case "explain":
+                    System.out.println(collectionManager.explain(Query.parse(String.join(" ", args))));
+                    break;
+                case "group_counts_by_type":
+                    collectionManager.countByType().forEach((type, count) ->
+                            System.out.println(type + ": " + count));
+                    break;
+                case "group_counts_by_fuel_type":
+                    collectionManager.countByFuelType().forEach((type, count) ->
+                            System.out.println(type + ": " + count));
+                    System.out.println("не указан: " + collectionManager.countWithoutFuelType());
+                    break;
                 default:
                     System.out.println("Неизвестная команда. Введите 'help' для справки.");
             }
@@ -116,20 +163,36 @@ public class CommandExecutor {
                 Доступные команды:
                 help                                      - вывести справку
                 info                                      - информация о коллекции
-                show                                      - вывести все элементы
+                show [offset] [limit]                     - вывести элементы (все или limit штук с позиции offset, с нуля)
                 add                                       - добавить новый элемент
+                bulk_add file_name                        - добавить элементы из файла (xml, bin, csv с заголовком)
                 update id                                 - обновить элемент по id
                 remove_by_id id                           - удалить элемент по id
                 clear                                     - очистить коллекцию
                 save                                      - сохранить коллекцию в файл
                 execute_script file_name                  - выполнить скрипт
-                exit                                      - завершить программу
+                exit                                      - завершить программу без сохранения (с журналом,
+                                                            -Djournal.enabled=true, изменения восстановятся при запуске)
                 remove_last                               - удалить последний элемент
                 remove_lower                              - удалить элементы меньше заданного
+                remove_greater                            - удалить элементы больше заданного
+                count_lower                               - количество элементов меньше заданного
                 sort                                      - отсортировать коллекцию
+                show_sorted field                         - вывести элементы по возрастанию поля (name, capacity, enginePower, creationDate)
                 sum_of_capacity                           - сумма значений capacity
+                stats                                     - количество, сумма, минимум, максимум и среднее capacity и enginePower
                 filter_by_capacity capacity               - фильтр по capacity
                 filter_less_than_type type                - фильтр по типу (CAR, SUBMARINE, BICYCLE, HOVERBOARD)
+                filter_capacity_between min max           - элементы с capacity от min до max
+                count_capacity_above capacity             - количество элементов с capacity больше заданного
+                filter_in_box x1 y1 x2 y2                 - элементы с координатами в прямоугольнике между точками (x1, y1) и (x2, y2)
+                nearest k x y                             - k элементов, ближайших к точке (x, y)
+                where условия [order by поле [asc|desc]] [limit n]
+                                                          - элементы, подходящие под условия (через and),
+                                                            например: where type<SUBMARINE and capacity>=20 order by enginePower limit 50
+                explain запрос                            - показать план выполнения запроса where
+                group_counts_by_type                      - количество элементов каждого типа
+                group_counts_by_fuel_type                 - количество элементов с каждым типом топлива
                 """);
     }
 
@@ -141,6 +204,39 @@ public class CommandExecutor {
         collectionManager.add(vehicle);
     }
 
+    /**
+     * Обрабатывает команду show
+     */
+    private void handleShow(String[] args) {
+        if (args.length == 0) {
+            collectionManager.showAll();
+            return;
+        }
+
+        try {
+            int offset = Integer.parseInt(args[0]);
+            int limit = args.length > 1 ? Integer.parseInt(args[1]) : Integer.MAX_VALUE;
+            if (offset < 0 || limit <= 0) {
+                System.out.println("offset не может быть отрицательным, а limit должен быть больше 0");
+                return;
+            }
+            collectionManager.show(offset, limit);
+        } catch (NumberFormatException e) {
+            System.out.println("offset и limit должны быть целыми числами");
+        }
+    }
+
+    /**
+     * Обрабатывает команду bulk_add
+     */
+    private void handleBulkAdd(String[] args) {
+        if (args.length == 0) {
+            System.out.println("Укажите имя файла");
+            return;
+        }
+        collectionManager.bulkAdd(args[0]);
+    }
+
     /**
      * Обрабатывает команду update
      */
@@ -158,8 +254,11 @@ public class CommandExecutor {
             }
 
             Vehicle vehicle = readVehicle();
+            // Пока вводились поля, элемент могли удалить
             if (collectionManager.updateById(id, vehicle)) {
                 System.out.println("Элемент с id " + id + " обновлен");
+            } else {
+                System.out.println("Элемент с id " + id + " не найден");
             }
         } catch (NumberFormatException e) {
             System.out.println("id должен быть числом");
@@ -239,6 +338,41 @@ public class CommandExecutor {
         collectionManager.removeLower(vehicle);
     }
 
+    /**
+     * Обрабатывает команду remove_greater
+     */
+    private void handleRemoveGreater() {
+        System.out.println("Введите элемент для сравнения:");
+        Vehicle vehicle = readVehicle();
+        collectionManager.removeGreater(vehicle);
+    }
+
+    /**
+     * Обрабатывает команду count_lower
+     */
+    private void handleCountLower() {
+        System.out.println("Введите элемент для сравнения:");
+        Vehicle vehicle = readVehicle();
+        System.out.println("Элементов меньше заданного: " + collectionManager.countLower(vehicle));
+    }
+
+    /**
+     * Обрабатывает команду show_sorted
+     */
+    private void handleShowSorted(String[] args) {
+        if (args.length == 0) {
+            System.out.println("Укажите поле сортировки " + collectionManager.getSortFields());
+            return;
+        }
+
+        List<Vehicle> result = collectionManager.sortedBy(args[0]);
+        if (result.isEmpty()) {
+            System.out.println("Коллекция пуста");
+        } else {
+            VehiclePrinter.console().printAll(result);
+        }
+    }
+
     /**
      * Обрабатывает команду filter_by_capacity
      */
@@ -256,13 +390,140 @@ public class CommandExecutor {
                 System.out.println("Элементы с capacity = " + capacity + " не найдены");
             } else {
                 System.out.println("Найдено элементов: " + result.size());
-                result.forEach(System.out::println);
+                VehiclePrinter.console().printAll(result);
+            }
+        } catch (NumberFormatException e) {
+            System.out.println("capacity должно быть числом");
+        }
+    }
+
+    /**
+     * Обрабатывает команду filter_capacity_between
+     */
+    private void handleFilterCapacityBetween(String[] args) {
+        if (args.length < 2) {
+            System.out.println("Укажите min и max значения capacity");
+            return;
+        }
+
+        try {
+            double min = Double.parseDouble(args[0]);
+            double max = Double.parseDouble(args[1]);
+            if (min > max) {
+                System.out.println("min не может быть больше max");
+                return;
+            }
+            List<Vehicle> result = collectionManager.filterCapacityBetween(min, max);
+
+            if (result.isEmpty()) {
+                System.out.println("Элементы с capacity от " + min + " до " + max + " не найдены");
+            } else {
+                System.out.println("Найдено элементов: " + result.size());
+                VehiclePrinter.console().printAll(result);
             }
         } catch (NumberFormatException e) {
             System.out.println("capacity должно быть числом");
         }
     }
 
+    /**
+     * Обрабатывает команду count_capacity_above
+     */
+    private void handleCountCapacityAbove(String[] args) {
+        if (args.length == 0) {
+            System.out.println("Укажите значение capacity");
+            return;
+        }
+
+        try {
+            double capacity = Double.parseDouble(args[0]);
+            System.out.println("Элементов с capacity больше " + capacity + ": "
+                    + collectionManager.countCapacityAbove(capacity));
+        } catch (NumberFormatException e) {
+            System.out.println("capacity должно быть числом");
+        }
+    }
+
+    /**
+     * Обрабатывает команду filter_in_box
+     */
+    private void handleFilterInBox(String[] args) {
+        if (args.length < 4) {
+            System.out.println("Укажите углы прямоугольника: x1 y1 x2 y2");
+            return;
+        }
+
+        try {
+            double x1 = Double.parseDouble(args[0]);
+            double y1 = Double.parseDouble(args[1]);
+            double x2 = Double.parseDouble(args[2]);
+            double y2 = Double.parseDouble(args[3]);
+            List<Vehicle> result = collectionManager.filterInBox(Math.min(x1, x2), Math.min(y1, y2),
+                    Math.max(x1, x2), Math.max(y1, y2));
+
+            if (result.isEmpty()) {
+                System.out.println("В прямоугольнике нет элементов");
+            } else {
+                System.out.println("Найдено элементов: " + result.size());
+                VehiclePrinter.console().printAll(result);
+            }
+        } catch (NumberFormatException e) {
+            System.out.println("Координаты должны быть числами");
+        }
+    }
+
+    /**
+     * Обрабатывает команду nearest
+     */
+    private void handleNearest(String[] args) {
+        if (args.length < 3) {
+            System.out.println("Укажите количество элементов k и точку: x y");
+            return;
+        }
+
+        int k;
+        try {
+            k = Integer.parseInt(args[0]);
+        } catch (NumberFormatException e) {
+            k = 0;
+        }
+        if (k <= 0) {
+            System.out.println("k должно быть положительным целым числом");
+            return;
+        }
+        try {
+            double x = Double.parseDouble(args[1]);
+            double y = Double.parseDouble(args[2]);
+            // Расстояние до NaN или бесконечной точки не определено
+            if (!Double.isFinite(x) || !Double.isFinite(y)) {
+                throw new NumberFormatException();
+            }
+            List<Vehicle> result = collectionManager.nearest(k, x, y);
+
+            if (result.isEmpty()) {
+                System.out.println("Элементов с координатами нет");
+            } else {
+                System.out.println("Найдено элементов: " + result.size());
+                VehiclePrinter.console().printAll(result);
+            }
+        } catch (NumberFormatException e) {
+            System.out.println("Координаты должны быть числами");
+        }
+    }
+
+    /**
+     * Обрабатывает команду where.
+     * Элементы выводятся по мере прохода курсора, поэтому их количество известно только в конце.
+     */
+    private void handleWhere(String[] args) {
+        int found = VehiclePrinter.console().printAll(collectionManager.cursor(Query.parse(String.join(" ", args))));
+        if (found == 0) {
+            System.out.println("Подходящих элементов нет");
+        } else {
+            System.out.println("Найдено элементов: " + found);
+        }
+    }
+
     /**
      * Обрабатывает команду filter_less_than_type
      */
@@ -280,7 +541,7 @@ public class CommandExecutor {
                 System.out.println("Элементы с типом меньше " + type + " не найдены");
             } else {
                 System.out.println("Найдено элементов: " + result.size());
-                result.forEach(System.out::println);
+                VehiclePrinter.console().printAll(result);
             }
         } catch (IllegalArgumentException e) {
             System.out.println(e.getMessage());
@@ -0,0 +1,344 @@
+package file;
+
+import model.*;
+import exceptions.InvalidDataException;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Бинарный снимок коллекции, читаемый через отображение файла в память.
+ * Сжатый снимок отобразить нельзя, он читается потоком через readAll.
+ *
+ * Формат (big-endian):
+ * <pre>
+ * magic "VHCL", int version, int count, long journalGeneration (с версии 2), int lastId (с версии 3)
+ * словарь VehicleType: byte n, n * (short len, имя)
+ * словарь FuelType:    byte n, n * (short len, имя)
+ * таблица имён:        int n, n * (int len, UTF-8 байты)
+ * count записей фиксированной длины RECORD_SIZE:
+ *   int id, int индекс имени, double x, int y, int creationDate (epoch day),
+ *   double enginePower, double capacity, byte type, byte fuelType, byte флаги
+ * </pre>
+ * Перечисления хранятся как номера в словаре файла, поэтому перестановка
+ * констант в enum не ломает старые снимки. Отсутствующее значение кодируется как -1.
+ */
+public class BinarySnapshot implements Closeable {
+    private static final int MAGIC = 0x5648434C; // "VHCL"
+    private static final int VERSION = 3;
+    private static final int RECORD_SIZE = 43;
+    private static final int WINDOW_RECORDS = (1 << 30) / RECORD_SIZE;
+
+    private static final byte NULL_X = 1;
+    private static final byte NULL_ENGINE_POWER = 2;
+
+    // При потоковом чтении записи декодируются блоками такого размера
+    private static final int STREAM_BLOCK_RECORDS = 4096;
+
+    private final FileChannel channel;
+    private final Header header;
+    private final MappedByteBuffer[] windows;
+
+    private BinarySnapshot(FileChannel channel) throws IOException, InvalidDataException {
+        this.channel = channel;
+        long size = channel.size();
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, Integer.MAX_VALUE));
+        header = readHeader(new DataInputStream(new BufferInput(buffer)));
+
+        int count = header.count;
+        long recordsStart = buffer.position();
+        if (recordsStart + (long) count * RECORD_SIZE > size) {
+            throw new InvalidDataException("Снимок повреждён: записей меньше, чем указано в заголовке");
+        }
+        windows = new MappedByteBuffer[(count + WINDOW_RECORDS - 1) / WINDOW_RECORDS];
+        for (int w = 0; w < windows.length; w++) {
+            int records = Math.min(WINDOW_RECORDS, count - w * WINDOW_RECORDS);
+            windows[w] = channel.map(FileChannel.MapMode.READ_ONLY,
+                    recordsStart + (long) w * WINDOW_RECORDS * RECORD_SIZE, (long) records * RECORD_SIZE);
+        }
+    }
+
+    /**
+     * Открывает снимок и отображает его в память
+     */
+    public static BinarySnapshot open(Path path) throws IOException, InvalidDataException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new BinarySnapshot(channel);
+        } catch (IOException | InvalidDataException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Возвращает количество записей в снимке
+     */
+    public int size() {
+        return header.count;
+    }
+
+    /**
+     * Возвращает служебные данные снимка
+     */
+    public SnapshotInfo getInfo() {
+        return header.info;
+    }
+
+    /**
+     * Читает только id записи, не создавая объект
+     */
+    public int idAt(int index) {
+        return windows[index / WINDOW_RECORDS].getInt((index % WINDOW_RECORDS) * RECORD_SIZE);
+    }
+
+    /**
+     * Декодирует запись с заданным номером
+     */
+    public Vehicle read(int index) throws InvalidDataException {
+        return decode(windows[index / WINDOW_RECORDS], (index % WINDOW_RECORDS) * RECORD_SIZE, header);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Читает снимок из потока целиком, например из распаковывающего потока сжатого файла.
+     * Записи читаются блоками, поэтому весь файл в памяти не держится.
+     */
+    public static SnapshotInfo readAll(InputStream in, Consumer<? super Vehicle> sink)
+            throws IOException, InvalidDataException {
+        DataInputStream data = new DataInputStream(in);
+        Header header = readHeader(data);
+        ByteBuffer block = ByteBuffer.allocate(STREAM_BLOCK_RECORDS * RECORD_SIZE);
+        int left = header.count;
+        while (left > 0) {
+            int records = Math.min(left, STREAM_BLOCK_RECORDS);
+            try {
+                data.readFully(block.array(), 0, records * RECORD_SIZE);
+            } catch (EOFException e) {
+                throw new InvalidDataException("Снимок повреждён: записей меньше, чем указано в заголовке");
+            }
+            for (int i = 0; i < records; i++) {
+                sink.accept(decode(block, i * RECORD_SIZE, header));
+            }
+            left -= records;
+        }
+        return header.info;
+    }
+
+    /**
+     * Декодирует запись, начинающуюся с заданного смещения в буфере
+     */
+    private static Vehicle decode(ByteBuffer window, int offset, Header header) throws InvalidDataException {
+        VehicleType[] types = header.types;
+        FuelType[] fuelTypes = header.fuelTypes;
+        String[] names = header.names;
+        try {
+            int id = window.getInt(offset);
+            int name = window.getInt(offset + 4);
+            double x = window.getDouble(offset + 8);
+            int y = window.getInt(offset + 16);
+            int epochDay = window.getInt(offset + 20);
+            double enginePower = window.getDouble(offset + 24);
+            double capacity = window.getDouble(offset + 32);
+            byte type = window.get(offset + 40);
+            byte fuel = window.get(offset + 41);
+            byte flags = window.get(offset + 42);
+
+            Vehicle vehicle = new Vehicle();
+            if (id != 0) vehicle.setId(id);
+            if (name < 0 || name >= names.length) {
+                throw new InvalidDataException("Неверный индекс имени: " + name);
+            }
+            vehicle.setName(names[name]);
+
+            Coordinates coordinates = new Coordinates();
+            if ((flags & NULL_X) == 0) coordinates.setX(x);
+            coordinates.setY(y);
+            vehicle.setCoordinates(coordinates);
+
+            vehicle.setCreationDate(LocalDate.ofEpochDay(epochDay));
+            if ((flags & NULL_ENGINE_POWER) == 0) vehicle.setEnginePower(enginePower);
+            vehicle.setCapacity(capacity);
+            if (type >= 0) {
+                if (type >= types.length || types[type] == null) {
+                    throw new InvalidDataException("Неверный тип vehicle");
+                }
+                vehicle.setType(types[type]);
+            }
+            if (fuel >= 0 && fuel < fuelTypes.length) {
+                vehicle.setFuelType(fuelTypes[fuel]);
+            }
+            return vehicle;
+        } catch (InvalidDataException | RuntimeException e) {
+            throw new InvalidDataException("Ошибка парсинга vehicle: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Записывает коллекцию в поток в формате снимка.
+     * Первый проход собирает таблицу имён, второй пишет записи.
+     */
+    public static void write(Collection<Vehicle> collection, SnapshotInfo info, OutputStream out) throws IOException {
+        Map<String, Integer> nameIndex = new HashMap<>();
+        List<String> names = new ArrayList<>();
+        for (Vehicle v : collection) {
+            if (nameIndex.putIfAbsent(v.getName(), names.size()) == null) {
+                names.add(v.getName());
+            }
+        }
+
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out, 64 * 1024));
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeInt(collection.size());
+        data.writeLong(info.getJournalGeneration());
+        data.writeInt(info.getLastId());
+        writeDictionary(data, VehicleType.values());
+        writeDictionary(data, FuelType.values());
+        data.writeInt(names.size());
+        for (String name : names) {
+            byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+            data.writeInt(bytes.length);
+            data.write(bytes);
+        }
+
+        for (Vehicle v : collection) {
+            Double x = v.getCoordinates().getX();
+            Double enginePower = v.getEnginePower();
+            byte flags = 0;
+            if (x == null) flags |= NULL_X;
+            if (enginePower == null) flags |= NULL_ENGINE_POWER;
+
+            data.writeInt(v.getId());
+            data.writeInt(nameIndex.get(v.getName()));
+            data.writeDouble(x == null ? 0 : x);
+            data.writeInt(v.getCoordinates().getY());
+            data.writeInt((int) v.getCreationDate().toEpochDay());
+            data.writeDouble(enginePower == null ? 0 : enginePower);
+            data.writeDouble(v.getCapacity());
+            data.writeByte(v.getType() == null ? -1 : v.getType().ordinal());
+            data.writeByte(v.getFuelType() == null ? -1 : v.getFuelType().ordinal());
+            data.writeByte(flags);
+        }
+        data.flush();
+    }
+
+    private static void writeDictionary(DataOutputStream data, Enum<?>[] constants) throws IOException {
+        data.writeByte(constants.length);
+        for (Enum<?> constant : constants) {
+            data.writeUTF(constant.name());
+        }
+    }
+
+    /**
+     * Читает заголовок снимка: количество записей, служебные данные, словари и таблицу имён
+     */
+    private static Header readHeader(DataInput in) throws IOException, InvalidDataException {
+        try {
+            if (in.readInt() != MAGIC) {
+                throw new InvalidDataException("Файл не является бинарным снимком коллекции");
+            }
+            int version = in.readInt();
+            if (version < 1 || version > VERSION) {
+                throw new InvalidDataException("Неподдерживаемая версия снимка: " + version);
+            }
+            Header header = new Header();
+            header.count = in.readInt();
+            if (header.count < 0) {
+                throw new InvalidDataException("Снимок повреждён: неверное количество записей");
+            }
+            long generation = version >= 2 ? in.readLong() : 0;
+            int lastId = version >= 3 ? in.readInt() : 0;
+            header.info = new SnapshotInfo(generation, lastId);
+            header.types = readDictionary(in, VehicleType.class);
+            header.fuelTypes = readDictionary(in, FuelType.class);
+            header.names = readNames(in);
+            return header;
+        } catch (EOFException | RuntimeException e) {
+            throw new InvalidDataException("Снимок повреждён: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Читает словарь перечисления; неизвестные в текущей версии имена становятся null
+     */
+    private static <E extends Enum<E>> E[] readDictionary(DataInput in, Class<E> type) throws IOException {
+        int n = in.readUnsignedByte();
+        @SuppressWarnings("unchecked")
+        E[] dictionary = (E[]) java.lang.reflect.Array.newInstance(type, n);
+        for (int i = 0; i < n; i++) {
+            String name = in.readUTF();
+            try {
+                dictionary[i] = Enum.valueOf(type, name);
+            } catch (IllegalArgumentException e) {
+                dictionary[i] = null;
+            }
+        }
+        return dictionary;
+    }
+
+    private static String[] readNames(DataInput in) throws IOException, InvalidDataException {
+        int n = in.readInt();
+        if (n < 0) {
+            throw new InvalidDataException("Снимок повреждён: неверный размер таблицы имён");
+        }
+        String[] names = new String[n];
+        for (int i = 0; i < n; i++) {
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            // Имена в таблице не повторяются, все записи ссылаются на эти строки
+            names[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return names;
+    }
+
+    /**
+     * Заголовок снимка, общий для отображения в память и потокового чтения
+     */
+    private static class Header {
+        int count;
+        SnapshotInfo info;
+        VehicleType[] types;
+        FuelType[] fuelTypes;
+        String[] names;
+    }
+
+    /**
+     * Поток поверх отображённого буфера: заголовок читается тем же кодом, что и из файла,
+     * а позиция буфера после чтения указывает на начало записей
+     */
+    private static class BufferInput extends InputStream {
+        private final ByteBuffer buffer;
+
+        BufferInput(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, n);
+            return n;
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package file;
+
+import exceptions.InvalidDataException;
+import model.Coordinates;
+import model.FuelType;
+import model.Vehicle;
+import model.VehicleType;
+import utils.NamePool;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Потоковый разбор таблицы CSV с элементами для импорта.
+ *
+ * Первая строка - заголовок с названиями столбцов (порядок любой, регистр не важен):
+ * name, x, y, enginePower, capacity, type обязательны, fuelType и creationDate - нет,
+ * id и неизвестные столбцы пропускаются. Разделитель - запятая или точка с запятой
+ * (определяется по заголовку); значение с разделителем берётся в двойные кавычки,
+ * кавычка внутри них удваивается. Пустое значение - null, а для y и capacity, которые
+ * не бывают null, - ошибка формата, как и неверное число столбцов или нечитаемое число.
+ * Разбор только переводит текст в значения полей; допустимость значений проверяет вызывающий:
+ * x больше 636 остаётся как есть, неизвестный type - null, неизвестный fuelType - null, как в XML.
+ */
+public class CsvVehicleReader implements Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final String[] COLUMNS = {"name", "x", "y", "creationDate", "enginePower", "capacity", "type", "fuelType"};
+    private static final boolean[] REQUIRED = {true, true, true, false, true, true, true, false};
+    private static final int NAME = 0;
+    private static final int X = 1;
+    private static final int Y = 2;
+    private static final int CREATION_DATE = 3;
+    private static final int ENGINE_POWER = 4;
+    private static final int CAPACITY = 5;
+    private static final int TYPE = 6;
+    private static final int FUEL_TYPE = 7;
+
+    private final BufferedReader reader;
+    private final NamePool names = new NamePool();
+    private final int[] positions = new int[COLUMNS.length]; // номер столбца для каждого поля, -1 - нет
+    private char separator;
+    private int lineNumber;
+
+    public CsvVehicleReader(InputStream in) {
+        this.reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    /**
+     * Читает следующий элемент. Возвращает null, если строк больше нет.
+     * Дата создания, если её нет в таблице, остаётся null.
+     */
+    public Vehicle next() throws IOException, InvalidDataException {
+        if (lineNumber == 0) {
+            readHeader();
+        }
+        String line;
+        do {
+            line = reader.readLine();
+            lineNumber++;
+            if (line == null) {
+                return null;
+            }
+        } while (line.isBlank());
+
+        List<String> values = split(line);
+        String name = value(values, NAME);
+        String x = value(values, X);
+        Coordinates coordinates = new Coordinates(x == null ? null : parseDouble(x, "x"),
+                parseInt(value(values, Y), "y"));
+        LocalDate creationDate = null;
+        String date = value(values, CREATION_DATE);
+        if (date != null) {
+            try {
+                creationDate = LocalDate.parse(date);
+            } catch (DateTimeParseException e) {
+                throw error("неверный формат creationDate");
+            }
+        }
+        String enginePower = value(values, ENGINE_POWER);
+        String type = value(values, TYPE);
+        String fuelType = value(values, FUEL_TYPE);
+        // Конструктор не проверяет значения, в отличие от сеттеров
+        return new Vehicle(0, name == null ? null : names.intern(name), coordinates, creationDate,
+                enginePower == null ? null : parseDouble(enginePower, "enginePower"),
+                parseDouble(value(values, CAPACITY), "capacity"),
+                type == null ? null : parseEnum(VehicleType.class, type),
+                fuelType == null ? null : parseEnum(FuelType.class, fuelType));
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private void readHeader() throws IOException, InvalidDataException {
+        String header = reader.readLine();
+        lineNumber++;
+        if (header == null) {
+            throw new InvalidDataException("Файл CSV пуст: нет строки заголовка");
+        }
+        if (header.startsWith("\uFEFF")) {
+            header = header.substring(1);
+        }
+        separator = header.indexOf(';') >= 0 && header.indexOf(',') < 0 ? ';' : ',';
+        List<String> names = split(header);
+        for (int field = 0; field < COLUMNS.length; field++) {
+            positions[field] = -1;
+            for (int column = 0; column < names.size(); column++) {
+                if (COLUMNS[field].equalsIgnoreCase(names.get(column).trim())) {
+                    positions[field] = column;
+                }
+            }
+            if (positions[field] < 0 && REQUIRED[field]) {
+                throw new InvalidDataException("В заголовке CSV нет столбца " + COLUMNS[field]);
+            }
+        }
+    }
+
+    /**
+     * Делит строку на значения по разделителю с учётом кавычек
+     */
+    private List<String> split(String line) throws InvalidDataException {
+        List<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    value.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    value.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == separator) {
+                values.add(value.toString());
+                value.setLength(0);
+            } else {
+                value.append(c);
+            }
+        }
+        if (quoted) {
+            throw error("не закрыта кавычка");
+        }
+        values.add(value.toString());
+        return values;
+    }
+
+    /**
+     * Возвращает значение поля без пробелов по краям; null, если значение пустое или столбца нет
+     */
+    private String value(List<String> values, int field) throws InvalidDataException {
+        int column = positions[field];
+        if (column < 0) {
+            return null;
+        }
+        if (column >= values.size()) {
+            throw error("меньше столбцов, чем в заголовке");
+        }
+        String value = values.get(column).trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    private double parseDouble(String text, String field) throws InvalidDataException {
+        if (text == null) {
+            throw error("нет значения " + field);
+        }
+        try {
+            return Double.parseDouble(text);
+        } catch (NumberFormatException e) {
+            throw error("неверный формат " + field);
+        }
+    }
+
+    private int parseInt(String text, String field) throws InvalidDataException {
+        if (text == null) {
+            throw error("нет значения " + field);
+        }
+        try {
+            return Integer.parseInt(text);
+        } catch (NumberFormatException e) {
+            throw error("неверный формат " + field);
+        }
+    }
+
+    /**
+     * Возвращает константу перечисления по имени без учёта регистра; null, если такой нет
+     */
+    private static <E extends Enum<E>> E parseEnum(Class<E> type, String text) {
+        try {
+            return Enum.valueOf(type, text.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private InvalidDataException error(String message) {
+        return new InvalidDataException("Ошибка в строке " + lineNumber + " CSV: " + message);
+    }
+}
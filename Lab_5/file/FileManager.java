@@ -2,224 +2,362 @@ package file;
 
 import model.*;
 import exceptions.InvalidDataException;
+import utils.NamePool;
 
 import java.io.*;
-import java.nio.charset.StandardCharsets;
-import java.time.LocalDate;
-import java.util.Stack;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 /**
- * Управляет чтением и записью XML файла.
- * Использует FileReader и FileOutputStream согласно заданию.
+ * Управляет чтением и записью файла с коллекцией.
+ * Поддерживает XML (XmlVehicleReader / XmlVehicleWriter) и бинарный снимок (BinarySnapshot).
+ * Запись всегда идёт во временный файл с атомарной заменой.
+ * Файл с расширением .gz (vehicles.xml.gz, vehicles.bin.gz) сжимается и распаковывается
+ * потоком на лету, несжатый документ целиком в памяти не собирается.
  */
 public class FileManager {
+    // Меньшие куски не окупают запуск отдельной задачи
+    private static final long MIN_CHUNK_BYTES = 4L * 1024 * 1024;
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+
     private final String filename;
+    private final StorageFormat format;
+    private final boolean compressed;
+    private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+    private SnapshotInfo loadedInfo = SnapshotInfo.EMPTY;
+    private int loadParallelism = 1;
 
     public FileManager(String filename) {
+        this(filename, StorageFormat.fromFilename(filename));
+    }
+
+    public FileManager(String filename, StorageFormat format) {
         this.filename = filename;
+        this.format = format;
+        this.compressed = StorageFormat.isCompressed(filename);
+    }
+
+    public String getFilename() {
+        return filename;
+    }
+
+    public StorageFormat getFormat() {
+        return format;
+    }
+
+    public boolean isCompressed() {
+        return compressed;
     }
 
     /**
-     * Сохраняет коллекцию в XML файл
+     * Задаёт уровень сжатия для файлов .gz: от 1 (быстрее) до 9 (меньше), -1 - по умолчанию
      */
-    public void saveCollection(Stack<Vehicle> collection) throws IOException {
-        StringBuilder xml = new StringBuilder();
-        xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
-        xml.append("<vehicles>\n");
-
-        for (Vehicle v : collection) {
-            xml.append("  <vehicle>\n");
-            xml.append("    <id>").append(v.getId()).append("</id>\n");
-            xml.append("    <name>").append(escapeXml(v.getName())).append("</name>\n");
-            xml.append("    <coordinates>\n");
-            xml.append("      <x>").append(v.getCoordinates().getX()).append("</x>\n");
-            xml.append("      <y>").append(v.getCoordinates().getY()).append("</y>\n");
-            xml.append("    </coordinates>\n");
-            xml.append("    <creationDate>").append(v.getCreationDate()).append("</creationDate>\n");
-            xml.append("    <enginePower>").append(v.getEnginePower()).append("</enginePower>\n");
-            xml.append("    <capacity>").append(v.getCapacity()).append("</capacity>\n");
-            xml.append("    <type>").append(v.getType()).append("</type>\n");
-            xml.append("    <fuelType>").append(v.getFuelType()).append("</fuelType>\n");
-            xml.append("  </vehicle>\n");
+    public void setCompressionLevel(int compressionLevel) {
+        if (compressionLevel != Deflater.DEFAULT_COMPRESSION && (compressionLevel < 1 || compressionLevel > 9)) {
+            throw new IllegalArgumentException("Уровень сжатия должен быть от 1 до 9");
         }
+        this.compressionLevel = compressionLevel;
+    }
 
-        xml.append("</vehicles>");
-
-        try (FileOutputStream fos = new FileOutputStream(filename)) {
-            fos.write(xml.toString().getBytes(StandardCharsets.UTF_8));
+    /**
+     * Задаёт число потоков для загрузки XML; 1 - обычная последовательная загрузка
+     */
+    public void setLoadParallelism(int loadParallelism) {
+        if (loadParallelism < 1) {
+            throw new IllegalArgumentException("Число потоков загрузки должно быть больше 0");
         }
+        this.loadParallelism = loadParallelism;
     }
 
     /**
-     * Загружает коллекцию из XML файла
+     * Возвращает служебные данные снимка, прочитанные последним вызовом loadCollection
      */
-    public Stack<Vehicle> loadCollection() throws IOException, InvalidDataException {
-        Stack<Vehicle> collection = new Stack<>();
-        StringBuilder content = new StringBuilder();
+    public SnapshotInfo getLoadedInfo() {
+        return loadedInfo;
+    }
 
-        try (FileReader reader = new FileReader(filename)) {
-            int ch;
-            while ((ch = reader.read()) != -1) {
-                content.append((char) ch);
-            }
+    /**
+     * Сохраняет коллекцию в файл.
+     * Элементы пишутся потоком во временный файл, который после fsync
+     * атомарно заменяет старый, так что сбой при записи не портит данные.
+     * Возвращает размер записанного файла в байтах.
+     */
+    public long saveCollection(Collection<Vehicle> collection) throws IOException {
+        return saveCollection(collection, SnapshotInfo.EMPTY);
+    }
+
+    /**
+     * Сохраняет коллекцию в файл вместе со служебными данными снимка
+     */
+    public long saveCollection(Collection<Vehicle> collection, SnapshotInfo info) throws IOException {
+        if (format == StorageFormat.BINARY) {
+            return writeAtomically(out -> BinarySnapshot.write(collection, info, out));
         }
+        return writeAtomically(out -> {
+            XmlVehicleWriter writer = new XmlVehicleWriter(out);
+            writer.writeHeader(info);
+            for (Vehicle v : collection) {
+                writer.write(v);
+            }
+            writer.writeFooter();
+        });
+    }
 
-        String xml = content.toString();
-        parseVehicles(xml, collection);
-        return collection;
+    /**
+     * Загружает коллекцию из файла.
+     * XML читается потоковым парсером за один проход (большие файлы - параллельно по кускам),
+     * бинарный снимок - через отображение в память, сжатый файл - одним потоком через распаковку.
+     */
+    public ArrayList<Vehicle> loadCollection() throws IOException, InvalidDataException {
+        return loadCollection(new ArrayList<>());
     }
 
     /**
-     * Парсит XML и заполняет коллекцию
+     * Загружает коллекцию из файла, добавляя элементы в заданный список
      */
-    private void parseVehicles(String xml, Stack<Vehicle> collection) throws InvalidDataException {
-        Pattern vehiclePattern = Pattern.compile("<vehicle>(.*?)</vehicle>", Pattern.DOTALL);
-        Matcher vehicleMatcher = vehiclePattern.matcher(xml);
+    @SuppressWarnings("unchecked")
+    public <C extends Collection<Vehicle>> C loadCollection(C collection) throws IOException, InvalidDataException {
+        read(collection::add, collection instanceof ArrayList
+                ? ((ArrayList<Vehicle>) collection)::ensureCapacity : count -> { });
+        return collection;
+    }
 
-        while (vehicleMatcher.find()) {
-            String vehicleXml = vehicleMatcher.group(1);
-            try {
-                Vehicle vehicle = parseVehicle(vehicleXml);
-                collection.push(vehicle);
-            } catch (Exception e) {
-                throw new InvalidDataException("Ошибка парсинга vehicle: " + e.getMessage());
+    /**
+     * Читает элементы из файла для импорта и передаёт их приёмнику по одному по мере чтения.
+     * Кроме форматов хранения (xml, bin) принимает таблицу CSV (.csv, см. CsvVehicleReader);
+     * файл .gz распаковывается на лету.
+     */
+    public void importCollection(Consumer<? super Vehicle> sink) throws IOException, InvalidDataException {
+        String lower = filename.toLowerCase();
+        if (!lower.endsWith(".csv") && !lower.endsWith(".csv.gz")) {
+            read(sink, count -> { });
+            return;
+        }
+        try (InputStream file = new FileInputStream(filename);
+             CsvVehicleReader reader = new CsvVehicleReader(
+                     compressed ? new GZIPInputStream(file, GZIP_BUFFER_SIZE) : file)) {
+            Vehicle vehicle;
+            while ((vehicle = reader.next()) != null) {
+                sink.accept(vehicle);
             }
         }
     }
 
     /**
-     * Парсит один элемент Vehicle
+     * Читает элементы файла в порядке записи и передаёт их приёмнику;
+     * sizeHint получает число элементов, если оно известно заранее
      */
-    private Vehicle parseVehicle(String xml) throws InvalidDataException {
-        Vehicle vehicle = new Vehicle();
+    private void read(Consumer<? super Vehicle> sink, IntConsumer sizeHint) throws IOException, InvalidDataException {
+        if (compressed) {
+            try (InputStream in = new GZIPInputStream(new FileInputStream(filename), GZIP_BUFFER_SIZE)) {
+                if (format == StorageFormat.BINARY) {
+                    loadedInfo = BinarySnapshot.readAll(in, sink);
+                } else {
+                    readXml(in, sink);
+                }
+            }
+            return;
+        }
 
-        // ID
-        String idStr = extractTag(xml, "id");
-        if (idStr != null) {
-            try {
-                int id = Integer.parseInt(idStr);
-                if (id <= 0) throw new InvalidDataException("ID должен быть > 0");
-                vehicle.setId(id);
-            } catch (NumberFormatException e) {
-                throw new InvalidDataException("Неверный формат ID");
+        if (format == StorageFormat.BINARY) {
+            try (BinarySnapshot snapshot = BinarySnapshot.open(Paths.get(filename))) {
+                sizeHint.accept(snapshot.size());
+                for (int i = 0; i < snapshot.size(); i++) {
+                    sink.accept(snapshot.read(i));
+                }
+                loadedInfo = snapshot.getInfo();
             }
+            return;
         }
 
-        // Name
-        String name = extractTag(xml, "name");
-        if (name == null || name.trim().isEmpty()) {
-            throw new InvalidDataException("Имя не может быть пустым");
+        Path path = Paths.get(filename);
+        long size = Files.size(path);
+        int chunks = (int) Math.min(loadParallelism * 4L, size / MIN_CHUNK_BYTES);
+        if (loadParallelism > 1 && chunks > 1) {
+            loadXmlParallel(path, size, chunks, sink);
+            return;
         }
-        vehicle.setName(name);
 
-        // Coordinates
-        String coordsXml = extractTag(xml, "coordinates");
-        if (coordsXml == null) {
-            throw new InvalidDataException("Отсутствуют координаты");
+        try (InputStream in = new FileInputStream(filename)) {
+            readXml(in, sink);
         }
-        vehicle.setCoordinates(parseCoordinates(coordsXml));
+    }
 
-        // Creation Date
-        String dateStr = extractTag(xml, "creationDate");
-        if (dateStr != null) {
-            vehicle.setCreationDate(LocalDate.parse(dateStr));
+    private void readXml(InputStream in, Consumer<? super Vehicle> sink) throws IOException, InvalidDataException {
+        XmlVehicleReader reader = new XmlVehicleReader(in);
+        Vehicle vehicle;
+        while ((vehicle = reader.next()) != null) {
+            sink.accept(vehicle);
         }
+        loadedInfo = reader.getInfo();
+    }
 
-        // Engine Power
-        String powerStr = extractTag(xml, "enginePower");
-        if (powerStr != null) {
-            try {
-                Double power = Double.parseDouble(powerStr);
-                if (power <= 0) throw new InvalidDataException("Engine power должен быть > 0");
-                vehicle.setEnginePower(power);
-            } catch (NumberFormatException e) {
-                throw new InvalidDataException("Неверный формат enginePower");
-            }
+    /**
+     * Открывает файл для ленивой загрузки: строит индекс id и положений записей,
+     * не создавая объектов Vehicle. В сжатом файле переход к записи невозможен.
+     */
+    public VehicleFileIndex openIndex() throws IOException, InvalidDataException {
+        if (compressed) {
+            throw new UnsupportedOperationException("Ленивая загрузка сжатого файла невозможна");
         }
+        Path path = Paths.get(filename);
+        VehicleFileIndex index = format == StorageFormat.BINARY
+                ? VehicleFileIndex.buildBinary(path)
+                : VehicleFileIndex.buildXml(path);
+        loadedInfo = index.getInfo();
+        return index;
+    }
 
-        // Capacity
-        String capacityStr = extractTag(xml, "capacity");
-        if (capacityStr != null) {
-            try {
-                double capacity = Double.parseDouble(capacityStr);
-                if (capacity <= 0) throw new InvalidDataException("Capacity должна быть > 0");
-                vehicle.setCapacity(capacity);
-            } catch (NumberFormatException e) {
-                throw new InvalidDataException("Неверный формат capacity");
+    /**
+     * Делит XML файл на куски по байтам и разбирает их в пуле ForkJoin.
+     * Каждый кусок читает элементы vehicle, открывающий тег которых начинается в его диапазоне,
+     * поэтому граница куска может попасть куда угодно. Куски склеиваются в исходном порядке,
+     * а при ошибках сообщается первая по порядку в файле. У каждого куска свой пул имён;
+     * при склейке пулы сводятся в пул первого куска, и одинаковые имена снова становятся одной строкой.
+     */
+    private void loadXmlParallel(Path path, long size, int chunks, Consumer<? super Vehicle> sink)
+            throws IOException, InvalidDataException {
+        ForkJoinPool pool = new ForkJoinPool(loadParallelism);
+        try {
+            List<ForkJoinTask<Chunk>> tasks = new ArrayList<>(chunks);
+            for (int i = 0; i < chunks; i++) {
+                long start = size * i / chunks;
+                long stop = size * (i + 1) / chunks;
+                tasks.add(pool.submit(() -> loadChunk(path, start, stop)));
             }
-        }
 
-        // Type
-        String typeStr = extractTag(xml, "type");
-        if (typeStr != null) {
-            try {
-                vehicle.setType(VehicleType.valueOf(typeStr));
-            } catch (IllegalArgumentException e) {
-                throw new InvalidDataException("Неверный тип vehicle");
+            NamePool names = null;
+            for (int i = 0; i < chunks; i++) {
+                Chunk chunk = tasks.get(i).join();
+                if (chunk.error instanceof InvalidDataException) throw (InvalidDataException) chunk.error;
+                if (chunk.error instanceof IOException) throw (IOException) chunk.error;
+                if (i == 0) {
+                    loadedInfo = chunk.info;
+                    names = chunk.names;
+                } else {
+                    Map<String, String> replacements = names.merge(chunk.names);
+                    if (!replacements.isEmpty()) {
+                        for (Vehicle vehicle : chunk.vehicles) {
+                            String name = replacements.get(vehicle.getName());
+                            if (name != null) {
+                                vehicle.setName(name);
+                            }
+                        }
+                    }
+                }
+                chunk.vehicles.forEach(sink);
             }
+        } finally {
+            pool.shutdownNow();
         }
+    }
 
-        // Fuel Type (может быть null)
-        String fuelStr = extractTag(xml, "fuelType");
-        if (fuelStr != null && !fuelStr.equals("null")) {
-            try {
-                vehicle.setFuelType(FuelType.valueOf(fuelStr));
-            } catch (IllegalArgumentException e) {
-                vehicle.setFuelType(null);
+    /**
+     * Разбирает один кусок файла; ошибка не бросается, а возвращается вместе с результатом,
+     * чтобы при склейке выбрать первую по порядку
+     */
+    private static Chunk loadChunk(Path path, long start, long stop) {
+        List<Vehicle> vehicles = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            channel.position(start);
+            XmlVehicleReader reader = new XmlVehicleReader(Channels.newInputStream(channel), start, stop);
+            Vehicle vehicle;
+            while ((vehicle = reader.next()) != null) {
+                vehicles.add(vehicle);
             }
+            return new Chunk(vehicles, reader.getInfo(), reader.getNames(), null);
+        } catch (IOException | InvalidDataException e) {
+            return new Chunk(vehicles, SnapshotInfo.EMPTY, null, e);
         }
-
-        return vehicle;
     }
 
     /**
-     * Парсит координаты
+     * Результат разбора одного куска файла
      */
-    private Coordinates parseCoordinates(String xml) throws InvalidDataException {
-        Coordinates coords = new Coordinates();
+    private static class Chunk {
+        final List<Vehicle> vehicles;
+        final SnapshotInfo info;
+        final NamePool names;
+        final Exception error;
 
-        String xStr = extractTag(xml, "x");
-        if (xStr != null) {
-            try {
-                Double x = Double.parseDouble(xStr);
-                if (x > 636) throw new InvalidDataException("X должен быть <= 636");
-                coords.setX(x);
-            } catch (NumberFormatException e) {
-                throw new InvalidDataException("Неверный формат X");
-            }
+        Chunk(List<Vehicle> vehicles, SnapshotInfo info, NamePool names, Exception error) {
+            this.vehicles = vehicles;
+            this.info = info;
+            this.names = names;
+            this.error = error;
         }
+    }
+
+    /**
+     * Записывает данные во временный файл рядом с основным, сбрасывает его на диск
+     * и переименовывает поверх основного одной атомарной операцией
+     */
+    private long writeAtomically(StreamWriter content) throws IOException {
+        Path target = Paths.get(filename).toAbsolutePath();
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
 
-        String yStr = extractTag(xml, "y");
-        if (yStr != null) {
-            try {
-                coords.setY(Integer.parseInt(yStr));
-            } catch (NumberFormatException e) {
-                throw new InvalidDataException("Неверный формат Y");
+        long bytes;
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            OutputStream out = Channels.newOutputStream(channel);
+            if (compressed) {
+                GZIPOutputStream gzip = new LeveledGZIPOutputStream(out, compressionLevel);
+                content.write(gzip);
+                gzip.finish();
+            } else {
+                content.write(out);
             }
+            channel.force(true);
+            bytes = channel.size();
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
         }
 
-        return coords;
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        syncDirectory(target.getParent());
+        return bytes;
     }
 
     /**
-     * Извлекает содержимое XML тега
+     * Сбрасывает на диск запись каталога, чтобы переименование пережило сбой питания.
+     * На системах, где каталог нельзя открыть как канал, шаг пропускается.
      */
-    private String extractTag(String xml, String tag) {
-        Pattern pattern = Pattern.compile("<" + tag + ">(.*?)</" + tag + ">", Pattern.DOTALL);
-        Matcher matcher = pattern.matcher(xml);
-        return matcher.find() ? matcher.group(1).trim() : null;
+    private void syncDirectory(Path directory) {
+        if (directory == null) return;
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException ignored) {
+            // не поддерживается платформой
+        }
+    }
+
+    /**
+     * GZIPOutputStream с заданным уровнем сжатия
+     */
+    private static class LeveledGZIPOutputStream extends GZIPOutputStream {
+        LeveledGZIPOutputStream(OutputStream out, int level) throws IOException {
+            super(out, GZIP_BUFFER_SIZE);
+            def.setLevel(level);
+        }
     }
 
     /**
-     * Экранирует специальные символы XML
+     * Запись содержимого файла в поток
      */
-    private String escapeXml(String text) {
-        return text.replace("&", "&amp;")
-                .replace("<", "&lt;")
-                .replace(">", "&gt;")
-                .replace("\"", "&quot;")
-                .replace("'", "&apos;");
+    private interface StreamWriter {
+        void write(OutputStream out) throws IOException;
     }
 }
\ No newline at end of file
@@ -0,0 +1,423 @@
+package file;
+
+import model.*;
+import utils.NamePool;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Журнал изменений коллекции (write-ahead log).
+ *
+ * Каждое изменение дописывается в конец текущего сегмента компактной записью:
+ * int длина, byte тип, данные, int CRC32 от типа и данных.
+ * Сегменты лежат рядом с файлом данных и называются file.journal.N.
+ * Снимок с номером поколения G уже содержит все изменения из сегментов с номером меньше G,
+ * поэтому при запуске проигрываются только сегменты с номером не меньше G.
+ *
+ * Сброс на диск группируется: раз в syncEveryOps операций и/или раз в syncIntervalMillis мс.
+ */
+public class MutationJournal implements Closeable {
+    private static final int MAGIC = 0x564A524E; // "VJRN"
+    private static final int VERSION = 1;
+
+    private static final byte ADD = 1;
+    private static final byte UPDATE = 2;
+    private static final byte REMOVE_BY_ID = 3;
+    private static final byte REMOVE_LAST = 4;
+    private static final byte REMOVE_LOWER = 5;
+    private static final byte CLEAR = 6;
+    private static final byte SORT = 7;
+    private static final byte REMOVE_GREATER = 8;
+
+    /**
+     * Получатель изменений при проигрывании журнала
+     */
+    public interface Replayer {
+        void add(Vehicle vehicle);
+
+        void update(Vehicle vehicle);
+
+        void removeById(int id);
+
+        void removeLast();
+
+        void removeLower(String name);
+
+        void removeGreater(String name);
+
+        void clear();
+
+        void sort();
+    }
+
+    private final Path directory;
+    private final String prefix;
+    private final int syncEveryOps;
+    private final ScheduledExecutorService syncTimer;
+
+    private final ByteArrayOutputStream record = new ByteArrayOutputStream(128);
+    private final DataOutputStream recordData = new DataOutputStream(record);
+    private final CRC32 crc = new CRC32();
+
+    private long generation;
+    private FileChannel segment;
+    private long segmentBytes;
+    private int unsyncedOps;
+
+    public MutationJournal(String filename, int syncEveryOps, long syncIntervalMillis) {
+        Path data = Paths.get(filename).toAbsolutePath();
+        this.directory = data.getParent();
+        this.prefix = data.getFileName() + ".journal.";
+        this.syncEveryOps = syncEveryOps;
+
+        if (syncIntervalMillis > 0) {
+            syncTimer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "journal-sync");
+                thread.setDaemon(true);
+                return thread;
+            });
+            syncTimer.scheduleWithFixedDelay(this::syncQuietly,
+                    syncIntervalMillis, syncIntervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            syncTimer = null;
+        }
+    }
+
+    /**
+     * Проигрывает сегменты начиная с поколения снимка и готовит журнал к записи.
+     * Сегменты, уже учтённые в снимке, удаляются. Оборванная при сбое запись
+     * в конце сегмента отбрасывается. Возвращает количество проигранных записей.
+     */
+    public synchronized int replay(long snapshotGeneration, Replayer replayer) throws IOException {
+        List<Long> segments = listSegments();
+        // Новые записи всегда идут в новый сегмент, старые не дописываются
+        long last = segments.isEmpty() ? -1 : segments.get(segments.size() - 1);
+        generation = Math.max(snapshotGeneration, last + 1);
+
+        int replayed = 0;
+        NamePool names = new NamePool();
+        for (long number : segments) {
+            if (number < snapshotGeneration) {
+                Files.deleteIfExists(segmentPath(number));
+            } else {
+                replayed += replaySegment(segmentPath(number), replayer, names);
+            }
+        }
+        return replayed;
+    }
+
+    /**
+     * Готовит журнал к записи, не проигрывая и не удаляя существующие сегменты:
+     * новые записи пойдут в сегмент после последнего из них.
+     * Нужен, когда файл данных прочитать не удалось и журнал к пустой коллекции не относится.
+     */
+    public synchronized void skipExisting() throws IOException {
+        List<Long> segments = listSegments();
+        if (!segments.isEmpty()) {
+            generation = Math.max(generation, segments.get(segments.size() - 1) + 1);
+        }
+    }
+
+    /**
+     * Закрывает текущий сегмент и начинает новый.
+     * Возвращает номер нового поколения: снимок с этим номером заменяет все прежние сегменты.
+     */
+    public synchronized long rotate() throws IOException {
+        closeSegment();
+        generation++;
+        return generation;
+    }
+
+    /**
+     * Удаляет сегменты, уже учтённые в снимке с заданным поколением
+     */
+    public void deleteBefore(long snapshotGeneration) throws IOException {
+        for (long number : listSegments()) {
+            if (number < snapshotGeneration) {
+                Files.deleteIfExists(segmentPath(number));
+            }
+        }
+    }
+
+    /**
+     * Возвращает размер текущего сегмента в байтах
+     */
+    public synchronized long getSegmentBytes() {
+        return segmentBytes;
+    }
+
+    public synchronized void logAdd(Vehicle vehicle) throws IOException {
+        begin(ADD);
+        writeVehicle(vehicle);
+        commit();
+    }
+
+    /**
+     * Записывает добавление пачки элементов одной операцией записи в сегмент;
+     * при проигрывании это обычные записи о добавлении по одной на элемент
+     */
+    public synchronized void logAddAll(List<Vehicle> vehicles) throws IOException {
+        ByteBuffer frames = ByteBuffer.allocate(Math.max(1024, vehicles.size() * 96));
+        for (Vehicle vehicle : vehicles) {
+            begin(ADD);
+            writeVehicle(vehicle);
+            if (frames.remaining() < record.size() + 8) {
+                ByteBuffer bigger = ByteBuffer.allocate(Math.max(2 * frames.capacity(), frames.position() + record.size() + 8));
+                frames = bigger.put(frames.flip());
+            }
+            putFrame(frames);
+        }
+        write(frames.flip(), vehicles.size());
+    }
+
+    public synchronized void logUpdate(Vehicle vehicle) throws IOException {
+        begin(UPDATE);
+        writeVehicle(vehicle);
+        commit();
+    }
+
+    public synchronized void logRemoveById(int id) throws IOException {
+        begin(REMOVE_BY_ID);
+        recordData.writeInt(id);
+        commit();
+    }
+
+    public synchronized void logRemoveLast() throws IOException {
+        begin(REMOVE_LAST);
+        commit();
+    }
+
+    public synchronized void logRemoveLower(String name) throws IOException {
+        begin(REMOVE_LOWER);
+        writeString(name);
+        commit();
+    }
+
+    public synchronized void logRemoveGreater(String name) throws IOException {
+        begin(REMOVE_GREATER);
+        writeString(name);
+        commit();
+    }
+
+    public synchronized void logClear() throws IOException {
+        begin(CLEAR);
+        commit();
+    }
+
+    public synchronized void logSort() throws IOException {
+        begin(SORT);
+        commit();
+    }
+
+    /**
+     * Сбрасывает все записанные изменения на диск
+     */
+    public synchronized void sync() throws IOException {
+        if (segment != null && unsyncedOps > 0) {
+            segment.force(false);
+        }
+        unsyncedOps = 0;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (syncTimer != null) {
+            syncTimer.shutdownNow();
+        }
+        closeSegment();
+    }
+
+    private void begin(byte type) {
+        record.reset();
+        record.write(type);
+    }
+
+    private void commit() throws IOException {
+        ByteBuffer frame = ByteBuffer.allocate(record.size() + 8);
+        putFrame(frame);
+        write(frame.flip(), 1);
+    }
+
+    /**
+     * Дописывает в буфер текущую запись в рамке: длина, данные, CRC32
+     */
+    private void putFrame(ByteBuffer frame) {
+        byte[] bytes = record.toByteArray();
+        crc.reset();
+        crc.update(bytes, 0, bytes.length);
+        frame.putInt(bytes.length).put(bytes).putInt((int) crc.getValue());
+    }
+
+    private void write(ByteBuffer frames, int ops) throws IOException {
+        if (segment == null) {
+            openSegment();
+        }
+        while (frames.hasRemaining()) {
+            segmentBytes += segment.write(frames);
+        }
+
+        unsyncedOps += ops;
+        if (syncEveryOps > 0 && unsyncedOps >= syncEveryOps) {
+            segment.force(false);
+            unsyncedOps = 0;
+        }
+    }
+
+    /**
+     * Сегмент создаётся при первой записи, чтобы запуск без изменений не оставлял пустых файлов
+     */
+    private void openSegment() throws IOException {
+        segment = FileChannel.open(segmentPath(generation), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        ByteBuffer header = ByteBuffer.allocate(8).putInt(MAGIC).putInt(VERSION).flip();
+        while (header.hasRemaining()) {
+            segment.write(header);
+        }
+        segmentBytes = header.capacity();
+        // Запись о новом файле в каталоге тоже должна пережить сбой
+        try (FileChannel dir = FileChannel.open(directory, StandardOpenOption.READ)) {
+            dir.force(true);
+        } catch (IOException ignored) {
+            // не поддерживается платформой
+        }
+    }
+
+    private void closeSegment() throws IOException {
+        if (segment != null) {
+            sync();
+            segment.close();
+            segment = null;
+        }
+        segmentBytes = 0;
+    }
+
+    private void syncQuietly() {
+        try {
+            sync();
+        } catch (IOException e) {
+            System.err.println("Ошибка сброса журнала на диск: " + e.getMessage());
+        }
+    }
+
+    private int replaySegment(Path path, Replayer replayer, NamePool names) throws IOException {
+        int replayed = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Файл " + path.getFileName() + " не является журналом изменений");
+            }
+            while (true) {
+                byte[] bytes;
+                try {
+                    int length = in.readInt();
+                    if (length <= 0 || length > 1 << 20) break;
+                    bytes = new byte[length];
+                    in.readFully(bytes);
+                    crc.reset();
+                    crc.update(bytes, 0, length);
+                    if (in.readInt() != (int) crc.getValue()) break;
+                } catch (EOFException e) {
+                    break;
+                }
+                apply(new DataInputStream(new ByteArrayInputStream(bytes)), replayer, names);
+                replayed++;
+            }
+        } catch (EOFException e) {
+            // сегмент оборвался на заголовке - в нём нет ни одной записи
+        }
+        return replayed;
+    }
+
+    private void apply(DataInputStream in, Replayer replayer, NamePool names) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case ADD: replayer.add(readVehicle(in, names)); break;
+            case UPDATE: replayer.update(readVehicle(in, names)); break;
+            case REMOVE_BY_ID: replayer.removeById(in.readInt()); break;
+            case REMOVE_LAST: replayer.removeLast(); break;
+            case REMOVE_LOWER: replayer.removeLower(readString(in)); break;
+            case CLEAR: replayer.clear(); break;
+            case SORT: replayer.sort(); break;
+            case REMOVE_GREATER: replayer.removeGreater(readString(in)); break;
+            default: throw new IOException("Неизвестный тип записи журнала: " + type);
+        }
+    }
+
+    private void writeVehicle(Vehicle v) throws IOException {
+        Double x = v.getCoordinates().getX();
+        recordData.writeInt(v.getId());
+        writeString(v.getName());
+        recordData.writeBoolean(x != null);
+        recordData.writeDouble(x == null ? 0 : x);
+        recordData.writeInt(v.getCoordinates().getY());
+        recordData.writeLong(v.getCreationDate().toEpochDay());
+        recordData.writeDouble(v.getEnginePower());
+        recordData.writeDouble(v.getCapacity());
+        recordData.writeByte(v.getType().ordinal());
+        recordData.writeByte(v.getFuelType() == null ? -1 : v.getFuelType().ordinal());
+    }
+
+    private static Vehicle readVehicle(DataInputStream in, NamePool names) throws IOException {
+        Vehicle vehicle = new Vehicle();
+        vehicle.setId(in.readInt());
+        vehicle.setName(names.intern(readString(in)));
+        Coordinates coordinates = new Coordinates();
+        boolean hasX = in.readBoolean();
+        double x = in.readDouble();
+        if (hasX) coordinates.setX(x);
+        coordinates.setY(in.readInt());
+        vehicle.setCoordinates(coordinates);
+        vehicle.setCreationDate(LocalDate.ofEpochDay(in.readLong()));
+        vehicle.setEnginePower(in.readDouble());
+        vehicle.setCapacity(in.readDouble());
+        vehicle.setType(VehicleType.values()[in.readByte()]);
+        byte fuel = in.readByte();
+        vehicle.setFuelType(fuel < 0 ? null : FuelType.values()[fuel]);
+        return vehicle;
+    }
+
+    private void writeString(String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        recordData.writeInt(bytes.length);
+        recordData.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private Path segmentPath(long number) {
+        return directory.resolve(prefix + number);
+    }
+
+    /**
+     * Возвращает номера существующих сегментов по возрастанию
+     */
+    private List<Long> listSegments() throws IOException {
+        List<Long> numbers = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory,
+                path -> path.getFileName().toString().startsWith(prefix))) {
+            for (Path path : stream) {
+                try {
+                    numbers.add(Long.parseLong(path.getFileName().toString().substring(prefix.length())));
+                } catch (NumberFormatException ignored) {
+                    // посторонний файл с похожим именем
+                }
+            }
+        }
+        numbers.sort(null);
+        return numbers;
+    }
+}
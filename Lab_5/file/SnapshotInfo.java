@@ -0,0 +1,26 @@
+package file;
+
+/**
+ * Служебные данные снимка коллекции, которые хранятся в файле вместе с элементами.
+ */
+public class SnapshotInfo {
+    public static final SnapshotInfo EMPTY = new SnapshotInfo(0, 0);
+
+    // Все сегменты журнала с меньшим номером уже учтены в снимке
+    private final long journalGeneration;
+    // Наибольший когда-либо выданный id, даже если элемент уже удалён
+    private final int lastId;
+
+    public SnapshotInfo(long journalGeneration, int lastId) {
+        this.journalGeneration = journalGeneration;
+        this.lastId = lastId;
+    }
+
+    public long getJournalGeneration() {
+        return journalGeneration;
+    }
+
+    public int getLastId() {
+        return lastId;
+    }
+}
@@ -0,0 +1,58 @@
+package file;
+
+/**
+ * Формат файла с коллекцией.
+ * Определяется по расширению имени файла или задаётся явно.
+ * Дополнительное расширение .gz означает, что файл сжат gzip (см. isCompressed).
+ */
+public enum StorageFormat {
+    XML("xml"),
+    BINARY("bin");
+
+    private static final String COMPRESSED_SUFFIX = ".gz";
+
+    private final String extension;
+
+    StorageFormat(String extension) {
+        this.extension = extension;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * Определяет формат по расширению файла, по умолчанию XML
+     */
+    public static StorageFormat fromFilename(String filename) {
+        String lower = filename.toLowerCase();
+        if (isCompressed(lower)) {
+            lower = lower.substring(0, lower.length() - COMPRESSED_SUFFIX.length());
+        }
+        for (StorageFormat format : values()) {
+            if (lower.endsWith("." + format.extension)) {
+                return format;
+            }
+        }
+        return XML;
+    }
+
+    /**
+     * Проверяет, сжат ли файл, по расширению .gz
+     */
+    public static boolean isCompressed(String filename) {
+        return filename.toLowerCase().endsWith(COMPRESSED_SUFFIX);
+    }
+
+    /**
+     * Возвращает формат по его названию (xml, bin)
+     */
+    public static StorageFormat fromName(String name) {
+        for (StorageFormat format : values()) {
+            if (format.extension.equalsIgnoreCase(name) || format.name().equalsIgnoreCase(name)) {
+                return format;
+            }
+        }
+        throw new IllegalArgumentException("Неизвестный формат файла: " + name);
+    }
+}
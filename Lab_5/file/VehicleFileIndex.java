@@ -0,0 +1,127 @@
+package file;
+
+import model.Vehicle;
+import exceptions.InvalidDataException;
+import utils.NamePool;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Индекс файла с коллекцией: id и положение каждой записи в порядке файла.
+ * Сами записи декодируются только по запросу, файл остаётся открытым до close().
+ * Для XML положение - смещение тега vehicle в байтах, для бинарного снимка - номер записи.
+ */
+public class VehicleFileIndex implements Closeable {
+    // Запись XML занимает несколько сотен байт, большой буфер для неё не нужен
+    private static final int RECORD_BUFFER_SIZE = 1024;
+
+    private final FileChannel channel;
+    private final BinarySnapshot snapshot;
+    private final int[] ids;
+    private final long[] offsets;
+    private final SnapshotInfo info;
+    // Общий для всех декодируемых записей XML; read синхронизирован
+    private final NamePool names = new NamePool();
+
+    private VehicleFileIndex(FileChannel channel, BinarySnapshot snapshot,
+                             int[] ids, long[] offsets, SnapshotInfo info) {
+        this.channel = channel;
+        this.snapshot = snapshot;
+        this.ids = ids;
+        this.offsets = offsets;
+        this.info = info;
+    }
+
+    /**
+     * Строит индекс XML файла одним проходом, читая из каждого элемента только id
+     */
+    static VehicleFileIndex buildXml(Path path) throws IOException, InvalidDataException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            XmlVehicleReader reader = new XmlVehicleReader(Channels.newInputStream(channel));
+            int[] ids = new int[1024];
+            long[] offsets = new long[1024];
+            int size = 0;
+            int id;
+            while ((id = reader.nextId()) >= 0) {
+                if (size == ids.length) {
+                    ids = Arrays.copyOf(ids, size * 2);
+                    offsets = Arrays.copyOf(offsets, size * 2);
+                }
+                ids[size] = id;
+                offsets[size] = reader.getRecordOffset();
+                size++;
+            }
+            return new VehicleFileIndex(channel, null,
+                    Arrays.copyOf(ids, size), Arrays.copyOf(offsets, size), reader.getInfo());
+        } catch (IOException | InvalidDataException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Строит индекс бинарного снимка: записи фиксированной длины, положение - номер записи
+     */
+    static VehicleFileIndex buildBinary(Path path) throws IOException, InvalidDataException {
+        BinarySnapshot snapshot = BinarySnapshot.open(path);
+        int[] ids = new int[snapshot.size()];
+        long[] offsets = new long[snapshot.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = snapshot.idAt(i);
+            offsets[i] = i;
+        }
+        return new VehicleFileIndex(null, snapshot, ids, offsets, snapshot.getInfo());
+    }
+
+    /**
+     * Возвращает количество записей в файле
+     */
+    public int size() {
+        return ids.length;
+    }
+
+    public int idAt(int index) {
+        return ids[index];
+    }
+
+    public long offsetAt(int index) {
+        return offsets[index];
+    }
+
+    public SnapshotInfo getInfo() {
+        return info;
+    }
+
+    /**
+     * Декодирует запись по её положению в файле
+     */
+    public synchronized Vehicle read(long offset) throws IOException, InvalidDataException {
+        if (snapshot != null) {
+            return snapshot.read((int) offset);
+        }
+        channel.position(offset);
+        XmlVehicleReader reader = new XmlVehicleReader(Channels.newInputStream(channel),
+                offset, Long.MAX_VALUE, RECORD_BUFFER_SIZE, names);
+        Vehicle vehicle = reader.next();
+        if (vehicle == null) {
+            throw new InvalidDataException("Запись по смещению " + offset + " не найдена");
+        }
+        return vehicle;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (snapshot != null) {
+            snapshot.close();
+        } else {
+            channel.close();
+        }
+    }
+}
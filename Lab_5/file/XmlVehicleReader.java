@@ -0,0 +1,657 @@
+package file;
+
+import model.*;
+import exceptions.InvalidDataException;
+import utils.NamePool;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Потоковый (pull) парсер XML файла с транспортными средствами.
+ * Проходит документ один раз через буфер байтов и сразу собирает объекты Vehicle,
+ * без регулярных выражений и промежуточных подстрок документа.
+ * Имена берутся из пула (NamePool) этого парсера, перечисления и повторяющиеся даты
+ * сравниваются прямо по байтам, без временных строк.
+ */
+public class XmlVehicleReader implements Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // Виды прочитанных тегов
+    private static final int EOF = 0;
+    private static final int OPEN = 1;
+    private static final int CLOSE = 2;
+    private static final int SKIP = 3;
+
+    // Коды известных элементов
+    private static final int NONE = 0;
+    private static final int VEHICLE = 1;
+    private static final int ID = 2;
+    private static final int NAME = 3;
+    private static final int COORDINATES = 4;
+    private static final int X = 5;
+    private static final int Y = 6;
+    private static final int CREATION_DATE = 7;
+    private static final int ENGINE_POWER = 8;
+    private static final int CAPACITY = 9;
+    private static final int TYPE = 10;
+    private static final int FUEL_TYPE = 11;
+    private static final int VEHICLES = 12;
+
+    private static final byte[][] TAGS = {
+            null,
+            ascii("vehicle"),
+            ascii("id"),
+            ascii("name"),
+            ascii("coordinates"),
+            ascii("x"),
+            ascii("y"),
+            ascii("creationDate"),
+            ascii("enginePower"),
+            ascii("capacity"),
+            ascii("type"),
+            ascii("fuelType"),
+            ascii("vehicles")
+    };
+
+    // Имена констант перечислений в байтах для сравнения с текстом элемента
+    private static final VehicleType[] VEHICLE_TYPES = VehicleType.values();
+    private static final byte[][] VEHICLE_TYPE_NAMES = enumNames(VEHICLE_TYPES);
+    private static final FuelType[] FUEL_TYPES = FuelType.values();
+    private static final byte[][] FUEL_TYPE_NAMES = enumNames(FUEL_TYPES);
+
+    // Предопределённые сущности XML и их значения
+    private static final byte[][] ENTITY_NAMES = {ascii("amp"), ascii("lt"), ascii("gt"), ascii("quot"), ascii("apos")};
+    private static final byte[] ENTITY_VALUES = ascii("&<>\"'");
+    private static final int MAX_ENTITY_NAME = 4;
+
+    private static final Pattern ROOT_ATTRIBUTE =
+            Pattern.compile("([\\w:-]+)\\s*=\\s*[\"']([^\"']*)[\"']");
+
+    private final InputStream in;
+    private final NamePool names;
+    private final byte[] buffer;
+    private int pos;
+    private int limit;
+
+    // Смещение в файле байта buffer[0]
+    private long base;
+    // Элементы vehicle, начинающиеся с этого смещения и дальше, не читаются
+    private final long stopOffset;
+    // Смещение последнего прочитанного тега и текущего элемента vehicle
+    private long tagOffset;
+    private long recordOffset;
+
+    // Имя последнего прочитанного тега
+    private byte[] tag = new byte[32];
+    private int tagLength;
+
+    // Текст текущего листового элемента (уже без сущностей)
+    private byte[] text = new byte[256];
+    private int textLength;
+
+    // Атрибуты последнего прочитанного тега в исходном виде
+    private byte[] attributes = new byte[64];
+    private int attributesLength;
+
+    // Последняя разобранная дата: у соседних записей она обычно совпадает
+    private final byte[] lastDateText = new byte[10];
+    private LocalDate lastDate;
+
+    private SnapshotInfo info = SnapshotInfo.EMPTY;
+
+    public XmlVehicleReader(InputStream in) {
+        this(in, 0, Long.MAX_VALUE);
+    }
+
+    /**
+     * Создаёт парсер для части файла.
+     * in должен начинаться со смещения startOffset; читаются только элементы vehicle,
+     * открывающий тег которых начинается в диапазоне [startOffset, stopOffset).
+     * Последний такой элемент дочитывается до конца, даже если выходит за stopOffset.
+     */
+    public XmlVehicleReader(InputStream in, long startOffset, long stopOffset) {
+        this(in, startOffset, stopOffset, BUFFER_SIZE);
+    }
+
+    /**
+     * То же с заданным размером буфера; маленький буфер подходит для чтения одной записи
+     */
+    public XmlVehicleReader(InputStream in, long startOffset, long stopOffset, int bufferSize) {
+        this(in, startOffset, stopOffset, bufferSize, new NamePool());
+    }
+
+    /**
+     * То же с заданным пулом имён: так несколько парсеров одного файла, созданных по очереди, делят один пул
+     */
+    public XmlVehicleReader(InputStream in, long startOffset, long stopOffset, int bufferSize, NamePool names) {
+        this.in = in;
+        this.names = names;
+        this.buffer = new byte[bufferSize];
+        this.base = startOffset;
+        this.stopOffset = stopOffset;
+    }
+
+    /**
+     * Читает следующий элемент vehicle.
+     * Возвращает null, если элементов больше нет.
+     */
+    public Vehicle next() throws IOException, InvalidDataException {
+        if (!skipToVehicle()) {
+            return null;
+        }
+        try {
+            return parseVehicle();
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new InvalidDataException("Ошибка парсинга vehicle (байт " + recordOffset + "): " + e.getMessage());
+        }
+    }
+
+    /**
+     * Переходит к следующему элементу vehicle и читает из него только id, остальное пропускает.
+     * Возвращает -1, если элементов больше нет, и 0, если у элемента нет id.
+     * Используется для построения индекса без создания объектов.
+     */
+    public int nextId() throws IOException, InvalidDataException {
+        if (!skipToVehicle()) {
+            return -1;
+        }
+        int id = 0;
+        boolean inId = false;
+        while (true) {
+            readText(inId);
+            int kind = readTag();
+            if (kind == EOF) {
+                throw new InvalidDataException("Ошибка парсинга vehicle (байт " + recordOffset
+                        + "): Неожиданный конец файла");
+            }
+            if (kind == OPEN) {
+                inId = tagIs(ID);
+            } else if (kind == CLOSE) {
+                if (tagIs(VEHICLE)) return id;
+                if (inId && tagIs(ID)) {
+                    trimText();
+                    try {
+                        id = parseInt();
+                    } catch (NumberFormatException e) {
+                        throw new InvalidDataException("Ошибка парсинга vehicle (байт " + recordOffset
+                                + "): Неверный формат ID");
+                    }
+                }
+                inId = false;
+            }
+        }
+    }
+
+    /**
+     * Возвращает смещение в файле открывающего тега последнего прочитанного элемента vehicle
+     */
+    public long getRecordOffset() {
+        return recordOffset;
+    }
+
+    /**
+     * Возвращает служебные данные из атрибутов корневого элемента vehicles
+     */
+    public SnapshotInfo getInfo() {
+        return info;
+    }
+
+    /**
+     * Возвращает пул, в котором собраны имена прочитанных элементов
+     */
+    public NamePool getNames() {
+        return names;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /**
+     * Пропускает всё до открывающего тега vehicle
+     */
+    private boolean skipToVehicle() throws IOException {
+        while (true) {
+            readText(false);
+            int kind = readTag();
+            if (kind == EOF) return false;
+            if (kind == OPEN && tagIs(VEHICLE)) {
+                if (tagOffset >= stopOffset) return false;
+                recordOffset = tagOffset;
+                return true;
+            }
+            if (kind == OPEN && tagIs(VEHICLES)) readRootAttributes();
+        }
+    }
+
+    /**
+     * Разбирает атрибуты корневого элемента вида name="value"
+     */
+    private void readRootAttributes() {
+        String all = new String(attributes, 0, attributesLength, StandardCharsets.UTF_8);
+        Matcher matcher = ROOT_ATTRIBUTE.matcher(all);
+        long generation = 0;
+        int lastId = 0;
+        while (matcher.find()) {
+            // неверное значение равносильно отсутствию атрибута
+            try {
+                if (matcher.group(1).equals("generation")) {
+                    generation = Long.parseLong(matcher.group(2));
+                } else if (matcher.group(1).equals("lastId")) {
+                    lastId = Integer.parseInt(matcher.group(2));
+                }
+            } catch (NumberFormatException ignored) {
+            }
+        }
+        info = new SnapshotInfo(generation, lastId);
+    }
+
+    /**
+     * Разбирает содержимое элемента vehicle до закрывающего тега
+     */
+    private Vehicle parseVehicle() throws IOException, InvalidDataException {
+        Vehicle vehicle = new Vehicle();
+        Coordinates coordinates = null;
+        boolean hasName = false;
+        boolean inCoordinates = false;
+        int open = NONE;
+
+        while (true) {
+            readText(open != NONE);
+            int kind = readTag();
+            if (kind == EOF) {
+                throw new InvalidDataException("Неожиданный конец файла");
+            }
+            if (kind == SKIP) {
+                continue;
+            }
+
+            int field = fieldCode(inCoordinates);
+            if (kind == OPEN) {
+                if (field == COORDINATES) {
+                    coordinates = new Coordinates();
+                    inCoordinates = true;
+                    open = NONE;
+                } else {
+                    open = field;
+                }
+                continue;
+            }
+
+            if (field == VEHICLE) {
+                break;
+            }
+            if (field == COORDINATES) {
+                inCoordinates = false;
+            } else if (field != NONE && field == open) {
+                if (field == NAME) hasName = true;
+                applyField(field, vehicle, coordinates);
+            }
+            open = NONE;
+        }
+
+        if (!hasName) {
+            throw new InvalidDataException("Имя не может быть пустым");
+        }
+        if (coordinates == null) {
+            throw new InvalidDataException("Отсутствуют координаты");
+        }
+        vehicle.setCoordinates(coordinates);
+        return vehicle;
+    }
+
+    /**
+     * Проверяет значение листового элемента и записывает его в объект
+     */
+    private void applyField(int field, Vehicle vehicle, Coordinates coordinates) throws InvalidDataException {
+        trimText();
+        switch (field) {
+            case ID: {
+                int id;
+                try {
+                    id = parseInt();
+                } catch (NumberFormatException e) {
+                    throw new InvalidDataException("Неверный формат ID");
+                }
+                if (id <= 0) throw new InvalidDataException("ID должен быть > 0");
+                vehicle.setId(id);
+                break;
+            }
+            case NAME:
+                if (textLength == 0) {
+                    throw new InvalidDataException("Имя не может быть пустым");
+                }
+                vehicle.setName(names.intern(text, 0, textLength));
+                break;
+            case X: {
+                double x;
+                try {
+                    x = parseDouble();
+                } catch (NumberFormatException e) {
+                    throw new InvalidDataException("Неверный формат X");
+                }
+                if (x > 636) throw new InvalidDataException("X должен быть <= 636");
+                coordinates.setX(x);
+                break;
+            }
+            case Y:
+                try {
+                    coordinates.setY(parseInt());
+                } catch (NumberFormatException e) {
+                    throw new InvalidDataException("Неверный формат Y");
+                }
+                break;
+            case CREATION_DATE:
+                vehicle.setCreationDate(parseDate());
+                break;
+            case ENGINE_POWER: {
+                double power;
+                try {
+                    power = parseDouble();
+                } catch (NumberFormatException e) {
+                    throw new InvalidDataException("Неверный формат enginePower");
+                }
+                if (power <= 0) throw new InvalidDataException("Engine power должен быть > 0");
+                vehicle.setEnginePower(power);
+                break;
+            }
+            case CAPACITY: {
+                double capacity;
+                try {
+                    capacity = parseDouble();
+                } catch (NumberFormatException e) {
+                    throw new InvalidDataException("Неверный формат capacity");
+                }
+                if (capacity <= 0) throw new InvalidDataException("Capacity должна быть > 0");
+                vehicle.setCapacity(capacity);
+                break;
+            }
+            case TYPE: {
+                int type = matchText(VEHICLE_TYPE_NAMES);
+                if (type < 0) throw new InvalidDataException("Неверный тип vehicle");
+                vehicle.setType(VEHICLE_TYPES[type]);
+                break;
+            }
+            case FUEL_TYPE: {
+                // "null" и неизвестные значения оставляют fuelType пустым
+                int fuel = matchText(FUEL_TYPE_NAMES);
+                vehicle.setFuelType(fuel < 0 ? null : FUEL_TYPES[fuel]);
+                break;
+            }
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Определяет код элемента по имени последнего тега
+     */
+    private int fieldCode(boolean inCoordinates) {
+        if (inCoordinates) {
+            if (tagIs(X)) return X;
+            if (tagIs(Y)) return Y;
+            if (tagIs(COORDINATES)) return COORDINATES;
+            return NONE;
+        }
+        for (int code = VEHICLE; code < TAGS.length; code++) {
+            if (code != X && code != Y && tagIs(code)) return code;
+        }
+        return NONE;
+    }
+
+    /**
+     * Возвращает номер строки из набора, совпадающей с текстом элемента, или -1
+     */
+    private int matchText(byte[][] candidates) {
+        for (int i = 0; i < candidates.length; i++) {
+            if (Arrays.equals(text, 0, textLength, candidates[i], 0, candidates[i].length)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private boolean tagIs(int code) {
+        byte[] expected = TAGS[code];
+        return Arrays.equals(tag, 0, tagLength, expected, 0, expected.length);
+    }
+
+    /**
+     * Читает текст до следующего '<'. Если keep = false, текст просто пропускается.
+     */
+    private void readText(boolean keep) throws IOException {
+        textLength = 0;
+        while (true) {
+            if (pos == limit && !fill()) return;
+            byte b = buffer[pos];
+            if (b == '<') return;
+            pos++;
+            if (!keep) continue;
+            if (b == '&') {
+                readEntity();
+            } else {
+                appendText(b);
+            }
+        }
+    }
+
+    /**
+     * Читает тег после '<' и возвращает его вид
+     */
+    private int readTag() throws IOException {
+        tagOffset = base + pos;
+        if (read() != '<') return EOF;
+        int c = read();
+        if (c == -1) return EOF;
+        if (c == '?' || c == '!') {
+            skipSpecial(c);
+            return SKIP;
+        }
+
+        int kind = OPEN;
+        if (c == '/') {
+            kind = CLOSE;
+            c = read();
+        }
+
+        tagLength = 0;
+        while (c != -1 && c != '>' && c != '/' && c > ' ') {
+            appendTag((byte) c);
+            c = read();
+        }
+        // Атрибуты сохраняются как есть, разбираются только у корневого элемента
+        attributesLength = 0;
+        boolean selfClosing = false;
+        byte quote = 0;
+        while (c != -1 && (c != '>' || quote != 0)) {
+            appendAttribute((byte) c);
+            if (quote != 0) {
+                if (c == quote) quote = 0;
+            } else if (c == '"' || c == '\'') {
+                quote = (byte) c;
+            }
+            selfClosing = c == '/';
+            c = read();
+        }
+        if (c == -1) return EOF;
+        return selfClosing ? SKIP : kind;
+    }
+
+    /**
+     * Пропускает объявление, инструкцию обработки или комментарий
+     */
+    private void skipSpecial(int first) throws IOException {
+        int c = read();
+        if (first == '!' && c == '-') {
+            read();
+            int dashes = 0;
+            while ((c = read()) != -1) {
+                if (c == '>' && dashes >= 2) return;
+                dashes = c == '-' ? dashes + 1 : 0;
+            }
+            return;
+        }
+        while (c != -1 && c != '>') {
+            c = read();
+        }
+    }
+
+    /**
+     * Раскрывает ссылку на сущность XML после '&'. Имя дописывается в текст по мере чтения;
+     * неизвестная или незакрытая ссылка остаётся в тексте как есть, а байт, на котором
+     * оборвалось имя ('<', пробел и т.п.), не поглощается и читается дальше как обычно.
+     */
+    private void readEntity() throws IOException {
+        int ampersand = textLength;
+        appendText((byte) '&');
+        while (textLength - ampersand <= MAX_ENTITY_NAME) {
+            if (pos == limit && !fill()) return;
+            byte b = buffer[pos];
+            if (b == ';') break;
+            if (b == '<' || b == '&' || (b & 0xFF) <= ' ') return;
+            appendText(b);
+            pos++;
+        }
+        if ((pos == limit && !fill()) || buffer[pos] != ';') return;
+        for (int i = 0; i < ENTITY_NAMES.length; i++) {
+            byte[] name = ENTITY_NAMES[i];
+            if (Arrays.equals(text, ampersand + 1, textLength, name, 0, name.length)) {
+                pos++;
+                textLength = ampersand;
+                appendText(ENTITY_VALUES[i]);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Убирает пробельные символы по краям текста, как String.trim()
+     */
+    private void trimText() {
+        int start = 0;
+        while (start < textLength && (text[start] & 0xFF) <= ' ') start++;
+        int end = textLength;
+        while (end > start && (text[end - 1] & 0xFF) <= ' ') end--;
+        if (start > 0) System.arraycopy(text, start, text, 0, end - start);
+        textLength = end - start;
+    }
+
+    private int parseInt() {
+        if (textLength == 0) throw new NumberFormatException();
+        int i = 0;
+        boolean negative = false;
+        if (text[0] == '-' || text[0] == '+') {
+            negative = text[0] == '-';
+            i++;
+            if (textLength == 1) throw new NumberFormatException();
+        }
+        long value = 0;
+        for (; i < textLength; i++) {
+            int digit = text[i] - '0';
+            if (digit < 0 || digit > 9) throw new NumberFormatException();
+            value = value * 10 + digit;
+            if (value > Integer.MAX_VALUE + 1L) throw new NumberFormatException();
+        }
+        if (negative) value = -value;
+        if (value > Integer.MAX_VALUE) throw new NumberFormatException();
+        return (int) value;
+    }
+
+    private double parseDouble() {
+        return Double.parseDouble(textAsString());
+    }
+
+    /**
+     * Разбирает дату вида yyyy-MM-dd без промежуточной строки,
+     * для остальных форм использует LocalDate.parse ради тех же сообщений об ошибках
+     */
+    private LocalDate parseDate() {
+        if (textLength == 10 && text[4] == '-' && text[7] == '-') {
+            if (lastDate != null && Arrays.equals(text, 0, 10, lastDateText, 0, 10)) {
+                return lastDate;
+            }
+            int year = digits(0, 4);
+            int month = digits(5, 7);
+            int day = digits(8, 10);
+            if (year >= 0 && month >= 0 && day >= 0) {
+                try {
+                    lastDate = LocalDate.of(year, month, day);
+                    System.arraycopy(text, 0, lastDateText, 0, 10);
+                    return lastDate;
+                } catch (DateTimeException ignored) {
+                    // сообщение об ошибке сформирует LocalDate.parse
+                }
+            }
+        }
+        return LocalDate.parse(textAsString());
+    }
+
+    private int digits(int from, int to) {
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            int digit = text[i] - '0';
+            if (digit < 0 || digit > 9) return -1;
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private String textAsString() {
+        return new String(text, 0, textLength, StandardCharsets.ISO_8859_1);
+    }
+
+    private void appendText(byte b) {
+        if (textLength == text.length) text = Arrays.copyOf(text, text.length * 2);
+        text[textLength++] = b;
+    }
+
+    private void appendAttribute(byte b) {
+        if (attributesLength == attributes.length) attributes = Arrays.copyOf(attributes, attributes.length * 2);
+        attributes[attributesLength++] = b;
+    }
+
+    private void appendTag(byte b) {
+        if (tagLength == tag.length) tag = Arrays.copyOf(tag, tag.length * 2);
+        tag[tagLength++] = b;
+    }
+
+    private int read() throws IOException {
+        if (pos == limit && !fill()) return -1;
+        return buffer[pos++] & 0xFF;
+    }
+
+    private boolean fill() throws IOException {
+        int n = in.read(buffer, 0, buffer.length);
+        base += limit;
+        if (n <= 0) {
+            pos = limit = 0;
+            return false;
+        }
+        pos = 0;
+        limit = n;
+        return true;
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static byte[][] enumNames(Enum<?>[] constants) {
+        byte[][] names = new byte[constants.length][];
+        for (int i = 0; i < constants.length; i++) {
+            names[i] = ascii(constants[i].name());
+        }
+        return names;
+    }
+}
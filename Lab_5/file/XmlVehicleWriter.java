@@ -0,0 +1,169 @@
+package file;
+
+import model.Vehicle;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+
+/**
+ * Потоковая запись транспортных средств в XML.
+ * Каждый Vehicle кодируется сразу в переиспользуемый буфер байтов,
+ * поэтому расход памяти не зависит от размера коллекции.
+ */
+public class XmlVehicleWriter implements Flushable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final OutputStream out;
+    private final byte[] buffer;
+    private int pos;
+
+    public XmlVehicleWriter(OutputStream out) {
+        this.out = out;
+        this.buffer = new byte[BUFFER_SIZE];
+    }
+
+    /**
+     * Записывает заголовок документа и открывающий корневой тег.
+     * Служебные данные снимка, если они есть, пишутся атрибутами корня.
+     */
+    public void writeHeader(SnapshotInfo info) throws IOException {
+        ascii("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        ascii("<vehicles");
+        if (info.getJournalGeneration() != 0) {
+            ascii(" generation=\"");
+            ascii(Long.toString(info.getJournalGeneration()));
+            ascii("\"");
+        }
+        if (info.getLastId() != 0) {
+            ascii(" lastId=\"");
+            number(info.getLastId());
+            ascii("\"");
+        }
+        ascii(">\n");
+    }
+
+    /**
+     * Записывает один элемент vehicle
+     */
+    public void write(Vehicle v) throws IOException {
+        ascii("  <vehicle>\n");
+        ascii("    <id>"); number(v.getId()); ascii("</id>\n");
+        ascii("    <name>"); escaped(v.getName()); ascii("</name>\n");
+        ascii("    <coordinates>\n");
+        ascii("      <x>"); ascii(String.valueOf(v.getCoordinates().getX())); ascii("</x>\n");
+        ascii("      <y>"); number(v.getCoordinates().getY()); ascii("</y>\n");
+        ascii("    </coordinates>\n");
+        ascii("    <creationDate>"); date(v.getCreationDate()); ascii("</creationDate>\n");
+        ascii("    <enginePower>"); ascii(String.valueOf(v.getEnginePower())); ascii("</enginePower>\n");
+        ascii("    <capacity>"); ascii(Double.toString(v.getCapacity())); ascii("</capacity>\n");
+        ascii("    <type>"); ascii(String.valueOf(v.getType())); ascii("</type>\n");
+        ascii("    <fuelType>"); ascii(String.valueOf(v.getFuelType())); ascii("</fuelType>\n");
+        ascii("  </vehicle>\n");
+    }
+
+    /**
+     * Закрывает корневой тег и сбрасывает буфер в поток
+     */
+    public void writeFooter() throws IOException {
+        ascii("</vehicles>");
+        flush();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (pos > 0) {
+            out.write(buffer, 0, pos);
+            pos = 0;
+        }
+        out.flush();
+    }
+
+    private void ascii(String s) throws IOException {
+        for (int i = 0, n = s.length(); i < n; i++) {
+            put(s.charAt(i));
+        }
+    }
+
+    private void number(int value) throws IOException {
+        if (value < 0) {
+            if (value == Integer.MIN_VALUE) {
+                ascii(Integer.toString(value));
+                return;
+            }
+            put('-');
+            value = -value;
+        }
+        digits(value, 1);
+    }
+
+    /**
+     * Записывает число не менее чем из width цифр
+     */
+    private void digits(int value, int width) throws IOException {
+        int divisor = 1;
+        for (int i = 1; i < width || value / divisor >= 10; i++) {
+            divisor *= 10;
+        }
+        for (; divisor > 0; divisor /= 10) {
+            put('0' + value / divisor % 10);
+        }
+    }
+
+    private void date(LocalDate date) throws IOException {
+        if (date == null || date.getYear() < 0 || date.getYear() > 9999) {
+            ascii(String.valueOf(date));
+            return;
+        }
+        digits(date.getYear(), 4);
+        put('-');
+        digits(date.getMonthValue(), 2);
+        put('-');
+        digits(date.getDayOfMonth(), 2);
+    }
+
+    /**
+     * Записывает текст в UTF-8, экранируя специальные символы XML
+     */
+    private void escaped(String text) throws IOException {
+        for (int i = 0, n = text.length(); i < n; i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '&': ascii("&amp;"); break;
+                case '<': ascii("&lt;"); break;
+                case '>': ascii("&gt;"); break;
+                case '"': ascii("&quot;"); break;
+                case '\'': ascii("&apos;"); break;
+                default:
+                    if (c < 0x80) {
+                        put(c);
+                    } else if (c < 0x800) {
+                        put(0xC0 | c >> 6);
+                        put(0x80 | c & 0x3F);
+                    } else if (Character.isHighSurrogate(c) && i + 1 < n
+                            && Character.isLowSurrogate(text.charAt(i + 1))) {
+                        int cp = Character.toCodePoint(c, text.charAt(++i));
+                        put(0xF0 | cp >> 18);
+                        put(0x80 | cp >> 12 & 0x3F);
+                        put(0x80 | cp >> 6 & 0x3F);
+                        put(0x80 | cp & 0x3F);
+                    } else if (Character.isSurrogate(c)) {
+                        put('?');
+                    } else {
+                        put(0xE0 | c >> 12);
+                        put(0x80 | c >> 6 & 0x3F);
+                        put(0x80 | c & 0x3F);
+                    }
+            }
+        }
+    }
+
+    private void put(int b) throws IOException {
+        if (pos == buffer.length) {
+            out.write(buffer, 0, pos);
+            pos = 0;
+        }
+        buffer[pos++] = (byte) b;
+    }
+}
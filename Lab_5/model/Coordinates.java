@@ -8,8 +8,9 @@ public class Coordinates {
 
     public Coordinates() {}
 
+    // Конструктор, как и у Vehicle, не проверяет значения, в отличие от сеттера: проверка - InputValidator.validateVehicle
     public Coordinates(Double x, int y) {
-        setX(x);
+        this.x = x;
         this.y = y;
     }
 
@@ -26,10 +26,18 @@ public class Vehicle implements Comparable<Vehicle> {
      */
     public Vehicle(int id, String name, Coordinates coordinates, Double enginePower, 
                    double capacity, VehicleType type, FuelType fuelType) {
+        this(id, name, coordinates, LocalDate.now(), enginePower, capacity, type, fuelType);
+    }
+
+    /**
+     * Конструктор для уже существующего транспортного средства с известной датой создания
+     */
+    public Vehicle(int id, String name, Coordinates coordinates, LocalDate creationDate, Double enginePower,
+                   double capacity, VehicleType type, FuelType fuelType) {
         this.id = id;
         this.name = name;
         this.coordinates = coordinates;
-        this.creationDate = LocalDate.now();
+        this.creationDate = creationDate;
         this.enginePower = enginePower;
         this.capacity = capacity;
         this.type = type;
@@ -0,0 +1,48 @@
+package query;
+
+import model.Vehicle;
+
+/**
+ * Условие запроса вида "поле оператор значение".
+ * Отсутствующее значение (null) можно только проверить на равенство или неравенство;
+ * в остальных сравнениях элемент без значения поля не подходит.
+ */
+public class Condition {
+    private final Field field;
+    private final Operator operator;
+    private final Comparable<?> value;
+
+    public Condition(Field field, Operator operator, Comparable<?> value) {
+        if (value == null && operator != Operator.EQ && operator != Operator.NE) {
+            throw new IllegalArgumentException("null можно сравнивать только через = и !=");
+        }
+        this.field = field;
+        this.operator = operator;
+        this.value = value;
+    }
+
+    public Field getField() {
+        return field;
+    }
+
+    public Operator getOperator() {
+        return operator;
+    }
+
+    public Comparable<?> getValue() {
+        return value;
+    }
+
+    public boolean test(Vehicle vehicle) {
+        Comparable<?> actual = field.get(vehicle);
+        if (actual == null || value == null) {
+            return operator == Operator.EQ ? actual == value : operator == Operator.NE && actual != value;
+        }
+        return operator.matches(Field.compare(actual, value));
+    }
+
+    @Override
+    public String toString() {
+        return field + " " + operator + " " + value;
+    }
+}
@@ -0,0 +1,108 @@
+package query;
+
+import model.FuelType;
+import model.Vehicle;
+import utils.InputValidator;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Comparator;
+import java.util.function.Function;
+
+/**
+ * Поле Vehicle, по которому можно фильтровать и сортировать в запросах.
+ * Значения сравниваются в естественном порядке их типа (перечисления - по порядку объявления),
+ * отсутствующее значение (null) меньше любого другого.
+ */
+public enum Field {
+    ID("id", Vehicle::getId, Integer::valueOf),
+    NAME("name", Vehicle::getName, text -> text),
+    X("x", v -> v.getCoordinates() == null ? null : v.getCoordinates().getX(), Double::valueOf),
+    Y("y", v -> v.getCoordinates() == null ? null : v.getCoordinates().getY(), Integer::valueOf),
+    CREATION_DATE("creationDate", Vehicle::getCreationDate, LocalDate::parse),
+    ENGINE_POWER("enginePower", Vehicle::getEnginePower, Double::valueOf),
+    CAPACITY("capacity", Vehicle::getCapacity, Double::valueOf),
+    TYPE("type", Vehicle::getType, InputValidator::validateAndParseVehicleType),
+    FUEL_TYPE("fuelType", Vehicle::getFuelType, FuelType::valueOf);
+
+    private final String title;
+    private final Function<Vehicle, Comparable<?>> getter;
+    private final Function<String, Comparable<?>> parser;
+    private final Comparator<Vehicle> order;
+
+    Field(String title, Function<Vehicle, Comparable<?>> getter, Function<String, Comparable<?>> parser) {
+        this.title = title;
+        this.getter = getter;
+        this.parser = parser;
+        this.order = (a, b) -> compare(get(a), get(b));
+    }
+
+    /**
+     * Находит поле по имени без учёта регистра
+     */
+    public static Field of(String title) {
+        for (Field field : values()) {
+            if (field.title.equalsIgnoreCase(title)) {
+                return field;
+            }
+        }
+        throw new IllegalArgumentException("неизвестное поле " + title + ", доступны: " + titles());
+    }
+
+    public static String titles() {
+        StringBuilder sb = new StringBuilder();
+        for (Field field : values()) {
+            sb.append(field.title).append(", ");
+        }
+        return sb.substring(0, sb.length() - 2);
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public Comparable<?> get(Vehicle vehicle) {
+        return getter.apply(vehicle);
+    }
+
+    /**
+     * Разбирает значение поля из текста запроса; null - отсутствующее значение
+     */
+    public Comparable<?> parse(String text) {
+        if (text.equalsIgnoreCase("null")) {
+            return null;
+        }
+        try {
+            return parser.apply(this == FUEL_TYPE ? text.toUpperCase() : text);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException(title + " должно быть датой вида 2024-01-31");
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(title + " должно быть числом");
+        } catch (IllegalArgumentException e) {
+            if (this == FUEL_TYPE) {
+                throw new IllegalArgumentException("fuelType должен быть одним из: " + FuelType.getTypes());
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Порядок элементов по значению поля
+     */
+    public Comparator<Vehicle> order() {
+        return order;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static int compare(Comparable a, Comparable b) {
+        if (a == null || b == null) {
+            return a == null ? (b == null ? 0 : -1) : 1;
+        }
+        return a.compareTo(b);
+    }
+
+    @Override
+    public String toString() {
+        return title;
+    }
+}
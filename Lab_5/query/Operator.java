@@ -0,0 +1,50 @@
+package query;
+
+/**
+ * Оператор сравнения в условии запроса
+ */
+public enum Operator {
+    EQ("="),
+    NE("!="),
+    LT("<"),
+    LE("<="),
+    GT(">"),
+    GE(">=");
+
+    private final String symbol;
+
+    Operator(String symbol) {
+        this.symbol = symbol;
+    }
+
+    /**
+     * Находит оператор по обозначению; null, если такого нет
+     */
+    public static Operator of(String symbol) {
+        for (Operator operator : values()) {
+            if (operator.symbol.equals(symbol)) {
+                return operator;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Проверяет, выполнено ли сравнение по результату compareTo
+     */
+    public boolean matches(int comparison) {
+        switch (this) {
+            case EQ: return comparison == 0;
+            case NE: return comparison != 0;
+            case LT: return comparison < 0;
+            case LE: return comparison <= 0;
+            case GT: return comparison > 0;
+            default: return comparison >= 0;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return symbol;
+    }
+}
@@ -0,0 +1,262 @@
+package query;
+
+import model.Vehicle;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Разобранный запрос: условия, соединённые через and, необязательный порядок и ограничение числа элементов.
+ *
+ * Синтаксис: [where] поле оператор значение [and ...] [order by поле [asc|desc]] [limit n].
+ * Операторы: =, !=, <, <=, >, >=; пробелы вокруг операторов не обязательны,
+ * значение с пробелами берётся в кавычки. Например:
+ * where type<SUBMARINE and capacity>=20 and fuelType=GASOLINE order by enginePower limit 50.
+ * Без order by элементы идут в порядке коллекции. При равных значениях поля сортировки
+ * элементы упорядочены по id (при desc - по убыванию, как при обратном порядке).
+ */
+public class Query {
+    public static final int NO_LIMIT = -1;
+
+    private final List<Condition> conditions;
+    private final Field orderBy; // null - порядок коллекции
+    private final boolean descending;
+    private final int limit;
+
+    public Query(List<Condition> conditions, Field orderBy, boolean descending, int limit) {
+        this.conditions = Collections.unmodifiableList(new ArrayList<>(conditions));
+        this.orderBy = orderBy;
+        this.descending = descending;
+        this.limit = limit;
+    }
+
+    /**
+     * Разбирает текст запроса
+     */
+    public static Query parse(String text) {
+        return new Parser(tokenize(text)).parse();
+    }
+
+    public List<Condition> getConditions() {
+        return conditions;
+    }
+
+    public Field getOrderBy() {
+        return orderBy;
+    }
+
+    public boolean isDescending() {
+        return descending;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public boolean hasLimit() {
+        return limit != NO_LIMIT;
+    }
+
+    /**
+     * Проверяет, подходит ли элемент под все условия
+     */
+    public boolean test(Vehicle vehicle) {
+        for (Condition condition : conditions) {
+            if (!condition.test(vehicle)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Возвращает диапазон значений поля, заданный условиями на него; null, если таких условий нет
+     */
+    public Range range(Field field) {
+        return Range.of(on(field));
+    }
+
+    /**
+     * Возвращает условия, которые остаётся проверить, если элементы выбраны по диапазону поля covered
+     */
+    public List<Condition> residual(Field covered) {
+        List<Condition> result = new ArrayList<>();
+        for (Condition condition : conditions) {
+            if (condition.getField() != covered || !Range.isRange(condition)) {
+                result.add(condition);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Порядок результата; null, если сортировка не задана
+     */
+    public Comparator<Vehicle> order() {
+        if (orderBy == null) {
+            return null;
+        }
+        Comparator<Vehicle> order = orderBy.order().thenComparingInt(Vehicle::getId);
+        return descending ? order.reversed() : order;
+    }
+
+    private List<Condition> on(Field field) {
+        List<Condition> result = new ArrayList<>();
+        for (Condition condition : conditions) {
+            if (condition.getField() == field) {
+                result.add(condition);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Condition condition : conditions) {
+            sb.append(sb.length() == 0 ? "where " : " and ").append(condition);
+        }
+        if (orderBy != null) {
+            sb.append(sb.length() == 0 ? "" : " ").append("order by ").append(orderBy).append(descending ? " desc" : "");
+        }
+        if (hasLimit()) {
+            sb.append(sb.length() == 0 ? "" : " ").append("limit ").append(limit);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Делит текст на слова, отделяя операторы сравнения; текст в кавычках - одно слово
+     */
+    private static List<Token> tokenize(String text) {
+        List<Token> tokens = new ArrayList<>();
+        int i = 0;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '\'' || c == '"') {
+                int end = text.indexOf(c, i + 1);
+                if (end < 0) {
+                    throw new IllegalArgumentException("не закрыта кавычка");
+                }
+                tokens.add(new Token(text.substring(i + 1, end), true));
+                i = end + 1;
+            } else if ("<>=!".indexOf(c) >= 0) {
+                int end = i + 1 < text.length() && text.charAt(i + 1) == '=' ? i + 2 : i + 1;
+                tokens.add(new Token(text.substring(i, end), false));
+                i = end;
+            } else {
+                int end = i;
+                while (end < text.length() && !Character.isWhitespace(text.charAt(end))
+                        && "<>=!'\"".indexOf(text.charAt(end)) < 0) {
+                    end++;
+                }
+                tokens.add(new Token(text.substring(i, end), false));
+                i = end;
+            }
+        }
+        return tokens;
+    }
+
+    private static class Token {
+        final String text;
+        final boolean quoted;
+
+        Token(String text, boolean quoted) {
+            this.text = text;
+            this.quoted = quoted;
+        }
+
+        boolean is(String keyword) {
+            return !quoted && text.equalsIgnoreCase(keyword);
+        }
+    }
+
+    private static class Parser {
+        private final List<Token> tokens;
+        private int position;
+
+        Parser(List<Token> tokens) {
+            this.tokens = tokens;
+        }
+
+        Query parse() {
+            List<Condition> conditions = new ArrayList<>();
+            accept("where");
+            if (!atEnd() && !peek().is("order") && !peek().is("limit")) {
+                do {
+                    conditions.add(condition());
+                } while (accept("and"));
+            }
+            Field orderBy = null;
+            boolean descending = false;
+            if (accept("order")) {
+                expect("by");
+                orderBy = Field.of(next("поле сортировки").text);
+                descending = accept("desc");
+                if (!descending) {
+                    accept("asc");
+                }
+            }
+            int limit = NO_LIMIT;
+            if (accept("limit")) {
+                String text = next("число в limit").text;
+                try {
+                    limit = Integer.parseInt(text);
+                } catch (NumberFormatException e) {
+                    limit = -1;
+                }
+                if (limit < 0) {
+                    throw new IllegalArgumentException("limit должен быть неотрицательным целым числом");
+                }
+            }
+            if (!atEnd()) {
+                throw new IllegalArgumentException("лишнее в запросе: " + peek().text);
+            }
+            return new Query(conditions, orderBy, descending, limit);
+        }
+
+        private Condition condition() {
+            Field field = Field.of(next("поле").text);
+            Operator operator = Operator.of(next("оператор").text);
+            if (operator == null) {
+                throw new IllegalArgumentException("после поля " + field + " ожидается один из операторов =, !=, <, <=, >, >=");
+            }
+            Token value = next("значение");
+            return new Condition(field, operator, value.quoted && field == Field.NAME
+                    ? value.text : field.parse(value.text));
+        }
+
+        private boolean atEnd() {
+            return position == tokens.size();
+        }
+
+        private Token peek() {
+            return tokens.get(position);
+        }
+
+        private Token next(String expected) {
+            if (atEnd()) {
+                throw new IllegalArgumentException("запрос оборвался, ожидается " + expected);
+            }
+            return tokens.get(position++);
+        }
+
+        private boolean accept(String keyword) {
+            if (!atEnd() && peek().is(keyword)) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        private void expect(String keyword) {
+            if (!accept(keyword)) {
+                throw new IllegalArgumentException("ожидается " + keyword);
+            }
+        }
+    }
+}
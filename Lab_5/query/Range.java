@@ -0,0 +1,96 @@
+package query;
+
+import java.util.List;
+
+/**
+ * Диапазон значений поля, заданный условиями запроса на это поле; пустая граница - без ограничения
+ */
+public class Range {
+    private Comparable<?> from;
+    private boolean fromInclusive;
+    private Comparable<?> to;
+    private boolean toInclusive;
+
+    /**
+     * Пересекает условия =, <, <=, >, >= с заданными значениями; null, если таких условий нет
+     */
+    static Range of(List<Condition> conditions) {
+        Range range = null;
+        for (Condition condition : conditions) {
+            if (!isRange(condition)) {
+                continue;
+            }
+            if (range == null) {
+                range = new Range();
+            }
+            Operator operator = condition.getOperator();
+            Comparable<?> value = condition.getValue();
+            if (operator != Operator.LT && operator != Operator.LE) {
+                range.raiseFrom(value, operator != Operator.GT);
+            }
+            if (operator != Operator.GT && operator != Operator.GE) {
+                range.lowerTo(value, operator != Operator.LT);
+            }
+        }
+        return range;
+    }
+
+    /**
+     * Проверяет, сводится ли условие к диапазону значений (элементы без значения в диапазон не входят)
+     */
+    static boolean isRange(Condition condition) {
+        return condition.getValue() != null && condition.getOperator() != Operator.NE;
+    }
+
+    private void raiseFrom(Comparable<?> value, boolean inclusive) {
+        int c = from == null ? 1 : Field.compare(value, from);
+        if (c > 0 || (c == 0 && !inclusive)) {
+            from = value;
+            fromInclusive = inclusive;
+        }
+    }
+
+    private void lowerTo(Comparable<?> value, boolean inclusive) {
+        int c = to == null ? -1 : Field.compare(value, to);
+        if (c < 0 || (c == 0 && !inclusive)) {
+            to = value;
+            toInclusive = inclusive;
+        }
+    }
+
+    public Comparable<?> getFrom() {
+        return from;
+    }
+
+    public boolean isFromInclusive() {
+        return fromInclusive;
+    }
+
+    public Comparable<?> getTo() {
+        return to;
+    }
+
+    public boolean isToInclusive() {
+        return toInclusive;
+    }
+
+    /**
+     * Проверяет, что в диапазон не попадает ни одно значение
+     */
+    public boolean isEmpty() {
+        if (from == null || to == null) {
+            return false;
+        }
+        int c = Field.compare(from, to);
+        return c > 0 || (c == 0 && !(fromInclusive && toInclusive));
+    }
+
+    @Override
+    public String toString() {
+        if (from != null && from.equals(to) && !isEmpty()) {
+            return "= " + from;
+        }
+        return (from == null ? "(-∞" : (fromInclusive ? "[" : "(") + from) + "; "
+                + (to == null ? "+∞)" : to + (toInclusive ? "]" : ")"));
+    }
+}
@@ -0,0 +1,68 @@
+package utils;
+
+/**
+ * Настройки приложения.
+ * Задаются системными свойствами при запуске: java -Dключ=значение Main file.xml
+ */
+public class AppConfig {
+    // Вести журнал изменений рядом с файлом данных (по умолчанию выключен). С журналом изменения
+    // переживают exit без save и сбой: при следующем запуске они проигрываются поверх файла
+    public static final String JOURNAL_ENABLED = "journal.enabled";
+    // Сбрасывать журнал на диск каждые N операций (0 - не по счётчику, 1 - после каждой)
+    public static final String JOURNAL_SYNC_EVERY = "journal.syncEvery";
+    // Сбрасывать журнал на диск каждые T миллисекунд (0 - не по таймеру)
+    public static final String JOURNAL_SYNC_MILLIS = "journal.syncMillis";
+    // Сброс журнала по умолчанию: группами, при сбое теряется не больше последних 100 мс изменений
+    public static final int DEFAULT_JOURNAL_SYNC_EVERY = 64;
+    public static final long DEFAULT_JOURNAL_SYNC_MILLIS = 100;
+    // Размер журнала в байтах, после которого он сворачивается в новый снимок
+    public static final String JOURNAL_COMPACT_BYTES = "journal.compactBytes";
+    // Число потоков для загрузки XML (0 - по числу ядер, 1 - последовательно)
+    public static final String LOAD_PARALLELISM = "load.parallelism";
+    // Интервал автосохранения в секундах (0 - отключено)
+    public static final String AUTOSAVE_SECONDS = "autosave.seconds";
+    // Уровень сжатия файлов .gz: от 1 (быстрее) до 9 (меньше), -1 - по умолчанию
+    public static final String COMPRESSION_LEVEL = "compression.level";
+    // Ленивая загрузка: при запуске строится только индекс, элементы читаются по запросу
+    public static final String LOAD_LAZY = "load.lazy";
+    // Сколько декодированных элементов держать в кэше при ленивой загрузке
+    public static final String LAZY_CACHE_SIZE = "load.lazyCacheSize";
+    // Колоночное хранение: поля элементов в массивах примитивов, запросы - проходом по массиву
+    public static final String STORAGE_COLUMNAR = "storage.columnar";
+    // Хранение вне кучи: элементы - записи в прямых буферах, запросы - проходом по записям
+    public static final String STORAGE_OFF_HEAP = "storage.offHeap";
+    // Число потоков для запросов по большой коллекции (0 - по числу ядер, 1 - последовательно)
+    public static final String QUERY_PARALLELISM = "query.parallelism";
+    // Размер коллекции, начиная с которого запросы выполняются параллельно
+    public static final String QUERY_PARALLEL_THRESHOLD = "query.parallelThreshold";
+
+    /**
+     * Возвращает логическое значение свойства
+     */
+    public static boolean getBoolean(String key, boolean defaultValue) {
+        String value = System.getProperty(key);
+        return value == null ? defaultValue : Boolean.parseBoolean(value.trim());
+    }
+
+    /**
+     * Возвращает целое значение свойства
+     */
+    public static int getInt(String key, int defaultValue) {
+        return (int) getLong(key, defaultValue);
+    }
+
+    /**
+     * Возвращает целое значение свойства
+     */
+    public static long getLong(String key, long defaultValue) {
+        String value = System.getProperty(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Свойство " + key + " должно быть целым числом: " + value);
+        }
+    }
+}
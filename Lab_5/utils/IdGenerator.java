@@ -1,46 +1,51 @@
 package utils;
 
-import model.Vehicle;
-
-import java.util.Collection;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Генератор уникальных ID для объектов Vehicle.
+ * Хранит наибольший выданный id (верхнюю границу), поэтому выдача id не зависит
+ * от размера коллекции, а id удалённых элементов повторно не выдаются.
+ * Граница сохраняется в файле вместе с коллекцией и задаётся при загрузке через seed.
+ * Безопасен для вызова из нескольких потоков.
  */
 public class IdGenerator {
-    private static int lastId = 0;
+    private final AtomicInteger lastId = new AtomicInteger();
 
     /**
-     * Генерирует новый уникальный ID
+     * Поднимает верхнюю границу до заданного id, если она ниже
      */
-    public static int generateId(Collection<Vehicle> collection) {
-        return collection.stream()
-                .mapToInt(Vehicle::getId)
-                .max()
-                .orElse(0) + 1;
+    public void seed(int id) {
+        lastId.accumulateAndGet(id, Math::max);
     }
 
     /**
-     * Альтернативный генератор с сохранением последнего ID
+     * Генерирует новый уникальный ID
      */
-    public static int generateId() {
-        return ++lastId;
+    public int generateId() {
+        return reserve(1);
     }
 
     /**
-     * Обновляет lastId на основе существующей коллекции
+     * Выделяет count последовательных id для пакетной вставки и возвращает первый из них
      */
-    public static void updateLastId(Collection<Vehicle> collection) {
-        lastId = collection.stream()
-                .mapToInt(Vehicle::getId)
-                .max()
-                .orElse(0);
+    public int reserve(int count) {
+        if (count <= 0) {
+            throw new IllegalArgumentException("Количество id должно быть больше 0");
+        }
+        int last = lastId.getAndUpdate(current -> {
+            if (current > Integer.MAX_VALUE - count) {
+                throw new IllegalStateException("Свободные id закончились");
+            }
+            return current + count;
+        });
+        return last + 1;
     }
 
     /**
-     * Проверяет уникальность ID
+     * Возвращает наибольший выданный id
      */
-    public static boolean isIdUnique(int id, Collection<Vehicle> collection) {
-        return collection.stream().noneMatch(v -> v.getId() == id);
+    public int getLastId() {
+        return lastId.get();
     }
-}
\ No newline at end of file
+}
@@ -1,5 +1,6 @@
 package utils;
 
+import model.Vehicle;
 import model.VehicleType;
 
 import java.util.Arrays;
@@ -71,6 +72,22 @@ public class InputValidator {
         }
     }
 
+    /**
+     * Проверяет все поля элемента, прочитанного не из консоли (например, при импорте из файла)
+     */
+    public static void validateVehicle(Vehicle vehicle) {
+        validateName(vehicle.getName());
+        if (vehicle.getCoordinates() == null) {
+            throw new IllegalArgumentException("Координаты не могут быть null");
+        }
+        validateCoordinateX(vehicle.getCoordinates().getX());
+        validateEnginePower(vehicle.getEnginePower());
+        validateCapacity(vehicle.getCapacity());
+        if (vehicle.getType() == null) {
+            throw new IllegalArgumentException("Тип не может быть пустым");
+        }
+    }
+
     /**
      * Проверяет ID
      */
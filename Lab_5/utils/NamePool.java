@@ -0,0 +1,125 @@
+package utils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Пул имён транспортных средств.
+ * В данных повторяется небольшой набор названий моделей, поэтому все элементы
+ * с одинаковым именем ссылаются на один объект String.
+ * Имя можно найти прямо по байтам UTF-8: при попадании строка не создаётся.
+ * Пул ограничен по размеру: если различных имён слишком много, новые не запоминаются.
+ *
+ * Пул не потокобезопасен и общего пула нет: свой пул у каждого читателя файла и у менеджера коллекции,
+ * и он освобождается вместе с владельцем. Пулы кусков файла, прочитанных параллельно,
+ * сводятся в один после чтения (merge).
+ */
+public class NamePool {
+    private static final int MAX_SIZE = 1 << 12;
+
+    private Entry[] table = new Entry[64];
+    private int size;
+
+    /**
+     * Возвращает строку из пула по байтам UTF-8, создавая её только при первой встрече
+     */
+    public String intern(byte[] bytes, int offset, int length) {
+        int hash = hash(bytes, offset, length);
+        String found = find(bytes, offset, length, hash);
+        if (found != null) {
+            return found;
+        }
+        String value = new String(bytes, offset, length, StandardCharsets.UTF_8);
+        add(Arrays.copyOfRange(bytes, offset, offset + length), value, hash);
+        return value;
+    }
+
+    /**
+     * Возвращает строку из пула, равную заданной
+     */
+    public String intern(String value) {
+        if (value == null) {
+            return null;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        return intern(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Добавляет в этот пул имена из другого и возвращает замены: для строк другого пула,
+     * равных уже имеющимся здесь, - строку этого пула. Ключи сравниваются по ссылке.
+     */
+    public Map<String, String> merge(NamePool other) {
+        Map<String, String> replacements = new IdentityHashMap<>();
+        for (Entry head : other.table) {
+            for (Entry e = head; e != null; e = e.next) {
+                String found = find(e.bytes, 0, e.bytes.length, e.hash);
+                if (found == null) {
+                    add(e.bytes, e.value, e.hash);
+                } else if (found != e.value) {
+                    replacements.put(e.value, found);
+                }
+            }
+        }
+        return replacements;
+    }
+
+    private String find(byte[] bytes, int offset, int length, int hash) {
+        for (Entry e = table[hash & (table.length - 1)]; e != null; e = e.next) {
+            if (e.hash == hash && Arrays.equals(e.bytes, 0, e.bytes.length, bytes, offset, offset + length)) {
+                return e.value;
+            }
+        }
+        return null;
+    }
+
+    private void add(byte[] bytes, String value, int hash) {
+        if (size >= MAX_SIZE) {
+            return;
+        }
+        if (size >= table.length - (table.length >> 2)) {
+            resize();
+        }
+        int slot = hash & (table.length - 1);
+        table[slot] = new Entry(bytes, value, hash, table[slot]);
+        size++;
+    }
+
+    private void resize() {
+        Entry[] old = table;
+        table = new Entry[old.length * 2];
+        for (Entry head : old) {
+            for (Entry e = head; e != null; ) {
+                Entry next = e.next;
+                int slot = e.hash & (table.length - 1);
+                e.next = table[slot];
+                table[slot] = e;
+                e = next;
+            }
+        }
+    }
+
+    private static int hash(byte[] bytes, int offset, int length) {
+        int h = 1;
+        for (int i = offset; i < offset + length; i++) {
+            h = 31 * h + bytes[i];
+        }
+        return h ^ (h >>> 16);
+    }
+
+    private static class Entry {
+        final byte[] bytes;
+        final String value;
+        final int hash;
+        Entry next;
+
+        Entry(byte[] bytes, String value, int hash, Entry next) {
+            this.bytes = bytes;
+            this.value = value;
+            this.hash = hash;
+            this.next = next;
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package utils;
+
+import model.Coordinates;
+import model.Vehicle;
+
+import java.text.DecimalFormatSymbols;
+import java.time.LocalDate;
+import java.util.Iterator;
+import java.util.Locale;
+
+/**
+ * Буферизованный вывод элементов в консоль.
+ * Строки копятся в одном переиспользуемом буфере и уходят в System.out большими кусками,
+ * а не по строке, как при println. Элемент форматируется вручную, без String.format,
+ * в точности как Vehicle.toString; редкие значения, которые быстрый путь не берёт
+ * (числа больше 10^9, годы вне 0-9999, локаль со своими цифрами), форматируются как обычно.
+ */
+public class VehiclePrinter {
+    private static final int FLUSH_THRESHOLD = 1 << 16;
+    private static final double MAX_FAST_VALUE = 1e9;
+    private static final VehiclePrinter CONSOLE = new VehiclePrinter();
+
+    private final StringBuilder buffer = new StringBuilder(FLUSH_THRESHOLD + 1024);
+    private final Locale locale = Locale.getDefault(Locale.Category.FORMAT);
+    private final char decimalSeparator;
+    private final boolean fastNumbers;
+
+    private VehiclePrinter() {
+        DecimalFormatSymbols symbols = DecimalFormatSymbols.getInstance(locale);
+        this.decimalSeparator = symbols.getDecimalSeparator();
+        this.fastNumbers = symbols.getZeroDigit() == '0';
+    }
+
+    /**
+     * Возвращает общий вывод в System.out
+     */
+    public static VehiclePrinter console() {
+        return CONSOLE;
+    }
+
+    /**
+     * Выводит элементы по одному на строку, пока они есть, и возвращает их количество.
+     * Элементы не собираются в список: итератор может отдавать их по мере чтения.
+     */
+    public synchronized int printAll(Iterator<? extends Vehicle> vehicles) {
+        int count = 0;
+        try {
+            while (vehicles.hasNext()) {
+                format(vehicles.next());
+                buffer.append('\n');
+                count++;
+                if (buffer.length() >= FLUSH_THRESHOLD) {
+                    flush();
+                }
+            }
+        } finally {
+            flush();
+        }
+        return count;
+    }
+
+    /**
+     * Выводит элементы по одному на строку и возвращает их количество
+     */
+    public int printAll(Iterable<? extends Vehicle> vehicles) {
+        return printAll(vehicles.iterator());
+    }
+
+    private void flush() {
+        if (buffer.length() > 0) {
+            System.out.append(buffer);
+            System.out.flush();
+            buffer.setLength(0);
+        }
+    }
+
+    /**
+     * Дописывает в буфер элемент в формате Vehicle.toString
+     */
+    private void format(Vehicle vehicle) {
+        if (!fastNumbers) {
+            // В локали со своими цифрами String.format заменяет их и в id
+            buffer.append(vehicle);
+            return;
+        }
+        buffer.append("Vehicle{id=").append(vehicle.getId())
+                .append(", name='").append(vehicle.getName())
+                .append("', coordinates=");
+        Coordinates coordinates = vehicle.getCoordinates();
+        if (coordinates == null) {
+            buffer.append("null");
+        } else {
+            // append(Double) даёт то же, что Double.toString, но без промежуточной строки
+            Double x = coordinates.getX();
+            buffer.append('(');
+            if (x == null) {
+                buffer.append("null");
+            } else {
+                buffer.append(x.doubleValue());
+            }
+            buffer.append(", ").append(coordinates.getY()).append(')');
+        }
+        buffer.append(", date=");
+        appendDate(vehicle.getCreationDate());
+        buffer.append(", enginePower=");
+        Double enginePower = vehicle.getEnginePower();
+        if (enginePower == null) {
+            // Точность %.2f обрезает строку "null" до двух символов
+            buffer.append("nu");
+        } else {
+            appendFixed2(enginePower);
+        }
+        buffer.append(", capacity=");
+        appendFixed2(vehicle.getCapacity());
+        buffer.append(", type=").append(vehicle.getType())
+                .append(", fuelType=").append(vehicle.getFuelType())
+                .append('}');
+    }
+
+    private void appendDate(LocalDate date) {
+        if (date == null || date.getYear() < 0 || date.getYear() > 9999) {
+            buffer.append(date);
+            return;
+        }
+        appendDigits(date.getYear(), 4);
+        buffer.append('-');
+        appendDigits(date.getMonthValue(), 2);
+        buffer.append('-');
+        appendDigits(date.getDayOfMonth(), 2);
+    }
+
+    /**
+     * Дописывает число как %.2f: String.format округляет половину вверх кратчайшую десятичную
+     * запись числа, поэтому значения, у которых сотые после умножения на 100 слишком близки
+     * к половине, чтобы решить по double, форматируются через String.format
+     */
+    private void appendFixed2(double value) {
+        double magnitude = Math.abs(value);
+        if (magnitude < MAX_FAST_VALUE) {
+            double scaled = magnitude * 100;
+            long cents = (long) scaled;
+            double fraction = scaled - cents;
+            if (Math.abs(fraction - 0.5) > 1e-3) {
+                if (fraction > 0.5) {
+                    cents++;
+                }
+                if (Double.doubleToRawLongBits(value) < 0) {
+                    buffer.append('-');
+                }
+                buffer.append(cents / 100).append(decimalSeparator);
+                appendDigits((int) (cents % 100), 2);
+                return;
+            }
+        }
+        buffer.append(String.format(locale, "%.2f", value));
+    }
+
+    private void appendDigits(int value, int width) {
+        for (int limit = 10; width > 1; width--, limit *= 10) {
+            if (value < limit) {
+                buffer.append('0');
+            }
+        }
+        buffer.append(value);
+    }
+}